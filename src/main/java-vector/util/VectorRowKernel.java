@@ -0,0 +1,54 @@
+package util;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link RowKernel} on the incubating Vector API, a vector of words at a time. Java 17 has no lane
+ * popcount yet, so the bits of every lane are counted with the usual shifts and masks and summed by
+ * a multiply, and the lanes are summed once per row. Only compiled by the vector profile and loaded
+ * by {@link ShortCycles} when the jdk.incubator.vector module is present.
+ */
+class VectorRowKernel implements RowKernel {
+
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+	@Override
+	public int andCount(long[] a, int aFrom, long[] b, int bFrom, int words) {
+		int w = 0;
+		int bound = SPECIES.loopBound(words);
+		LongVector counts = LongVector.zero(SPECIES);
+		for(; w<bound; w += SPECIES.length()) {
+			LongVector and = LongVector.fromArray(SPECIES, a, aFrom + w).and(LongVector.fromArray(SPECIES, b, bFrom + w));
+			counts = counts.add(bitCount(and));
+		}
+		int count = (int) counts.reduceLanes(VectorOperators.ADD);
+		for(; w<words; w++) {
+			count += Long.bitCount(a[aFrom + w] & b[bFrom + w]);
+		}
+		return count;
+	}
+
+	@Override
+	public void and(long[] a, int aFrom, long[] b, int bFrom, long[] dest, int words) {
+		int w = 0;
+		int bound = SPECIES.loopBound(words);
+		for(; w<bound; w += SPECIES.length()) {
+			LongVector.fromArray(SPECIES, a, aFrom + w).and(LongVector.fromArray(SPECIES, b, bFrom + w)).intoArray(dest, w);
+		}
+		for(; w<words; w++) {
+			dest[w] = a[aFrom + w] & b[bFrom + w];
+		}
+	}
+
+	/**
+	 * @return the amount of bits set in every lane
+	 */
+	private static LongVector bitCount(LongVector v) {
+		v = v.sub(v.lanewise(VectorOperators.LSHR, 1).and(0x5555555555555555L));
+		v = v.and(0x3333333333333333L).add(v.lanewise(VectorOperators.LSHR, 2).and(0x3333333333333333L));
+		v = v.add(v.lanewise(VectorOperators.LSHR, 4)).and(0x0F0F0F0F0F0F0F0FL);
+		return v.mul(0x0101010101010101L).lanewise(VectorOperators.LSHR, 56);
+	}
+}
@@ -1,70 +1,184 @@
 package data;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 
-import org.apache.poi.xssf.usermodel.XSSFCell;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import util.BitGraph;
+import util.CSRGraph;
+import util.IntList;
 
 
 /**
- * Reads a csv file of compatibility data
+ * Reads a spreadsheet of compatibility data. The first row is a header, every following row starts
+ * with the id of a pair followed by a 1 for every pair its donor can give to. The first sheet is
+ * streamed with the event API of POI, so only the arcs are kept in memory and never the cells.
  */
 public class ExcelReader {
 
-	private int[] ids;
-	private boolean[][] matches;
-	
+	private final CSRGraph graph;
+	private BitGraph matches;
+
 	/**
-	 * initializes values from the file specified 
-	 * @param fileName file name without .csv
+	 * initializes values from the file specified
+	 * @param fileName file name in src/main/resources
 	 * @throws IOException
 	 */
 	public ExcelReader(String fileName) throws IOException {
-		
+		this(new File("src/main/resources/"+fileName));
+	}
+
+	/**
+	 * @param file .xlsx file to read
+	 * @throws IOException if the file can not be read or the matrix is not square
+	 */
+	public ExcelReader(File file) throws IOException {
+		OPCPackage pkg;
+		try {
+			pkg = OPCPackage.open(file, PackageAccess.READ);
+		} catch (OpenXML4JException e) {
+			throw new IOException("Could not open "+file.getName(), e);
+		}
 		try {
-			XSSFWorkbook wb = new XSSFWorkbook("src/main/resources/"+fileName);
-
-		     XSSFSheet sheet = wb.getSheetAt(0);
-		        XSSFRow row; 
-		        XSSFCell cell;
-		        
-		    int rows; // No of rows
-		    rows = sheet.getPhysicalNumberOfRows();
-		    int cols = sheet.getRow(0).getLastCellNum();
-		    this.ids = new int[rows-1];
-		    this.matches = new boolean[rows-1][cols-1];
-		    
-		    for(int r = 1; r < rows; r++) {
-		        row = sheet.getRow(r);
-		        if(row != null) {
-		            for(int c = 0; c < cols; c++) {
-		                cell = row.getCell((short)c);
-		                if(cell != null) {
-		                    if(c == 0) {
-		                    	ids[r-1] = (int) cell.getNumericCellValue();
-		                    }
-		                    else {
-		                    	if(cell.getNumericCellValue() == 1) {
-		                    		matches[r-1][c-1] = true;
-		                    	}
-		                    }
-		                }
-		            }
-		        }
-		    }
-		    wb.close();
-		} catch(Exception ioe) {
-		    ioe.printStackTrace();
+			XSSFReader reader = new XSSFReader(pkg);
+			ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+			StylesTable styles = reader.getStylesTable();
+			Iterator<InputStream> sheets = reader.getSheetsData();
+			if(!sheets.hasNext()) {
+				throw new IOException(file.getName()+ " has no sheets");
+			}
+
+			RowCollector rows = new RowCollector();
+			try (InputStream sheet = sheets.next()) {
+				XMLReader parser = XMLHelper.newXMLReader();
+				parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings, rows, false));
+				parser.parse(new InputSource(sheet));
+			} catch (UncheckedIOException e) {
+				throw new IOException(file.getName()+ ": " +e.getCause().getMessage(), e.getCause());
+			}
+
+			int n = rows.ids.size();
+			if(rows.columns-1 != n) {
+				throw new IOException(file.getName()+ " has "+n+" pairs but "+(rows.columns-1)+" compatibility columns");
+			}
+			this.graph = CSRGraph.fromArcs(n, rows.sources.array(), rows.targets.array(), null, rows.sources.size(), rows.ids.toArray());
+		} catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+			throw new IOException("Could not read "+file.getName(), e);
+		} finally {
+			//closing would try to save a package opened for reading
+			pkg.revert();
 		}
 	}
-	
+
+	/**
+	 * collects the arcs row by row as the sheet is parsed
+	 */
+	private static class RowCollector implements SheetContentsHandler {
+
+		private final IntList ids = new IntList(1024);
+		private final IntList sources = new IntList(4096);
+		private final IntList targets = new IntList(4096);
+		private int columns = 0;
+		private int row = -1;
+		private boolean hasId = false;
+
+		@Override
+		public void startRow(int rowNum) {
+			row = rowNum;
+			hasId = false;
+		}
+
+		@Override
+		public void endRow(int rowNum) {
+		}
+
+		@Override
+		public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+			int c = column(cellReference);
+			if(row == 0) {
+				columns = Math.max(columns, c+1);
+				return;
+			}
+			if(formattedValue == null || formattedValue.isEmpty()) {
+				return;
+			}
+			if(c == 0) {
+				//rows without an id are skipped like empty rows
+				ids.add((int) parse(cellReference, formattedValue));
+				hasId = true;
+			}
+			else if(hasId && c < columns && parse(cellReference, formattedValue) == 1) {
+				sources.add(ids.size()-1);
+				targets.add(c-1);
+			}
+		}
+
+		/**
+		 * the handler can not throw checked exceptions, so a cell that is not a number is reported
+		 * unchecked and turned into an IOException once the parser returns
+		 * @return the value of the cell
+		 */
+		private static double parse(String cellReference, String formattedValue) {
+			try {
+				return Double.parseDouble(formattedValue);
+			} catch (NumberFormatException e) {
+				throw new UncheckedIOException(new IOException("cell "+cellReference+" is not a number: \""+formattedValue+"\"", e));
+			}
+		}
+
+		/**
+		 * @return zero based column of a reference like "AB12"
+		 */
+		private static int column(String cellReference) {
+			int c = 0;
+			for(int i = 0; i<cellReference.length(); i++) {
+				char ch = cellReference.charAt(i);
+				if(ch < 'A' || ch > 'Z') {
+					break;
+				}
+				c = c*26 + (ch - 'A' + 1);
+			}
+			return c-1;
+		}
+	}
+
+	/**
+	 * @return the data ID of every pair, in matrix order
+	 */
 	public int[] getIds() {
-		return ids;
+		return graph.getIds();
 	}
-	
+
 	public boolean[][] getMatches(){
+		return graph.toMatrix();
+	}
+
+	public BitGraph getGraph() {
+		if(matches == null) {
+			matches = graph.toBitGraph();
+		}
 		return matches;
 	}
+
+	public CSRGraph getSparseGraph() {
+		return graph;
+	}
 }
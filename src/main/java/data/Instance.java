@@ -0,0 +1,122 @@
+package data;
+
+import java.util.List;
+
+import util.Altruists;
+import util.ArcPruning;
+import util.CSRGraph;
+
+/**
+ * A preprocessed instance as the drivers get it from {@link InstanceCatalog}: the graph of the
+ * pairs, the altruists with their arcs to those pairs, and the statistics of the {@link Preprocessing}
+ * that produced them. All of it is stored with the graph in the instance cache, so it is the same
+ * whether the instance was preprocessed in this run or mapped from disk.
+ */
+public class Instance {
+
+	private final CSRGraph graph;
+	private final Altruists altruists;
+	private final int pruneK;
+	private final int prunedArcs;
+	private final int prunedPairs;
+
+	/**
+	 * @param pruning the arc pruning that was applied, null when there was none
+	 */
+	Instance(CSRGraph graph, Altruists altruists, ArcPruning pruning) {
+		this(graph, altruists, pruning == null ? 0 : pruning.getK(), pruning == null ? 0 : pruning.removedArcs(), pruning == null ? 0 : pruning.removedPairs());
+	}
+
+	private Instance(CSRGraph graph, Altruists altruists, int pruneK, int prunedArcs, int prunedPairs) {
+		this.graph = graph;
+		this.altruists = altruists;
+		this.pruneK = pruneK;
+		this.prunedArcs = prunedArcs;
+		this.prunedPairs = prunedPairs;
+	}
+
+	/**
+	 * @return the statistics, the ids of the altruists and the sources and targets of their arcs as
+	 * sections of a {@link util.GraphFile}
+	 */
+	int[][] sections() {
+		int[] ids = new int[altruists.size()];
+		int[] sources = new int[altruists.arcCount()];
+		int[] targets = new int[altruists.arcCount()];
+		for(int a = 0; a<altruists.size(); a++) {
+			ids[a] = altruists.id(a);
+			for(int e = altruists.outStart(a); e<altruists.outEnd(a); e++) {
+				sources[e] = a;
+				targets[e] = altruists.target(e);
+			}
+		}
+		return new int[][] {{pruneK, prunedArcs, prunedPairs}, ids, sources, targets};
+	}
+
+	/**
+	 * @param sections as written by {@link #sections()}
+	 * @return the instance, or null when the sections are not those of this version
+	 */
+	static Instance fromSections(CSRGraph graph, List<int[]> sections) {
+		if(sections.size() != 4 || sections.get(0).length != 3 || sections.get(2).length != sections.get(3).length) {
+			return null;
+		}
+		int[] pruning = sections.get(0);
+		int[] ids = sections.get(1);
+		int[] sources = sections.get(2);
+		int[] targets = sections.get(3);
+		for(int e = 0; e<sources.length; e++) {
+			if(sources[e] < 0 || sources[e] >= ids.length || targets[e] < 0 || targets[e] >= graph.size()) {
+				return null;
+			}
+		}
+		Altruists altruists = ids.length == 0 ? Altruists.NONE : Altruists.fromArcs(ids.length, sources, targets, sources.length, ids);
+		return new Instance(graph, altruists, pruning[0], pruning[1], pruning[2]);
+	}
+
+	public CSRGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return the altruists, with arcs to the pairs of {@link #getGraph()}
+	 */
+	public Altruists getAltruists() {
+		return altruists;
+	}
+
+	/**
+	 * @return the maximum cycle length arcs were pruned for, 0 when no arcs were pruned
+	 */
+	public int pruneK() {
+		return pruneK;
+	}
+
+	/**
+	 * @return amount of arcs removed because they are on no cycle of at most {@link #pruneK()} pairs
+	 */
+	public int prunedArcs() {
+		return prunedArcs;
+	}
+
+	/**
+	 * @return amount of pairs left without arcs by the pruning
+	 */
+	public int prunedPairs() {
+		return prunedPairs;
+	}
+
+	public long sizeInBytes() {
+		return graph.sizeInBytes() + altruists.sizeInBytes();
+	}
+
+	/**
+	 * @return the pruning statistics in the words of {@link ArcPruning#toString()}
+	 */
+	public String pruningSummary() {
+		if(pruneK == 0) {
+			return "no arcs pruned";
+		}
+		return "k=" +pruneK+ " pruning removed " +prunedArcs+ " arcs and " +prunedPairs+ " pairs";
+	}
+}
@@ -0,0 +1,74 @@
+package data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import util.CSRGraph;
+import util.GraphFile;
+
+/**
+ * Keeps preprocessed instances as binary files next to the build output so experiment runs skip
+ * parsing, reduction and ordering. A cached file records a checksum of the source file and is
+ * rebuilt as soon as the source changes.
+ */
+public class InstanceCache {
+
+	private static final File CACHE_DIR = new File("target/instance-cache");
+
+	/**
+	 * returns the preprocessed instance of source, from the cache if it is up to date
+	 * @param source an .xml or .wmd instance
+	 * @param preprocessing
+	 * @return the graph with the statistics of the preprocessing
+	 * @throws IOException
+	 */
+	public static Instance load(File source, Preprocessing preprocessing) throws IOException {
+		Path cached = cacheFile(source, preprocessing);
+		long checksum = GraphFile.checksum(source);
+
+		List<int[]> sections = new ArrayList<>();
+		CSRGraph graph = GraphFile.read(cached, checksum, preprocessing.key(), sections);
+		Instance instance = graph == null ? null : Instance.fromSections(graph, sections);
+		if(instance == null) {
+			instance = preprocess(source, preprocessing);
+			GraphFile.write(cached, instance.getGraph(), instance.sections(), checksum, preprocessing.key());
+		}
+		return instance;
+	}
+
+	/**
+	 * reads an instance without any preprocessing
+	 * @param source an .xml or .wmd instance
+	 * @return
+	 * @throws IOException
+	 */
+	public static CSRGraph parse(File source) throws IOException {
+		String name = source.getName().toLowerCase();
+		if(name.endsWith(".xml")) {
+			return XMLData.parse(source);
+		}
+		if(name.endsWith(".wmd")) {
+			return WMDReader.load(source);
+		}
+		throw new IllegalArgumentException("Unknown instance format: " +source.getName());
+	}
+
+	/**
+	 * reads an instance, with its altruists when the format has them, and applies preprocessing
+	 */
+	private static Instance preprocess(File source, Preprocessing preprocessing) throws IOException {
+		if(source.getName().toLowerCase().endsWith(".xml")) {
+			return XMLData.load(source, preprocessing);
+		}
+		return preprocessing.preprocess(parse(source));
+	}
+
+	private static Path cacheFile(File source, Preprocessing preprocessing) {
+		String parent = source.getAbsoluteFile().getParentFile().getName();
+		String name = parent + "_" + source.getName().replace(' ', '_') + "." + preprocessing.key() + ".kxc";
+		return new File(CACHE_DIR, name).toPath();
+	}
+}
@@ -0,0 +1,207 @@
+package data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import util.CSRGraph;
+
+/**
+ * Lists the instances of one or more folders in a fixed order and loads them. Files are sorted
+ * by name with numbers compared by value, so "genxml-0100 (2)" comes before "genxml-0100 (10)"
+ * on every file system. Loaded graphs are kept in an LRU cache bounded by their total size and
+ * keyed by file and preprocessing, so runs over the same instances with another k reuse them.
+ */
+public class InstanceCatalog implements AutoCloseable {
+
+	public static final File PREFLIB = new File("src/main/resources/preflib");
+	public static final File DELORME = new File("src/main/resources/delorme");
+
+	private static final long DEFAULT_CACHE_BYTES = Runtime.getRuntime().maxMemory()/4;
+
+	private final List<File> files;
+	private final long maxBytes;
+	private final LinkedHashMap<String, Instance> loaded = new LinkedHashMap<>(16, 0.75f, true);
+	private long loadedBytes = 0;
+	private ExecutorService pool;
+
+	public InstanceCatalog(File... folders) {
+		this(DEFAULT_CACHE_BYTES, folders);
+	}
+
+	/**
+	 * @param maxBytes upper bound on the summed {@link CSRGraph#sizeInBytes()} of cached graphs
+	 * @param folders folders whose .xml and .wmd files make up the catalog, in this order
+	 */
+	public InstanceCatalog(long maxBytes, File... folders) {
+		this.maxBytes = maxBytes;
+		List<File> list = new ArrayList<>();
+		for(File folder : folders) {
+			File[] listOfFiles = folder.listFiles((dir, name) -> name.endsWith(".xml") || name.endsWith(".wmd"));
+			if(listOfFiles == null) {
+				throw new IllegalArgumentException("Not a folder: " +folder);
+			}
+			Arrays.sort(listOfFiles, byName);
+			list.addAll(Arrays.asList(listOfFiles));
+		}
+		this.files = Collections.unmodifiableList(list);
+	}
+
+	public int size() {
+		return files.size();
+	}
+
+	public File get(int index) {
+		return files.get(index);
+	}
+
+	public List<File> getFiles() {
+		return files;
+	}
+
+	/**
+	 * returns the graph of instance index, from memory if it was loaded before with the same preprocessing
+	 * @param index position in the catalog
+	 * @param preprocessing
+	 * @return
+	 * @throws IOException
+	 */
+	public CSRGraph load(int index, Preprocessing preprocessing) throws IOException {
+		return loadInstance(index, preprocessing).getGraph();
+	}
+
+	/**
+	 * returns instance index, from memory if it was loaded before with the same preprocessing
+	 * @param index position in the catalog
+	 * @param preprocessing
+	 * @return the graph with the statistics of the preprocessing
+	 * @throws IOException
+	 */
+	public Instance loadInstance(int index, Preprocessing preprocessing) throws IOException {
+		File file = files.get(index);
+		String key = file.getAbsolutePath() + "|" + preprocessing.key();
+		synchronized(loaded) {
+			Instance instance = loaded.get(key);
+			if(instance != null) {
+				return instance;
+			}
+		}
+		Instance instance = InstanceCache.load(file, preprocessing);
+		synchronized(loaded) {
+			if(loaded.put(key, instance) == null) {
+				loadedBytes += instance.sizeInBytes();
+			}
+			Iterator<Map.Entry<String, Instance>> eldest = loaded.entrySet().iterator();
+			while(loadedBytes > maxBytes && loaded.size() > 1) {
+				loadedBytes -= eldest.next().getValue().sizeInBytes();
+				eldest.remove();
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * loads instances from (inclusive) to to (exclusive) in parallel
+	 * @return the graphs in catalog order
+	 * @throws IOException
+	 */
+	public List<CSRGraph> loadAll(int from, int to, Preprocessing preprocessing) throws IOException {
+		ExecutorService executor = pool();
+		List<Future<CSRGraph>> futures = new ArrayList<>(to-from);
+		for(int u = from; u<to; u++) {
+			final int index = u;
+			futures.add(executor.submit(() -> load(index, preprocessing)));
+		}
+		List<CSRGraph> result = new ArrayList<>(to-from);
+		for(Future<CSRGraph> future : futures) {
+			try {
+				result.add(future.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while loading instances", e);
+			} catch (ExecutionException e) {
+				if(e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				if(e.getCause() instanceof UncheckedIOException) {
+					throw ((UncheckedIOException) e.getCause()).getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return result;
+	}
+
+	private synchronized ExecutorService pool() {
+		if(pool == null) {
+			int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+			pool = Executors.newFixedThreadPool(threads, r -> {
+				Thread t = new Thread(r, "instance-loader");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return pool;
+	}
+
+	@Override
+	public synchronized void close() {
+		if(pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * compares file names with runs of digits compared by value
+	 */
+	public static final Comparator<File> byName = (File f1, File f2) -> {
+		String a = f1.getName();
+		String b = f2.getName();
+		int i = 0;
+		int j = 0;
+		while(i < a.length() && j < b.length()) {
+			char ca = a.charAt(i);
+			char cb = b.charAt(j);
+			if(Character.isDigit(ca) && Character.isDigit(cb)) {
+				int endA = i;
+				int endB = j;
+				while(endA < a.length() && Character.isDigit(a.charAt(endA))) {
+					endA++;
+				}
+				while(endB < b.length() && Character.isDigit(b.charAt(endB))) {
+					endB++;
+				}
+				String da = a.substring(i, endA).replaceFirst("^0+(?=.)", "");
+				String db = b.substring(j, endB).replaceFirst("^0+(?=.)", "");
+				int cmp = da.length() != db.length() ? Integer.compare(da.length(), db.length()) : da.compareTo(db);
+				if(cmp != 0) {
+					return cmp;
+				}
+				i = endA;
+				j = endB;
+			}
+			else {
+				if(ca != cb) {
+					return Character.compare(ca, cb);
+				}
+				i++;
+				j++;
+			}
+		}
+		int cmp = Integer.compare(a.length() - i, b.length() - j);
+		return cmp != 0 ? cmp : a.compareTo(b);
+	};
+}
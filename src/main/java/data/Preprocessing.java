@@ -0,0 +1,102 @@
+package data;
+
+import util.Altruists;
+import util.ArcPruning;
+import util.CSRGraph;
+import util.CycleUtils;
+import util.VertexOrdering;
+
+/**
+ * The preprocessing applied to an instance after reading it: removal of unmatchable pairs, of the
+ * arcs that are on no cycle of at most k pairs, and ordering of the pairs. Instances that went
+ * through equal preprocessing can be shared, so the {@link #key()} is part of every cache key.
+ */
+public class Preprocessing {
+
+	/** the graph as it is in the file */
+	public static final Preprocessing NONE = new Preprocessing(false, -1);
+
+	/** what {@link XMLData} has always done: reduce, then order by descending degree */
+	public static final Preprocessing DEFAULT = new Preprocessing(true, 0);
+
+	private final boolean reduce;
+	private final int orderMode;
+	private final int pruneK;
+
+	/**
+	 * @param reduce whether unmatchable pairs are removed from the graph
+	 * @param orderMode mode of {@link VertexOrdering#byMode}, -1 keeps the file order
+	 */
+	public Preprocessing(boolean reduce, int orderMode) {
+		this(reduce, orderMode, 0);
+	}
+
+	/**
+	 * @param reduce whether unmatchable pairs are removed from the graph
+	 * @param orderMode mode of {@link VertexOrdering#byMode}, -1 keeps the file order
+	 * @param pruneK maximum cycle length for {@link ArcPruning}, 0 keeps all arcs
+	 */
+	public Preprocessing(boolean reduce, int orderMode, int pruneK) {
+		this.reduce = reduce;
+		this.orderMode = orderMode;
+		this.pruneK = pruneK;
+	}
+
+	/**
+	 * @return the default preprocessing followed by removing the arcs on no cycle of at most k pairs
+	 */
+	public static Preprocessing forCycles(int k) {
+		return new Preprocessing(true, DEFAULT.orderMode, k);
+	}
+
+	public CSRGraph apply(CSRGraph graph) {
+		return preprocess(graph).getGraph();
+	}
+
+	/**
+	 * @return the preprocessed graph with the statistics of the pruning, for the caller to report
+	 */
+	public Instance preprocess(CSRGraph graph) {
+		return preprocess(graph, Altruists.NONE);
+	}
+
+	/**
+	 * @param altruists with arcs to the pairs of graph, they keep the arcs to the pairs that remain
+	 * @return the preprocessed graph and altruists with the statistics of the pruning
+	 */
+	public Instance preprocess(CSRGraph graph, Altruists altruists) {
+		CSRGraph parsed = graph;
+		if(reduce) {
+			graph = CycleUtils.reduceMatchMatrix(graph);
+		}
+		ArcPruning pruning = null;
+		if(pruneK > 0) {
+			pruning = ArcPruning.prune(graph, pruneK);
+			graph = pruning.getGraph();
+		}
+		if(orderMode >= 0) {
+			graph = VertexOrdering.byMode(graph, orderMode).apply(graph);
+		}
+		return new Instance(graph, altruists.size() == 0 ? altruists : altruists.onto(parsed, graph), pruning);
+	}
+
+	public String key() {
+		//removed pairs are dropped from the graph since "c1", older cache files kept them isolated
+		return "c" + (reduce ? 1 : 0) + "-o" + orderMode + (pruneK > 0 ? "-k" + pruneK : "");
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof Preprocessing && key().equals(((Preprocessing) o).key());
+	}
+
+	@Override
+	public int hashCode() {
+		return key().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return key();
+	}
+}
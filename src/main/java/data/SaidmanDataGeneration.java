@@ -0,0 +1,116 @@
+package data;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import util.CSRGraph;
+import util.IntList;
+
+/**
+ * Generates pools with blood types and panel reactive antibodies (PRA) as in the generator by
+ * Saidman et al. (2006), which most kidney exchange benchmarks use. Pairs are drawn until n of them
+ * are incompatible with their own donor. Donor i can give to patient j if the blood types are
+ * compatible and the crossmatch is negative, which happens with chance 1-PRA of patient j.
+ *
+ * Patients are grouped by blood type and PRA level, so the arcs of a donor are sampled with
+ * geometric skips per group in O(12 + degree).
+ */
+public class SaidmanDataGeneration {
+
+	// blood types as antigen bits, a donor can give to a patient that has all of its antigens
+	private static final int O = 0;
+	private static final int A = 1;
+	private static final int B = 2;
+	private static final int AB = 3;
+	private static final double[] BLOOD_TYPE = {0.4814, 0.3373, 0.1428, 0.0385};
+
+	private static final double[] PRA_LEVEL = {0.7019, 0.2, 0.0981};
+	private static final double[] PRA = {0.05, 0.45, 0.90};
+
+	private static final double FEMALE = 0.4090;
+	private static final double SPOUSE = 0.4897;
+	// crossmatch with the own donor is less likely to be negative for a woman with her spouse
+	private static final double SPOUSE_REDUCTION = 0.75;
+
+	/**
+	 * gives a blood-type instance with a random seed
+	 */
+	public static CSRGraph generateGraph(int n) {
+		return generateGraph(n, new SplittableRandom().nextLong());
+	}
+
+	/**
+	 * gives a blood-type instance of n incompatible pairs
+	 * @param n amount of pairs
+	 * @param seed
+	 * @return
+	 */
+	public static CSRGraph generateGraph(int n, long seed) {
+		SplittableRandom root = new SplittableRandom(seed);
+
+		int[] donorBlood = new int[n];
+		int[] group = new int[n];
+		IntList[] members = new IntList[4*PRA.length];
+		for(int g = 0; g<members.length; g++) {
+			members[g] = new IntList();
+		}
+
+		int count = 0;
+		while(count < n) {
+			int patient = draw(root, BLOOD_TYPE);
+			int donor = draw(root, BLOOD_TYPE);
+			int level = draw(root, PRA_LEVEL);
+			double pra = PRA[level];
+			if(root.nextDouble() < FEMALE && root.nextDouble() < SPOUSE) {
+				pra = 1 - SPOUSE_REDUCTION*(1-pra);
+			}
+			boolean incompatible = !compatible(donor, patient) || root.nextDouble() < pra;
+			if(incompatible) {
+				donorBlood[count] = donor;
+				group[count] = patient*PRA.length + level;
+				members[group[count]].add(count);
+				count++;
+			}
+		}
+
+		SplittableRandom[] random = SimpleDataGeneration.split(root.nextLong(), n);
+		int[][] rows = new int[n][];
+		IntStream.range(0, n).parallel().forEach(i -> {
+			IntList row = new IntList();
+			IntList positions = new IntList();
+			for(int patient = O; patient<=AB; patient++) {
+				if(!compatible(donorBlood[i], patient)) {
+					continue;
+				}
+				for(int level = 0; level<PRA.length; level++) {
+					IntList candidates = members[patient*PRA.length + level];
+					positions.clear();
+					SimpleDataGeneration.sample(random[i], 0, candidates.size(), -1, 1-PRA[level], positions);
+					for(int p = 0; p<positions.size(); p++) {
+						int j = candidates.get(positions.get(p));
+						if(j != i) {
+							row.add(j);
+						}
+					}
+				}
+			}
+			rows[i] = SimpleDataGeneration.sorted(row);
+		});
+		return CSRGraph.fromRows(rows, null);
+	}
+
+	private static boolean compatible(int donor, int patient) {
+		return (donor & ~patient) == 0;
+	}
+
+	private static int draw(SplittableRandom r, double[] distribution) {
+		double u = r.nextDouble();
+		for(int i = 0; i<distribution.length-1; i++) {
+			u -= distribution[i];
+			if(u < 0) {
+				return i;
+			}
+		}
+		return distribution.length-1;
+	}
+}
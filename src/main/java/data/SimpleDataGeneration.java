@@ -1,10 +1,20 @@
 package data;
 
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import util.CSRGraph;
+import util.IntList;
 
 /**
  * Implements the way of generating data lined out in the paper by clmentova et al.
- * This is not the blood-type test data, but the one with differing densities.
+ * This is not the blood-type test data, but the one with differing densities, see
+ * {@link SaidmanDataGeneration} for that.
+ *
+ * Rows are generated in parallel, each from its own generator split off a seeded root in row
+ * order, so a seed gives the same instance whatever the amount of threads. Arcs are drawn by
+ * skipping a geometric amount of pairs, which costs O(n+m) instead of O(n^2).
  * @author daniel
  *
  */
@@ -17,16 +27,88 @@ public class SimpleDataGeneration {
 	 * @return
 	 */
 	public static boolean[][] generate(int n, double density){
-		
-		Random r = new Random();
-		boolean[][] matches = new boolean[n][n];
-		for(int i = 0; i<n; i++) {
-			for(int j = 0; j<n; j++) {
-				if(i!=j) {
-					matches[i][j] = r.nextDouble()<density;
+		return generateGraph(n, density).toMatrix();
+	}
+
+	/**
+	 * gives a simple data instance with a random seed
+	 */
+	public static CSRGraph generateGraph(int n, double density) {
+		return generateGraph(n, density, new SplittableRandom().nextLong());
+	}
+
+	/**
+	 * gives a simple data instance of specified size and density
+	 * @param n amount of pairs
+	 * @param density chance between 0 and 1 that any specific match is possible
+	 * @param seed
+	 * @return
+	 */
+	public static CSRGraph generateGraph(int n, double density, long seed) {
+		SplittableRandom[] random = split(seed, n);
+		int[][] rows = new int[n][];
+		IntStream.range(0, n).parallel().forEach(i -> {
+			IntList row = new IntList(expected(n-1, density));
+			sample(random[i], 0, n, i, density, row);
+			rows[i] = row.toArray();
+		});
+		return CSRGraph.fromRows(rows, null);
+	}
+
+	/**
+	 * adds every index in [from, to) except skip with chance p, in ascending order
+	 * @param r
+	 * @param from
+	 * @param to
+	 * @param skip index that is never added, -1 for none
+	 * @param p
+	 * @param dest
+	 */
+	static void sample(SplittableRandom r, int from, int to, int skip, double p, IntList dest) {
+		if(p <= 0) {
+			return;
+		}
+		if(p >= 1) {
+			for(int j = from; j<to; j++) {
+				if(j != skip) {
+					dest.add(j);
 				}
 			}
+			return;
+		}
+		double logQ = Math.log1p(-p);
+		long j = from - 1;
+		while(true) {
+			//amount of failures before the next success is geometric
+			j += 1 + (long) (Math.log(1.0 - r.nextDouble()) / logQ);
+			if(j >= to) {
+				return;
+			}
+			if(j != skip) {
+				dest.add((int) j);
+			}
+		}
+	}
+
+	/**
+	 * @return one generator per row, split off the root in row order
+	 */
+	static SplittableRandom[] split(long seed, int n) {
+		SplittableRandom root = new SplittableRandom(seed);
+		SplittableRandom[] random = new SplittableRandom[n];
+		for(int i = 0; i<n; i++) {
+			random[i] = root.split();
 		}
-		return matches;
+		return random;
+	}
+
+	static int expected(int count, double p) {
+		return Math.max(4, (int) Math.min(count, count*p*1.1));
+	}
+
+	static int[] sorted(IntList row) {
+		int[] result = row.toArray();
+		Arrays.sort(result);
+		return result;
 	}
 }
@@ -1,35 +1,185 @@
 package data;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import util.BitGraph;
+import util.CSRGraph;
+import util.FloatList;
+import util.IntList;
 
 /**
  * This class reads .wmd (weighted matching data, not Windows Media Download Package) files.
  * Kidney Matching Data Files in this format are made freely available on https://preflib.simonrey.fr/ by:
  * Nicholas Mattei and Toby Walsh. PrefLib: A Library of Preference Data. Proceedings of Third International Conference on Algorithmic Decision Theory (ADT 2013)
- * 
+ *
+ * The file is memory-mapped and parsed straight from its bytes, header lines are recognised by
+ * their key rather than their position.
  */
 public class WMDReader {
 
-	public static boolean[][] read(File file) throws FileNotFoundException {
-
-		try (Scanner sc = new Scanner(new FileReader(file))) {
-			
-			//skip info lines
-			for(int i = 0; i<9; i++) {sc.nextLine();};
-			int n = Integer.parseInt(sc.nextLine().split(" ")[3]);
-			System.out.println(n+" pairs");
-			//skip more
-			for(int i = 0; i<n+1; i++) {sc.nextLine();};
-			
-			boolean[][] matches = new boolean[n][n];
-			while(sc.hasNextLine()) {
-				String[] line = sc.nextLine().split(",");
-				matches[Integer.parseInt(line[0])-1][Integer.parseInt(line[1])-1] = true;
-			}
-			return matches;
+	private static final byte[] NUMBER_ALTERNATIVES = ascii("# NUMBER ALTERNATIVES:");
+	private static final byte[] NUMBER_EDGES = ascii("# NUMBER EDGES:");
+	private static final byte[] ALTERNATIVE_NAME = ascii("# ALTERNATIVE NAME ");
+
+	public static boolean[][] read(File file) throws IOException {
+		return readGraph(file).toMatrix();
+	}
+
+	public static BitGraph readGraph(File file) throws IOException {
+		return load(file).toBitGraph();
+	}
+
+	/**
+	 * reads the file into a sparse graph. Pair i is alternative i+1 of the file and keeps the
+	 * number in its name as id, the weight column becomes the arc score.
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static CSRGraph load(File file) throws IOException {
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			int limit = buf.limit();
+
+			int n = -1;
+			int[] ids = null;
+			IntList sources = null;
+			IntList targets = null;
+			FloatList weights = null;
+
+			int pos = 0;
+			while(pos < limit) {
+				int end = pos;
+				while(end < limit && buf.get(end) != '\n') {
+					end++;
+				}
+
+				if(buf.get(pos) == '#') {
+					if(startsWith(buf, pos, end, NUMBER_ALTERNATIVES)) {
+						n = (int) parseLong(buf, pos + NUMBER_ALTERNATIVES.length, end);
+						ids = new int[n];
+						for(int i = 0; i<n; i++) {
+							ids[i] = i+1;
+						}
+					}
+					else if(startsWith(buf, pos, end, NUMBER_EDGES)) {
+						int m = (int) parseLong(buf, pos + NUMBER_EDGES.length, end);
+						sources = new IntList(m);
+						targets = new IntList(m);
+						weights = new FloatList(m);
+					}
+					else if(startsWith(buf, pos, end, ALTERNATIVE_NAME) && ids != null) {
+						int colon = indexOf(buf, pos, end, ':');
+						int alternative = (int) parseLong(buf, pos + ALTERNATIVE_NAME.length, colon);
+						ids[alternative-1] = (int) parseLong(buf, colon+1, end);
+					}
+				}
+				else if(end > pos && buf.get(pos) != '\r') {
+					if(n < 0) {
+						throw new IOException(file.getName()+ " has no NUMBER ALTERNATIVES header");
+					}
+					if(sources == null) {
+						sources = new IntList();
+						targets = new IntList();
+						weights = new FloatList();
+					}
+					int first = indexOf(buf, pos, end, ',');
+					int second = indexOf(buf, first+1, end, ',');
+					sources.add((int) parseLong(buf, pos, first) - 1);
+					targets.add((int) parseLong(buf, first+1, second < 0 ? end : second) - 1);
+					weights.add(second < 0 ? 1f : parseFloat(buf, second+1, end));
+				}
+				pos = end+1;
+			}
+
+			if(n < 0) {
+				throw new IOException(file.getName()+ " has no NUMBER ALTERNATIVES header");
+			}
+			if(sources == null) {
+				return CSRGraph.fromArcs(n, new int[0], new int[0], new float[0], 0, ids);
+			}
+			return CSRGraph.fromArcs(n, sources.array(), targets.array(), weights.array(), sources.size(), ids);
+		}
+	}
+
+	private static boolean startsWith(MappedByteBuffer buf, int pos, int end, byte[] key) {
+		if(end - pos < key.length) {
+			return false;
+		}
+		for(int i = 0; i<key.length; i++) {
+			if(buf.get(pos+i) != key[i]) {
+				return false;
+			}
 		}
+		return true;
+	}
+
+	private static int indexOf(MappedByteBuffer buf, int pos, int end, char c) {
+		for(int i = pos; i<end; i++) {
+			if(buf.get(i) == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * parses the first integer in [pos, end), skipping anything before it
+	 */
+	private static long parseLong(MappedByteBuffer buf, int pos, int end) {
+		while(pos < end && (buf.get(pos) < '0' || buf.get(pos) > '9')) {
+			pos++;
+		}
+		long value = 0;
+		while(pos < end) {
+			byte b = buf.get(pos++);
+			if(b < '0' || b > '9') {
+				break;
+			}
+			value = value*10 + (b - '0');
+		}
+		return value;
+	}
+
+	private static float parseFloat(MappedByteBuffer buf, int pos, int end) {
+		boolean negative = false;
+		long mantissa = 0;
+		int scale = 0;
+		boolean fraction = false;
+		for(int i = pos; i<end; i++) {
+			byte b = buf.get(i);
+			if(b >= '0' && b <= '9') {
+				mantissa = mantissa*10 + (b - '0');
+				if(fraction) {
+					scale++;
+				}
+			}
+			else if(b == '.') {
+				fraction = true;
+			}
+			else if(b == '-') {
+				negative = true;
+			}
+			else if(b == 'e' || b == 'E') {
+				//exponents do not occur in the library files, leave them to the library
+				byte[] text = new byte[end-pos];
+				for(int t = 0; t<text.length; t++) {
+					text[t] = buf.get(pos+t);
+				}
+				return Float.parseFloat(new String(text, StandardCharsets.US_ASCII).trim());
+			}
+		}
+		double value = scale == 0 ? mantissa : mantissa / Math.pow(10, scale);
+		return (float) (negative ? -value : value);
+	}
+
+	private static byte[] ascii(String s) {
+		return s.getBytes(StandardCharsets.US_ASCII);
 	}
 }
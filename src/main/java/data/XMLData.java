@@ -1,113 +1,293 @@
 package data;
 
+import java.io.BufferedInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
-import javax.xml.namespace.QName;
-import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
-import org.apache.commons.lang3.tuple.ImmutablePair;
-import org.apache.commons.lang3.tuple.Pair;
-
-import util.CycleUtils;
+import util.Altruists;
+import util.BitGraph;
+import util.CSRGraph;
+import util.FloatList;
+import util.IntIntMap;
+import util.IntList;
 
 import java.io.File;
 import java.io.FileInputStream;
+
+/**
+ * Reads the xml instances by Delorme et al. in a single streaming pass. Arcs are collected in
+ * primitive buffers and turned into a {@link CSRGraph}, only donors that are also recipients are
+ * kept as pairs. Donors without a recipient of their own, marked altruistic or listed without
+ * sources, are kept apart as {@link Altruists} with their arcs to the pairs, to start chains.
+ */
 public class XMLData {
-	
-	private boolean[][] matches;
-	
-	// keys are ID's from data, values are index in matrix
-	private HashMap<Integer, Integer> ids;
-	
+
+	private static final int DONOR = 1;
+	private static final int RECIPIENT = 2;
+	private static final int SOURCE = 4;
+	private static final int ALTRUIST = 8;
+
+	private CSRGraph graph;
+	private Altruists altruists;
+	private BitGraph matches;
+
 	public XMLData(File file) {
-		
-		ArrayList<Pair<Integer, Integer>> edges = new ArrayList<>();
-		
-		int currentID = -1;
-		int max = 0;
-		SortedSet<Integer> donors = new TreeSet<>();
-		SortedSet<Integer> recipients = new TreeSet<>();
-		
+		this(file, Preprocessing.DEFAULT);
+	}
+
+	/**
+	 * reads the instance and applies preprocessing to the pairs. The altruists keep their arcs to
+	 * the pairs that remain, chains can therefore only use pairs that could also be on a cycle.
+	 */
+	public XMLData(File file, Preprocessing preprocessing) {
+		read(file);
+		Instance instance = preprocessing.preprocess(graph, altruists);
+		graph = instance.getGraph();
+		altruists = instance.getAltruists();
+	}
+
+	private XMLData() {
+	}
+
+	/**
+	 * reads the instance and applies preprocessing as {@link #XMLData(File, Preprocessing)}
+	 * @return the pairs and altruists with the statistics of the preprocessing
+	 */
+	static Instance load(File file, Preprocessing preprocessing) {
+		XMLData data = new XMLData();
+		data.read(file);
+		return preprocessing.preprocess(data.graph, data.altruists);
+	}
+
+	/**
+	 * reads the instance without reducing or ordering it
+	 * @param file
+	 * @return the pairs numbered by ascending id
+	 */
+	public static CSRGraph parse(File file) {
+		XMLData data = new XMLData();
+		data.read(file);
+		return data.graph;
+	}
+
+	/**
+	 * reads the pairs, numbered by ascending id, and the altruists of file
+	 */
+	private void read(File file) {
+
+		// ids from the data in order of appearance, with flags for the roles they were seen in
+		IntIntMap seen = new IntIntMap(1024);
+		IntList seenIds = new IntList(1024);
+		IntList roles = new IntList(1024);
+
+		IntList sources = new IntList(4096);
+		IntList targets = new IntList(4096);
+		FloatList scores = new FloatList(4096);
+
+		int current = -1;
+		boolean hasSources = false;
+
 		XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
-		try {
-			XMLEventReader reader = xmlInputFactory.createXMLEventReader(new FileInputStream(file));
-			
-			//skip first line
-			//reader.nextEvent();
-			
-			while (reader.hasNext()) {
-			    XMLEvent nextEvent = reader.nextEvent();
-			    if (nextEvent.isStartElement()) {
-			        StartElement startElement = nextEvent.asStartElement();
-			        
-			        if(startElement.getName().getLocalPart() == "entry") {
-			        	currentID = Integer.parseInt(startElement.getAttributeByName(new QName("donor_id")).getValue());
-			        	if(currentID>max) {
-			        		max = currentID;
-			        	}
-			        	donors.add(currentID);
-			        }
-			        if(startElement.getName().getLocalPart() == "recipient") {
-
-			        	nextEvent = reader.nextEvent();
-			        	
-			        	int recipient = Integer.parseInt(nextEvent.asCharacters().getData());
-			        	//for the way the donors are numbered
-			        	if(recipient>max) {
-			        		max = recipient;
-			        	}
-			        	recipients.add(recipient);
-
-			        	edges.add(new ImmutablePair<Integer, Integer>(currentID, recipient));
-			        }
-			    }
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+			XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+			try {
+				while (reader.hasNext()) {
+					if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+						continue;
+					}
+					String name = reader.getLocalName();
+
+					if(name.equals("entry")) {
+						current = indexOf(Integer.parseInt(reader.getAttributeValue(null, "donor_id")), seen, seenIds, roles);
+						roles.set(current, roles.get(current) | DONOR);
+					}
+					else if(name.equals("recipient")) {
+						int recipient = indexOf((int) readNumber(reader), seen, seenIds, roles);
+						roles.set(recipient, roles.get(recipient) | RECIPIENT);
+						sources.add(current);
+						targets.add(recipient);
+					}
+					else if(name.equals("score")) {
+						scores.add((float) readNumber(reader));
+					}
+					else if(name.equals("source")) {
+						roles.set(current, roles.get(current) | SOURCE);
+						hasSources = true;
+					}
+					else if(name.equals("altruistic") && Boolean.parseBoolean(reader.getElementText().trim())) {
+						roles.set(current, roles.get(current) | ALTRUIST);
+					}
+				}
+			} finally {
+				reader.close();
 			}
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		} catch (XMLStreamException e) {
 			e.printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
 		}
-		
-		ids = new HashMap<>();
-		int pointer = 0;
-		for(Integer d : donors) {
-			if(recipients.contains(d)) {
-				ids.put(d, pointer);
-				pointer++;
+
+		//pairs are the donors that also receive, altruists the donors that have no recipient of
+		//their own, both numbered by ascending id
+		IntList pairIds = new IntList(seenIds.size());
+		IntList altruistIds = new IntList();
+		for(int i = 0; i<seenIds.size(); i++) {
+			int role = roles.get(i);
+			if((role & DONOR) == 0) {
+				continue;
+			}
+			if((role & ALTRUIST) != 0 || (hasSources && (role & SOURCE) == 0)) {
+				altruistIds.add(seenIds.get(i));
+			}
+			else if((role & RECIPIENT) != 0) {
+				pairIds.add(seenIds.get(i));
 			}
 		}
-		
-		matches = new boolean[ids.size()][ids.size()];
-		for(Pair<Integer, Integer> p : edges) {
-			int left = p.getLeft();
-			int right = p.getRight();
-			if(left != right && ids.containsKey(left) && ids.containsKey(right)) {
-				matches[ids.get(left)][ids.get(right)] = true;
+		int[] ids = sortedIds(pairIds);
+		IntIntMap index = index(ids);
+		int[] altruistIdArray = sortedIds(altruistIds);
+		IntIntMap altruistIndex = index(altruistIdArray);
+
+		int[] src = sources.array();
+		int[] dst = targets.array();
+		float[] arcScores = scores.size() == sources.size() ? scores.array() : null;
+		int[] altruistSrc = new int[16];
+		int[] altruistDst = new int[16];
+		int m = 0;
+		int altruistArcs = 0;
+		for(int e = 0; e<sources.size(); e++) {
+			int right = index.get(seenIds.get(dst[e]));
+			if(right < 0) {
+				continue;
+			}
+			int left = index.get(seenIds.get(src[e]));
+			if(left >= 0) {
+				src[m] = left;
+				dst[m] = right;
+				if(arcScores != null) {
+					arcScores[m] = arcScores[e];
+				}
+				m++;
+			}
+			else if((left = altruistIndex.get(seenIds.get(src[e]))) >= 0) {
+				if(altruistArcs == altruistSrc.length) {
+					altruistSrc = Arrays.copyOf(altruistSrc, altruistArcs << 1);
+					altruistDst = Arrays.copyOf(altruistDst, altruistArcs << 1);
+				}
+				altruistSrc[altruistArcs] = left;
+				altruistDst[altruistArcs] = right;
+				altruistArcs++;
 			}
 		}
-		
-		matches = CycleUtils.reduceMatchMatrix(matches);
-		matches = CycleUtils.orderMatrixByDegree(matches, 0);
+
+		graph = CSRGraph.fromArcs(ids.length, src, dst, arcScores, m, ids);
+		altruists = Altruists.fromArcs(altruistIdArray.length, altruistSrc, altruistDst, altruistArcs, altruistIdArray);
+	}
+
+	private static int[] sortedIds(IntList ids) {
+		int[] result = ids.toArray();
+		Arrays.sort(result);
+		return result;
+	}
+
+	private static IntIntMap index(int[] ids) {
+		IntIntMap index = new IntIntMap(ids.length);
+		for(int i = 0; i<ids.length; i++) {
+			index.put(ids[i], i);
+		}
+		return index;
+	}
+
+	private static int indexOf(int id, IntIntMap seen, IntList seenIds, IntList roles) {
+		int index = seen.get(id);
+		if(index < 0) {
+			index = seenIds.size();
+			seen.put(id, index);
+			seenIds.add(id);
+			roles.add(0);
+		}
+		return index;
+	}
+
+	/**
+	 * reads the text of the current element as a number straight from the character buffer
+	 */
+	private static double readNumber(XMLStreamReader reader) throws XMLStreamException {
+		long value = 0;
+		boolean negative = false;
+		StringBuilder fallback = null;
+		int event;
+		while((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+			if(event != XMLStreamConstants.CHARACTERS) {
+				continue;
+			}
+			char[] text = reader.getTextCharacters();
+			int end = reader.getTextStart() + reader.getTextLength();
+			for(int c = reader.getTextStart(); c<end; c++) {
+				char ch = text[c];
+				if(fallback != null) {
+					fallback.append(ch);
+				}
+				else if(ch >= '0' && ch <= '9') {
+					value = value*10 + (ch - '0');
+				}
+				else if(ch == '-') {
+					negative = true;
+				}
+				else if(!Character.isWhitespace(ch)) {
+					//decimals and exponents are rare, leave them to the library
+					fallback = new StringBuilder().append(negative ? "-" : "").append(value).append(ch);
+				}
+			}
+		}
+		if(fallback != null) {
+			return Double.parseDouble(fallback.toString().trim());
+		}
+		return negative ? -value : value;
 	}
 
 	public boolean[][] getMatches() {
+		return graph.toMatrix();
+	}
+
+	public BitGraph getGraph() {
+		if(matches == null) {
+			matches = graph.toBitGraph();
+		}
 		return matches;
 	}
-	
-	//untested
+
+	/**
+	 * @return the sparse graph including the scores of the matches
+	 */
+	public CSRGraph getSparseGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return the altruists, with arcs to the pairs of {@link #getGraph()}
+	 */
+	public Altruists getAltruists() {
+		return altruists;
+	}
+
+	/**
+	 * @return the data ID of every pair, in matrix order
+	 */
 	public ArrayList<Integer> getIds(){
-		ArrayList<Integer> result = new ArrayList<>(this.ids.size());
-		for(Integer key : ids.keySet()) {
-			result.add(ids.get(key), key);
+		ArrayList<Integer> result = new ArrayList<>(graph.size());
+		for(int i = 0; i<graph.size(); i++) {
+			result.add(graph.id(i));
 		}
 		return result;
 	}
@@ -8,12 +8,23 @@ import java.util.concurrent.TimeUnit;
 import com.gurobi.gurobi.*;
 import com.gurobi.gurobi.GRB.*;
 
+import util.BitGraph;
+import util.CSRGraph;
+
 public class CyclePackingFormulation {
 
 	public static int solve(boolean[][] matches) throws GRBException {
+		return solve(BitGraph.fromMatrix(matches));
+	}
+
+	public static int solve(BitGraph matches) throws GRBException {
+		return solve(CSRGraph.fromBitGraph(matches));
+	}
+
+	public static int solve(CSRGraph matches) throws GRBException {
 		System.out.println("Starting no-k solve");
 
-		int n = matches.length;
+		int n = matches.size();
 		//create empty graph copies
 
 		//construct gurobi model
@@ -27,36 +38,7 @@ public class CyclePackingFormulation {
 		model.set(GRB.IntAttr.ModelSense, -1);
 		model.set(GRB.DoubleParam.TimeLimit, 1800);
 		
-		GRBVar[][] x = new GRBVar[n][n];
-		
-		for(int i = 0; i<n; i++) {
-			for(int j = 0; j<n; j++) {
-				if(matches[i][j]) {
-					x[i][j] = model.addVar(0, 1, 1, GRB.BINARY, "x["+i+"]["+j+"]");
-				}
-			}
-		}
-		
-		for(int i = 0; i<n; i++) {
-			GRBLinExpr conserv = new GRBLinExpr();
-			GRBLinExpr capac = new GRBLinExpr();
-			
-			for(int j = 0; j<n; j++) {
-				if(matches[i][j]) {
-					conserv.addTerm(1, x[i][j]);
-					capac.addTerm(1, x[i][j]);
-				}
-				if(matches[j][i]) {
-					conserv.addTerm(-1, x[j][i]);
-				}
-			}
-			if(conserv.size() != 0) {
-				model.addConstr(conserv, GRB.EQUAL, 0, "conservation"+i);
-			}
-			if(conserv.size() != 0) {
-				model.addConstr(capac, GRB.LESS_EQUAL, 1, "capac"+i);
-			}
-		}
+		GRBVar[] x = addArcConstraints(matches, model);
 		
 		long startTime = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
 		model.optimize();
@@ -68,9 +50,17 @@ public class CyclePackingFormulation {
 	}
 	
 	public static HashSet<int[]> solveWithSolution(boolean[][] matches) throws GRBException {
+		return solveWithSolution(BitGraph.fromMatrix(matches));
+	}
+
+	public static HashSet<int[]> solveWithSolution(BitGraph matches) throws GRBException {
+		return solveWithSolution(CSRGraph.fromBitGraph(matches));
+	}
+
+	public static HashSet<int[]> solveWithSolution(CSRGraph matches) throws GRBException {
 		System.out.println("Starting No-k solve");
 
-		int n = matches.length;
+		int n = matches.size();
 		//create empty graph copies
 
 		//construct gurobi model
@@ -84,28 +74,52 @@ public class CyclePackingFormulation {
 		model.set(GRB.IntAttr.ModelSense, -1);
 		model.set(GRB.DoubleParam.TimeLimit, 1800);
 		
-		GRBVar[][] x = new GRBVar[n][n];
+		GRBVar[] x = addArcConstraints(matches, model);
+		
+		long startTime = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+		model.optimize();
+		
+		HashSet<int[]> solution = new HashSet<>((int) model.get(GRB.DoubleAttr.ObjVal));
 		
 		for(int i = 0; i<n; i++) {
-			for(int j = 0; j<n; j++) {
-				if(matches[i][j]) {
-					x[i][j] = model.addVar(0, 1, 1, GRB.BINARY, "x["+i+"]["+j+"]");
+			for(int e = matches.outStart(i); e<matches.outEnd(i); e++) {
+				if(x[e].get(DoubleAttr.X) == 1.0) {
+					solution.add(new int[] {i,matches.target(e)});
 				}
 			}
 		}
 		
+		System.out.println("No-k formulation solved in: "+Math.toIntExact(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()) - startTime)+" seconds");
+		
+		System.out.println("No-k -> Pairs matched: " + model.get(GRB.DoubleAttr.ObjVal) + " out of " + n + ". \n");
+		env.dispose();
+        return solution;
+	}
+
+	/**
+	 * adds one variable per arc, indexed like the arcs of matches, with flow conservation and
+	 * capacity constraints for every pair
+	 */
+	private static GRBVar[] addArcConstraints(CSRGraph matches, GRBModel model) throws GRBException {
+		int n = matches.size();
+		GRBVar[] x = new GRBVar[matches.arcCount()];
+		
+		for(int i = 0; i<n; i++) {
+			for(int e = matches.outStart(i); e<matches.outEnd(i); e++) {
+				x[e] = model.addVar(0, 1, 1, GRB.BINARY, "x["+i+"]["+matches.target(e)+"]");
+			}
+		}
+		
 		for(int i = 0; i<n; i++) {
 			GRBLinExpr conserv = new GRBLinExpr();
 			GRBLinExpr capac = new GRBLinExpr();
 			
-			for(int j = 0; j<n; j++) {
-				if(matches[i][j]) {
-					conserv.addTerm(1, x[i][j]);
-					capac.addTerm(1, x[i][j]);
-				}
-				if(matches[j][i]) {
-					conserv.addTerm(-1, x[j][i]);
-				}
+			for(int e = matches.outStart(i); e<matches.outEnd(i); e++) {
+				conserv.addTerm(1, x[e]);
+				capac.addTerm(1, x[e]);
+			}
+			for(int e = matches.inStart(i); e<matches.inEnd(i); e++) {
+				conserv.addTerm(-1, x[matches.inArc(e)]);
 			}
 			if(conserv.size() != 0) {
 				model.addConstr(conserv, GRB.EQUAL, 0, "conservation"+i);
@@ -114,25 +128,7 @@ public class CyclePackingFormulation {
 				model.addConstr(capac, GRB.LESS_EQUAL, 1, "capac"+i);
 			}
 		}
-		
-		long startTime = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
-		model.optimize();
-		
-		HashSet<int[]> solution = new HashSet<>((int) model.get(GRB.DoubleAttr.ObjVal));
-		
-		for(int i = 0; i<n; i++) {
-			for(int j = 0; j<n; j++) {
-				if(x[i][j] != null && x[i][j].get(DoubleAttr.X) == 1.0) {
-					solution.add(new int[] {i,j});
-				}
-			}
-		}
-		
-		System.out.println("No-k formulation solved in: "+Math.toIntExact(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()) - startTime)+" seconds");
-		
-		System.out.println("No-k -> Pairs matched: " + model.get(GRB.DoubleAttr.ObjVal) + " out of " + n + ". \n");
-		env.dispose();
-        return solution;
+		return x;
 	}
 	
 	public static int upperBoundFromPacking(HashSet<int[]> packingSolution, int k) {
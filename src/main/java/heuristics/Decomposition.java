@@ -0,0 +1,149 @@
+package heuristics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+import org.jgrapht.alg.util.Pair;
+
+import com.gurobi.gurobi.GRBException;
+
+import reproduction.EEFormulation;
+import util.CSRGraph;
+import util.StrongComponents;
+
+/**
+ * Splits an instance into its strongly connected components and solves them independently, since
+ * no cycle crosses two components. Components of two pairs are a single 2-cycle, components up to
+ * exactLimit pairs are solved with the EE formulation and larger ones with the jump start and tabu
+ * local search, bounded by the cycle packing formulation. The components are solved concurrently on
+ * a work-stealing pool, largest first, and merged in component order.
+ */
+public class Decomposition {
+
+	private final ArrayList<ArrayList<Integer>> cycles;
+	private final int objective;
+	private final double bound;
+
+	private Decomposition(ArrayList<ArrayList<Integer>> cycles, double bound) {
+		this.cycles = cycles;
+		int objective = 0;
+		for(ArrayList<Integer> cycle : cycles) {
+			objective += cycle.size();
+		}
+		this.objective = objective;
+		this.bound = bound;
+	}
+
+	/**
+	 * @param matches
+	 * @param k maximum cycle length
+	 * @param exactLimit largest component that is solved exactly
+	 * @param solverTime time limit in seconds for every component
+	 * @param threads amount of components solved at the same time
+	 * @return the merged solution, with cycles on the pairs of matches
+	 * @throws GRBException
+	 */
+	public static Decomposition solve(CSRGraph matches, int k, int exactLimit, int solverTime, int threads) throws GRBException {
+		long startTime = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+		StrongComponents components = StrongComponents.of(matches);
+		int[] nonTrivial = components.nonTrivial();
+
+		int largest = 0;
+		int covered = 0;
+		for(int c : nonTrivial) {
+			largest = Math.max(largest, components.size(c));
+			covered += components.size(c);
+		}
+		System.out.println(matches.size()+ " pairs in " +nonTrivial.length+ " non-trivial components covering " +covered+ " pairs, the largest has " +largest);
+
+		//start the largest components first so the small ones fill up the pool at the end
+		Integer[] bySize = new Integer[nonTrivial.length];
+		for(int t = 0; t<nonTrivial.length; t++) {
+			bySize[t] = t;
+		}
+		Arrays.sort(bySize, (a, b) -> components.size(nonTrivial[b]) - components.size(nonTrivial[a]));
+
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+		try {
+			List<ForkJoinTask<Pair<ArrayList<ArrayList<Integer>>, Double>>> tasks = new ArrayList<>(Collections.nCopies(nonTrivial.length, null));
+			for(int t : bySize) {
+				int c = nonTrivial[t];
+				tasks.set(t, pool.submit(() -> solveComponent(components.induced(matches, c), k, exactLimit, solverTime)));
+			}
+
+			ArrayList<ArrayList<Integer>> cycles = new ArrayList<>();
+			double bound = 0;
+			for(int t = 0; t<nonTrivial.length; t++) {
+				int[] members = components.members(nonTrivial[t]);
+				Pair<ArrayList<ArrayList<Integer>>, Double> result = tasks.get(t).get();
+				for(ArrayList<Integer> local : result.getFirst()) {
+					ArrayList<Integer> cycle = new ArrayList<>(local.size());
+					for(int v : local) {
+						cycle.add(members[v]);
+					}
+					cycles.add(cycle);
+				}
+				bound += result.getSecond();
+			}
+			Decomposition solution = new Decomposition(cycles, bound);
+			System.out.println("Decomposition -> Pairs matched: " +solution.objective+ " out of " +matches.size()+ " with bound " +bound+
+					" in " +(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime())-startTime)+ " seconds");
+			return solution;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof GRBException) {
+				throw (GRBException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * @return the cycles of the solution on the pairs of component and its upper bound
+	 */
+	private static Pair<ArrayList<ArrayList<Integer>>, Double> solveComponent(CSRGraph component, int k, int exactLimit, int solverTime) throws Exception {
+		int n = component.size();
+		if(n == 2) {
+			ArrayList<ArrayList<Integer>> cycles = new ArrayList<>();
+			cycles.add(new ArrayList<>(Arrays.asList(0, 1)));
+			return new Pair<>(cycles, 2.0);
+		}
+		if(n <= exactLimit) {
+			return EEFormulation.solveWithSolution(component, k, null, solverTime);
+		}
+		int UB = CyclePackingFormulation.solve(component);
+		HashSet<ArrayList<Integer>> initialSolution = JumpStart.getJumpStart(component.toBitGraph(), k);
+		TabuLocalSearch tls = new TabuLocalSearch(component.toBitGraph(), initialSolution, k);
+		tls.run(solverTime, UB);
+		return new Pair<>(tls.getSolutionCycles(), (double) UB);
+	}
+
+	public ArrayList<ArrayList<Integer>> getCycles() {
+		return cycles;
+	}
+
+	/**
+	 * @return amount of pairs matched
+	 */
+	public int getObjective() {
+		return objective;
+	}
+
+	/**
+	 * @return sum of the upper bounds of the components
+	 */
+	public double getBound() {
+		return bound;
+	}
+}
@@ -0,0 +1,51 @@
+package heuristics;
+
+import java.util.concurrent.TimeUnit;
+
+import data.SimpleDataGeneration;
+import util.BitGraph;
+import util.CycleEnumerator;
+import util.MeetInTheMiddleEnumerator;
+
+/**
+ * Times the depth first {@link CycleEnumerator} against the {@link MeetInTheMiddleEnumerator} on
+ * simple data instances, counting the cycles of every k so nothing is stored. Every run is repeated
+ * and the fastest time is kept, after a first run that warms up the JIT.
+ *
+ * Arguments: n, density, the largest k, repetitions and seed, defaulting to 48 0.7 6 3 1.
+ */
+public class EnumerationBenchmark {
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 48;
+		double density = args.length > 1 ? Double.parseDouble(args[1]) : 0.7;
+		int maxK = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+		int repetitions = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+
+		BitGraph matches = SimpleDataGeneration.generateGraph(n, density, seed).toBitGraph();
+		System.out.println("Simple data with n = " +n+ ", density " +density+ " and " +matches.arcCount()+ " arcs");
+
+		for(int k = 3; k<=maxK; k++) {
+			CycleEnumerator dfs = new CycleEnumerator(matches, k);
+			MeetInTheMiddleEnumerator mitm = new MeetInTheMiddleEnumerator(matches, k);
+			long dfsCount = dfs.count();
+			long mitmCount = mitm.count();
+			if(dfsCount != mitmCount) {
+				throw new IllegalStateException("k = " +k+ ": depth first found " +dfsCount+ " cycles, meet in the middle " +mitmCount);
+			}
+			long dfsTime = Long.MAX_VALUE;
+			long mitmTime = Long.MAX_VALUE;
+			for(int i = 0; i<repetitions; i++) {
+				long start = System.nanoTime();
+				dfs.count();
+				dfsTime = Math.min(dfsTime, System.nanoTime() - start);
+				start = System.nanoTime();
+				mitm.count();
+				mitmTime = Math.min(mitmTime, System.nanoTime() - start);
+			}
+			System.out.println(String.format("k = %d: %d cycles, depth first %d ms, meet in the middle %d ms (%.2fx)", k, dfsCount,
+					TimeUnit.NANOSECONDS.toMillis(dfsTime), TimeUnit.NANOSECONDS.toMillis(mitmTime), dfsTime / (double) mitmTime));
+		}
+	}
+}
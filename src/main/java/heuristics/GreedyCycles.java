@@ -1,20 +1,21 @@
 package heuristics;
 
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 import java.util.Random;
-import java.util.TreeSet;
 
-import org.apache.commons.lang3.tuple.ImmutablePair;
+import util.ChainTrie;
+import util.CycleIndex;
+import util.CycleStore;
+import util.IntList;
 
 
 /**
  * This class performs a greedy heuristic that iteratively includes cycles in a solution based on
  * their rankings as defined in the thesis. The algorithm is randomized by picking a cycle from
- * a fixed number of the best solutions every iteration.
+ * a fixed number of the best solutions every iteration. Chains are ranked and picked the same way,
+ * as columns after the cycles.
  */
 public class GreedyCycles {
 
@@ -24,40 +25,80 @@ public class GreedyCycles {
 	private int 	randomSelection;
 	private int 	runTime = 0;
 	private int 	runs = 0;
-	private TreeSet<ImmutablePair<ArrayList<Integer>, Double>> 	valueTreeBase;
-	private HashMap<ArrayList<Integer>, Integer> 				cycleIndices;
+	private CycleStore 	cycles;
+	//indices of the cycles that are kept, by ascending value
+	private int[] 		ranking;
+	private CycleIndex.Conflicts 	conflicts;
+	//cycles that conflict with the solution of the current run are stamped with runs
+	private int[] 		blocked;
 	private ArrayList<ArrayList<Integer>> 	knownSolutions;
 
 	/**
-	 * Creates the TreeMap and assign cycles indices.
+	 * Ranks the cycles by value, ties by index.
 	 * @param cycles
 	 * @param cycleValues
 	 * @param aggressiveness
 	 * @param randomness
 	 */
-	public GreedyCycles(ArrayList<ArrayList<Integer>> cycles, ArrayList<Double> cycleValues,
+	public GreedyCycles(CycleStore cycles, ArrayList<Double> cycleValues,
 			double aggressiveness, int randomSelection, int v) {
+		this(cycles, new ChainTrie(0), toArray(cycleValues), aggressiveness, randomSelection, v);
+	}
+
+	public GreedyCycles(CycleStore cycles, ChainTrie chains, ArrayList<Double> columnValues,
+			double aggressiveness, int randomSelection, int v) {
+		this(cycles, chains, toArray(columnValues), aggressiveness, randomSelection, v);
+	}
 
-		n = cycles.size();
+	/**
+	 * Ranks the cycles and chains together by value, ties by index. Chain c is column
+	 * cycles.size()+c, in the values and in the results of the runs.
+	 * @param cycles
+	 * @param chains
+	 * @param columnValues the values of the cycles followed by those of the chains
+	 * @param aggressiveness
+	 * @param randomness
+	 * @param v amount of pairs
+	 */
+	public GreedyCycles(CycleStore cycles, ChainTrie chains, double[] columnValues,
+			double aggressiveness, int randomSelection, int v) {
+
+		n = cycles.size() + chains.size();
+		this.cycles = cycles;
 		this.aggressiveness = aggressiveness;
 		this.randomSelection = randomSelection;
+		this.v = v;
 
-		//rank cycles and index
-		this.valueTreeBase = new TreeSet<>(byValue);
-		this.cycleIndices = new HashMap<>();
+		//rank cycles
+		Integer[] order = new Integer[n];
 		for(int i = 0; i<n; i++) {
-			valueTreeBase.add(new ImmutablePair<>(cycles.get(i), cycleValues.get(i)));
-			cycleIndices.put(cycles.get(i), cycleIndices.size());
-
+			order[i] = i;
 		}
+		Arrays.sort(order, (c1, c2) -> Double.compare(columnValues[c1], columnValues[c2]));
 		//reduce in size
-		while(valueTreeBase.size()>(int) cycles.size()*aggressiveness){
-			valueTreeBase.pollLast();
+		ranking = new int[Math.min(n, (int) (n*aggressiveness))];
+		for(int i = 0; i<ranking.length; i++) {
+			ranking[i] = order[i];
 		}
 
+		if(chains.altruists() == 0) {
+			conflicts = cycles.index(v).conflicts(cycles);
+		}
+		else {
+			conflicts = CycleIndex.of(cycles, chains, v).conflicts(cycles, chains);
+		}
+		blocked = new int[n];
 		knownSolutions = new ArrayList<>(50000);
 	}
 
+	private static double[] toArray(ArrayList<Double> values) {
+		double[] result = new double[values.size()];
+		for(int i = 0; i<result.length; i++) {
+			result[i] = values.get(i);
+		}
+		return result;
+	}
+
 	public ArrayList<Integer> runNoFilter() {
 		runs++;
 		long startTime = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
@@ -65,25 +106,25 @@ public class GreedyCycles {
 		ArrayList<Integer> result = new ArrayList<>((int) (aggressiveness*n));
 		Random r = new Random();
 
-		//copy the base tree
-		TreeSet<ImmutablePair<ArrayList<Integer>, Double>> valueTree = new TreeSet<ImmutablePair<ArrayList<Integer>, Double>>(valueTreeBase);
-		HashSet<Integer> matchedNodes = new HashSet<>(v);
+		//the cycles still to pick from are the ones returned from the last selection, which rank
+		//before all others, followed by the ranking from next on
+		int next = 0;
+		IntList returned = new IntList(randomSelection);
+		IntList selection = new IntList(randomSelection);
 		//if there are pairs to pick left
-		while(!valueTree.isEmpty()) {
-			ArrayList<ImmutablePair<ArrayList<Integer>, Double>> selection = new ArrayList<>(randomSelection);
-
-			int selectionSize = valueTree.size()>=randomSelection ? randomSelection : valueTree.size();
-
-			selectionLoop:
-			while(selection.size() < selectionSize && valueTree.size() != 0) {
-				ImmutablePair<ArrayList<Integer>, Double> polled = valueTree.pollFirst();
-				for(Integer vertex : polled.getLeft()) {
-					if(matchedNodes.contains(vertex)) {
-						continue selectionLoop;
-					}
+		while(returned.size() > 0 || next < ranking.length) {
+			selection.clear();
+
+			int selectionSize = Math.min(randomSelection, returned.size() + ranking.length - next);
+			int taken = 0;
+
+			while(selection.size() < selectionSize && (taken < returned.size() || next < ranking.length)) {
+				int polled = taken < returned.size() ? returned.get(taken++) : ranking[next++];
+				if(blocked[polled] != runs) {
+					selection.add(polled);
 				}
-				selection.add(polled);
 			}
+			returned.clear();
 			
 			if(selection.isEmpty()) {
 				knownSolutions.add(result);
@@ -91,49 +132,47 @@ public class GreedyCycles {
 			}
 			
 
-			ArrayList<ImmutablePair<ArrayList<Integer>, Double>> selectionCopy = new ArrayList<>(selection);
-			ImmutablePair<ArrayList<Integer>, Double> selected = null;
+			IntList selectionCopy = new IntList(selection.size());
+			for(int s = 0; s<selection.size(); s++) {
+				selectionCopy.add(selection.get(s));
+			}
+			int selected = -1;
 
 			while(!selectionCopy.isEmpty()) {
 
-				selected = selectionCopy.get(r.nextInt(selectionCopy.size()));
-				selectionCopy.remove(selected);
-				result.add(cycleIndices.get(selected.getLeft()));
+				int pick = r.nextInt(selectionCopy.size());
+				selected = selectionCopy.get(pick);
+				selectionCopy.set(pick, selectionCopy.get(selectionCopy.size()-1));
+				selectionCopy.removeLast();
+				result.add(selected);
 				if(knownSolutions.contains(result)) {
 					//System.out.println("known solution encountered");
-					result.remove(cycleIndices.get(selected.getLeft()));
-					selected = null;
+					result.remove(result.size()-1);
+					selected = -1;
 				}
 				else {
 					break;
 				}
 			}
 			
-			if(selected == null) {
+			if(selected < 0) {
 				//System.out.println("branch cut, "+knownSolutions.size()+" solutions added, tree has"+ valueTree.size()+" cycles left");
 				knownSolutions.add(result);
 				continue;
 			}
 			
 
-			//result.add(cycleIndices.get(selected.getLeft()));
-			matchedNodes.addAll(selected.getLeft());
-
-			ArrayList<ImmutablePair<ArrayList<Integer>, Double>> toRemove = new ArrayList<>();
-			filterSelection:
-				for(ImmutablePair<ArrayList<Integer>, Double> other : selection) {
-					for(Integer vertex : selected.getLeft()) {
-						if(other.getLeft().contains(vertex)) {
-							toRemove.add(other);
-							continue filterSelection;
-						}
-					}
-				}
-			selection.removeAll(toRemove);
+			blocked[selected] = runs;
+			conflicts.of(selected);
+			for(int c = conflicts.next(); c>=0; c = conflicts.next()) {
+				blocked[c] = runs;
+			}
 
-			// return unused and unfiltered cycles back to the tree
-			for(ImmutablePair<ArrayList<Integer>, Double> leftOver : selection) {
-				valueTree.add(leftOver);
+			// return unused and unfiltered cycles back, in their order
+			for(int s = 0; s<selection.size(); s++) {
+				if(blocked[selection.get(s)] != runs) {
+					returned.add(selection.get(s));
+				}
 			}
 		}
 
@@ -143,10 +182,6 @@ public class GreedyCycles {
 		return result;
 	}
 
-	public Comparator<ImmutablePair<ArrayList<Integer>, Double>> byValue = 
-			((ImmutablePair<ArrayList<Integer>, Double> p1, ImmutablePair<ArrayList<Integer>, Double> p2)
-					-> Double.compare(p1.getRight(), p2.getRight()));
-
 	public double getAverageRunTime() {
 		return (double) runTime/(double) runs;
 	}
@@ -1,45 +1,70 @@
 package heuristics;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.concurrent.TimeUnit;
 
 import com.gurobi.gurobi.GRBException;
 
-import util.CycleUtils;
+import util.Altruists;
+import util.BitGraph;
+import util.ChainEnumerator;
+import util.ChainTrie;
+import util.CycleCache;
+import util.CycleScorer;
+import util.CycleStore;
 
 public class JumpStart {
 
 	public static HashSet<ArrayList<Integer>> getJumpStart(boolean[][] matches, int k) throws GRBException{
+		return getJumpStart(BitGraph.fromMatrix(matches), k);
+	}
+
+	public static HashSet<ArrayList<Integer>> getJumpStart(BitGraph matches, int k) throws GRBException{
+		return getJumpStart(matches, Altruists.NONE, k, 0);
+	}
+
+	/**
+	 * pairs off 2-cycles first and then fills up the remaining pairs greedily with cycles and with
+	 * the chains of the altruists
+	 * @param chainLength most pairs on a chain
+	 * @return the cycles as lists of pairs, the chains as lists from {@link ChainTrie#toList(int)}
+	 */
+	public static HashSet<ArrayList<Integer>> getJumpStart(BitGraph matches, Altruists altruists, int k, int chainLength) throws GRBException{
 		
 		System.out.println("Using JumpStart heuristic to find initial solution");
 		
-		int n = matches.length;
+		int n = matches.size();
 		int greedyTime = 60;
 		
 		//solve pairing formulation which gives the optimal 2-cycle matching with the lowest score per cycle
 		HashSet<ArrayList<Integer>> pairingSolution = PairingFormulation.solve(matches);
 
-		boolean[][] reducedMatches = new boolean[n][n];
-		
-		for(int i = 0; i<n; i++) {
-			for(int j = 0; j<n; j++) {
-				reducedMatches[i][j] = matches[i][j];
-			}
+		BitGraph reducedMatches = matches.copy();
+		long[] free = new long[matches.words()];
+		for(int v = 0; v<n; v++) {
+			free[v >>> 6] |= 1L << v;
 		}
 		for(ArrayList<Integer> cycle : pairingSolution) {
 			for(Integer vertex : cycle) {
-				reducedMatches[vertex] = new boolean[n];
-				for(boolean[] row : reducedMatches) {
-					row[vertex] = false;
-				}
+				reducedMatches.removeVertex(vertex);
+				free[vertex >>> 6] &= ~(1L << vertex);
 			}
 		}
 		
-		ArrayList<ArrayList<Integer>> reducedCycles = CycleUtils.getCycles(reducedMatches, k);
-		ArrayList<Double> reducedCycleScores = CycleUtils.calculateCycles(reducedMatches, reducedCycles);
+		//the cycles without paired off pairs, taken from the cached cycles of the whole instance
+		CycleStore reducedCycles = CycleCache.getCycles(matches, k, free);
+		ChainTrie chains = new ChainEnumerator(reducedMatches, altruists, chainLength).enumerate(free, null);
+		CycleScorer scorer = new CycleScorer(reducedMatches, altruists);
+		double[] reducedCycleScores = scorer.scoreAll(reducedCycles);
+		if(!chains.isEmpty()) {
+			double[] chainScores = scorer.scoreChains(chains);
+			reducedCycleScores = Arrays.copyOf(reducedCycleScores, reducedCycles.size() + chains.size());
+			System.arraycopy(chainScores, 0, reducedCycleScores, reducedCycles.size(), chainScores.length);
+		}
 		
-		GreedyCycles gc = new GreedyCycles(reducedCycles, reducedCycleScores, 1.0, 50, n);
+		GreedyCycles gc = new GreedyCycles(reducedCycles, chains, reducedCycleScores, 1.0, 50, n);
 		ArrayList<Integer> bestRun = new ArrayList<>();
 		int bestObj = 0;
 		int startTime = Math.toIntExact(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()));
@@ -47,7 +72,7 @@ public class JumpStart {
 			ArrayList<Integer> runResult = gc.runNoFilter();
 			int runObj = 0;
 			for(Integer c : runResult) {
-				runObj += reducedCycles.get(c).size();
+				runObj += c < reducedCycles.size() ? reducedCycles.length(c) : chains.length(c - reducedCycles.size());
 			}
 			if(runObj > bestObj) {
 				bestRun = runResult;
@@ -62,8 +87,14 @@ public class JumpStart {
 		}
 		
 		for(Integer v : bestRun) {
-			resultSolution.add(reducedCycles.get(v));
-			matchCount += reducedCycles.get(v).size();
+			if(v < reducedCycles.size()) {
+				resultSolution.add(reducedCycles.toList(v));
+				matchCount += reducedCycles.length(v);
+			}
+			else {
+				resultSolution.add(chains.toList(v - reducedCycles.size()));
+				matchCount += chains.length(v - reducedCycles.size());
+			}
 		}
 		System.out.println("pairing matched "+pairingSolution.size()*2+ " vertices, greedy added "+bestObj);
 		System.out.println("JumpStart heuristic solution matched "+matchCount+" vertices" );
@@ -71,21 +102,25 @@ public class JumpStart {
 	}
 	
 	public static HashSet<ArrayList<Integer>> getGreedySolution(boolean[][] matches, int k) throws GRBException{
+		return getGreedySolution(BitGraph.fromMatrix(matches), k);
+	}
+
+	public static HashSet<ArrayList<Integer>> getGreedySolution(BitGraph matches, int k) throws GRBException{
 		
-		int n = matches.length;
+		int n = matches.size();
 		int greedyRuns = 1000;
 		
-		ArrayList<ArrayList<Integer>> cycles = CycleUtils.getCycles(matches, k);
-		ArrayList<Double> cycleScores = CycleUtils.calculateCycles(matches, cycles);
+		CycleStore cycles = CycleCache.getCycles(matches, k);
+		double[] cycleScores = new CycleScorer(matches).scoreAll(cycles);
 		
-		GreedyCycles gc = new GreedyCycles(cycles, cycleScores, 1.0, 10, n);
+		GreedyCycles gc = new GreedyCycles(cycles, new ChainTrie(0), cycleScores, 1.0, 10, n);
 		ArrayList<Integer> bestRun = new ArrayList<>();
 		int bestObj = 0;
 		for(int i = 0; i<greedyRuns; i++) {
 			ArrayList<Integer> runResult = gc.runNoFilter();
 			int runObj = 0;
 			for(Integer c : runResult) {
-				runObj += cycles.get(c).size();
+				runObj += cycles.length(c);
 			}
 			if(runObj > bestObj) {
 				bestRun = runResult;
@@ -97,8 +132,8 @@ public class JumpStart {
 	
 	
 		for(Integer v : bestRun) {
-			resultSolution.add(cycles.get(v));
-			matchCount += cycles.get(v).size();
+			resultSolution.add(cycles.toList(v));
+			matchCount += cycles.length(v);
 		}
 		System.out.println("only using greedy matched "+matchCount+" vertices" );
 		return resultSolution;
@@ -6,10 +6,16 @@ import java.util.HashSet;
 import java.util.concurrent.TimeUnit;
 
 import data.WMDReader;
-import data.XMLData;
+import data.Instance;
+import data.InstanceCatalog;
+import data.Preprocessing;
 import reproduction.CycleFormulation;
 import reproduction.EEFormulation;
+import util.BitGraph;
+import util.CycleProfile;
+import util.CycleStore;
 import util.CycleUtils;
+import util.SpillingCycleStore;
 import util.TimedPrintStream;
 
 public class MainResults {
@@ -21,44 +27,45 @@ public class MainResults {
 		//final boolean[][] matches = WMDReader.read(data);
 		//final boolean[][] matches = SimpleDataGeneration.generate(n, density);
 		//System.out.println("Simple data generated with n = "+n+" and a density of "+density);
-		File folder = new File("src/main/resources/delorme");
-		File[] listOfFiles = folder.listFiles();
+		InstanceCatalog catalog = new InstanceCatalog(InstanceCatalog.DELORME);
 		
 		//parameters
 		int k				= 4;
 		int heuristicTime 	= 1800;
 		int solverTime 		= 1800;
+		//most pairs on a chain from an altruist, 0 leaves the altruists out as opts assumes
+		int chainLength		= 0;
 		int[] opts = new int[] {754,	727,	718,	807,	755,	788,	766,	810,	752,	749};
 
+		catalog.loadAll(50, 60, Preprocessing.forCycles(k));
 		for(int u = 50; u<60; u++) {
-			File data = listOfFiles[u];
+			File data = catalog.get(u);
 			System.out.println("\n");
 			System.out.println("Matching " + data.getName()+ " for k = "+k+" with matheuristic using EE");
 			
-			XMLData reader = new XMLData(data);
-			final boolean[][] matches = reader.getMatches();
+			Instance instance = catalog.loadInstance(u, Preprocessing.forCycles(k));
+			System.out.println(instance.pruningSummary());
+			final BitGraph matches = instance.getGraph().toBitGraph();
 			
-			//final boolean[][] matches = WMDReader.read(data);
-			double matchCount = 0;
-			for(boolean[] row : matches) {
-				for(boolean val : row) {
-					if(val) {
-						matchCount++;
-					}
-				}
-			}
+			//final BitGraph matches = WMDReader.readGraph(data);
+			double matchCount = matches.arcCount();
 			
 			int UB = CyclePackingFormulation.solve(matches);
-			UB = opts[u-50];
-			double density = matchCount/(double) Math.pow(matches.length,2)*100/100;
-			System.out.println("Data has " +matches.length+ " matchable pairs with an average density of " + density);
+			//the optima in opts are for cycles only, with chains every pair is the only safe bound
+			UB = chainLength > 0 ? matches.size() : opts[u-50];
+			double density = matchCount/(double) Math.pow(matches.size(),2)*100/100;
+			System.out.println("Data has " +matches.size()+ " matchable pairs with an average density of " + density);
+			CycleProfile profile = CycleProfile.count(matches, k);
+			System.out.println(profile);
+			//too many cycles for the heap, so the cycle formulation has to keep them on disk
+			boolean spill = profile.total() > 40000000;
 			
 			System.out.println("Starting Tabu local search");
 
 			
-			HashSet<ArrayList<Integer>> initialSolution = JumpStart.getJumpStart(matches, k);
+			HashSet<ArrayList<Integer>> initialSolution = JumpStart.getJumpStart(matches, instance.getAltruists(), k, chainLength);
 			
-			TabuLocalSearch tls = new TabuLocalSearch(matches, initialSolution, k);
+			TabuLocalSearch tls = new TabuLocalSearch(matches, instance.getAltruists(), chainLength, initialSolution, k);
 			tls.run(heuristicTime, UB);
 			System.out.println("final heuristic objective: "+tls.getBestObj());
 			
@@ -68,11 +75,8 @@ public class MainResults {
 			/*
 			int startTime = (int) TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
 			
-			ArrayList<ArrayList<Integer>> cycles = CycleUtils.getCycles(matches, k);
-			if(cycles.size() > 40000000) {
-				System.out.println("too many cycles, aborting");
-				continue;
-			}
+			CycleStore cycles = spill ? new SpillingCycleStore() : new CycleStore();
+			CycleUtils.getCycles(matches, k, cycles);
 			System.out.println(cycles.size()+" cycles found");
 			CycleFormulation.solveMinimal(cycles, matches, tls.getSolutionCycles());
 			System.out.println("Cycles and Cycle formulation in "+ Math.toIntExact(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()) - startTime)+"s");
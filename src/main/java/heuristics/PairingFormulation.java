@@ -17,7 +17,11 @@ import com.gurobi.gurobi.GRBLinExpr;
 import com.gurobi.gurobi.GRBModel;
 import com.gurobi.gurobi.GRBVar;
 
+import util.BitGraph;
+import util.CSRGraph;
 import util.CycleUtils;
+import util.IntList;
+import util.ShortCycles;
 
 import com.gurobi.gurobi.GRB.IntParam;
 
@@ -32,16 +36,21 @@ public class PairingFormulation {
 	 * @throws GRBException
 	 */
 	public static HashSet<ArrayList<Integer>> solve(boolean[][] matches) throws GRBException {
-		int n = matches.length;
+		return solve(BitGraph.fromMatrix(matches));
+	}
+
+	public static HashSet<ArrayList<Integer>> solve(BitGraph matches) throws GRBException {
+		return solve(CSRGraph.fromBitGraph(matches));
+	}
+
+	public static HashSet<ArrayList<Integer>> solve(CSRGraph matches) throws GRBException {
+		int n = matches.size();
 
-		ArrayList<Integer[]> cycles = new ArrayList<>();
 		//add edges
-		for(int i = 0; i<n; i++) {
-			for(int j = i; j<n; j++) {
-				if(matches[i][j] && matches[j][i]) {
-					cycles.add(new Integer[] {i, j});
-				}
-			}
+		IntList pairs = ShortCycles.twoCycles(matches.toBitGraph());
+		ArrayList<Integer[]> cycles = new ArrayList<>(pairs.size()/2);
+		for(int p = 0; p<pairs.size(); p += 2) {
+			cycles.add(new Integer[] {pairs.get(p), pairs.get(p+1)});
 		}
 
 		Random r = new Random();
@@ -96,7 +105,7 @@ public class PairingFormulation {
 				for(Integer c : vertex) {
 					expr.addTerm(1, y[c]);
 				}
-				model.addConstr(expr, GRB.LESS_EQUAL, 1, "vertex_"+cyclesPerVertex.indexOf(vertex));
+				model.addConstr(expr, GRB.LESS_EQUAL, 1, "vertex_"+v);
 			}
 		}
 
@@ -112,7 +121,7 @@ public class PairingFormulation {
 				ArrayList<Integer> list = new ArrayList<>(2);
 				list.add(cycle[0]);
 				list.add(cycle[1]);
-				if(!matches[cycle[0]][cycle[1]]) {
+				if(!matches.hasArc(cycle[0], cycle[1])) {
 					throw new IllegalArgumentException();
 				}
 				result.add(list);
@@ -8,12 +8,8 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Random;
 import java.util.TreeSet;
-import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
-import org.jgrapht.alg.cycle.HawickJamesSimpleCycles;
-import org.jgrapht.graph.DefaultEdge;
-import org.jgrapht.graph.SimpleDirectedGraph;
 
 import com.gurobi.gurobi.GRB;
 import com.gurobi.gurobi.GRBEnv;
@@ -23,53 +19,80 @@ import com.gurobi.gurobi.GRBModel;
 import com.gurobi.gurobi.GRBVar;
 import com.gurobi.gurobi.GRB.IntParam;
 
-import util.CycleUtils;
-import util.CycleUtils.CycleConsumer;
+import util.Altruists;
+import util.BitGraph;
+import util.ChainEnumerator;
+import util.ChainTrie;
+import util.CycleEnumerator;
+import util.CycleIndex;
+import util.CycleScorer;
+import util.CycleStore;
 
 /*  This class does a tabu search starting from the initial solution provided. It takes a full
 	solution, removes a certain amount of cycles, lists all possible new cycles, and restarts
 	from the best solution found. Chosen solutions are saved in a tabu list to prevent cycling.
+	With altruists, the chains through the freed pairs are listed as well and a solution holds
+	packed chains next to its packed cycles; the altruists are freed and taken like pairs.
 
  */
 public class TabuLocalSearch {
 
-	private boolean[][] matches;
+	private BitGraph matches;
 	private HashSet<ArrayList<Integer>> initialSolution;
 	private int k;
 	private HashSet<Integer> vertices;
-	private TreeSet<ImmutablePair<ArrayList<Integer>, Double>> bestSolution;
+	private TreeSet<ImmutablePair<Long, Double>> bestSolution;
 	private int bestObj;
-	private double[][] pairValues;
+	private CycleScorer scorer;
+	private CycleEnumerator enumerator;
+	private ChainEnumerator chainEnumerator;
+	private Altruists altruists;
 
 	public TabuLocalSearch(boolean[][] matches, HashSet<ArrayList<Integer>> initialSolution, int k) {
+		this(BitGraph.fromMatrix(matches), initialSolution, k);
+	}
+
+	public TabuLocalSearch(BitGraph matches, HashSet<ArrayList<Integer>> initialSolution, int k) {
+		this(matches, Altruists.NONE, 0, initialSolution, k);
+	}
+
+	/**
+	 * @param altruists with targets among the pairs of matches
+	 * @param chainLength most pairs on a chain, at most {@link ChainTrie#MAX_PACKED_PAIRS}
+	 * @param initialSolution cycles, and chains as lists from {@link ChainTrie#toList(int)}
+	 */
+	public TabuLocalSearch(BitGraph matches, Altruists altruists, int chainLength, HashSet<ArrayList<Integer>> initialSolution, int k) {
+		if(chainLength > ChainTrie.MAX_PACKED_PAIRS) {
+			throw new IllegalArgumentException("Chains of " +chainLength+ " pairs do not fit in a long");
+		}
 		this.matches = matches;
+		this.altruists = altruists;
 		this.initialSolution = initialSolution;
 		this.k = k;
 
 		int initialObj = 0;
 		for(ArrayList<Integer> c : initialSolution) {
-			initialObj += c.size();
+			initialObj += ChainTrie.isChain(c) ? c.size()-1 : c.size();
 		}
 		this.bestObj = initialObj;
 
-		vertices = new HashSet<>(matches.length);
+		vertices = new HashSet<>(matches.size());
 
-		for(int i = 0; i<matches.length; i++) {
-			boolean give = false;
-			boolean receive = false;
-			for(int j = 0; j<matches.length; j++) {
-				if(matches[i][j]) {
-					give = true;
-				}
-				if(matches[j][i]) {
-					receive = true;
-				}
-			}
-			if(give && receive) {
+		int[] inDegrees = matches.inDegrees();
+		for(int i = 0; i<matches.size(); i++) {
+			if(matches.outDegree(i) > 0 && inDegrees[i] > 0) {
 				vertices.add(i);
 			}
 		}
-		pairValues = CycleUtils.calculatePairs(matches);
+		//altruists are the vertices after the pairs
+		for(int a = 0; a<altruists.size(); a++) {
+			if(altruists.outDegree(a) > 0) {
+				vertices.add(matches.size()+a);
+			}
+		}
+		scorer = new CycleScorer(matches, altruists);
+		enumerator = new CycleEnumerator(matches, k);
+		chainEnumerator = new ChainEnumerator(matches, altruists, chainLength);
 	}
 
 	public void run(int runTime, int UB) throws Exception {
@@ -79,47 +102,46 @@ public class TabuLocalSearch {
 		int solNumILP = 1;
 		Random r = new Random();
 
-		HashSet<TreeSet<ImmutablePair<ArrayList<Integer>, Double>>> tabuList = new HashSet<>(50);
+		HashSet<TreeSet<ImmutablePair<Long, Double>>> tabuList = new HashSet<>(50);
 		//this is a monstrous variable and i apologize
-		LinkedList<ImmutablePair<TreeSet<ImmutablePair<ArrayList<Integer>, Double>>, Integer>> tabuAges = new LinkedList<>();
+		LinkedList<ImmutablePair<TreeSet<ImmutablePair<Long, Double>>, Integer>> tabuAges = new LinkedList<>();
 
 		GRBEnv env = new GRBEnv(true);
 		env.set(IntParam.OutputFlag, 0);
 		env.start();
 
 		CycleComparator cc = new CycleComparator();
-		TreeSet<ImmutablePair<ArrayList<Integer>, Double>> previousSolution = new TreeSet<>(cc);
+		TreeSet<ImmutablePair<Long, Double>> previousSolution = new TreeSet<>(cc);
 
 		for(ArrayList<Integer> c: initialSolution) {
-			previousSolution.add(new ImmutablePair<ArrayList<Integer>, Double>(c, CycleUtils.calculateCycle(matches, c, pairValues)));
+			long cycle = ChainTrie.isChain(c) ? ChainTrie.pack(c) : CycleStore.encode(c);
+			previousSolution.add(new ImmutablePair<Long, Double>(cycle, scorer.score(cycle)));
 		}
 
 		//to allow modifications of the tree map copy it
-		bestSolution = new TreeSet<ImmutablePair<ArrayList<Integer>, Double>>(cc);
+		bestSolution = new TreeSet<ImmutablePair<Long, Double>>(cc);
 		tabuList.add(previousSolution);
 
 		int improveTime = 0;
 		int iter = 0;
 		long startSecond = Instant.now().getEpochSecond();
-		ArrayList<Integer> improveMoments = new ArrayList<>(matches.length/2);
-		ArrayList<Integer> improveValues = new ArrayList<>(matches.length/2);
+		ArrayList<Integer> improveMoments = new ArrayList<>(matches.size()/2);
+		ArrayList<Integer> improveValues = new ArrayList<>(matches.size()/2);
 		improveMoments.add(0);
 		improveValues.add(bestObj);
 
-		Comparator<TreeSet<ImmutablePair<ArrayList<Integer>, Double>>> solComp = new SolutionComparator();
+		Comparator<TreeSet<ImmutablePair<Long, Double>>> solComp = new SolutionComparator();
 
 		//loop
 		while(Instant.now().getEpochSecond() < startSecond + runTime) {
 			//for the first iteration
 			if(iter == 0) {
-				ArrayList<ImmutablePair<ArrayList<Integer>, Double>> cycleList = new ArrayList<>(previousSolution.size());
-				HashSet<Integer> currentVertices = new HashSet<>(matches.length);
-				HashSet<Integer> freeVertices = new HashSet<>(matches.length);
+				ArrayList<ImmutablePair<Long, Double>> cycleList = new ArrayList<>(previousSolution.size());
+				HashSet<Integer> currentVertices = new HashSet<>(matches.size());
+				HashSet<Integer> freeVertices = new HashSet<>(matches.size());
 
-				for(ImmutablePair<ArrayList<Integer>,Double> c : previousSolution) {
-					for(Integer i : c.getLeft()) {
-						currentVertices.add(i);
-					}
+				for(ImmutablePair<Long, Double> c : previousSolution) {
+					addVertices(c.getLeft(), currentVertices);
 					cycleList.add(c);
 				}
 				for(int v : vertices) {
@@ -127,26 +149,26 @@ public class TabuLocalSearch {
 						freeVertices.add(v);
 					}
 				}
-				HashSet<HashSet<ArrayList<Integer>>> subSolutions = findSubSolutions(freeVertices, solNumILP, env);
-				HashSet<ArrayList<Integer>> sub = new HashSet<>();
+				HashSet<HashSet<Long>> subSolutions = findSubSolutions(freeVertices, solNumILP, env);
+				HashSet<Long> sub = new HashSet<>();
 				//loop over subsolutions but in this case there is only one
-				for(HashSet<ArrayList<Integer>> sol : subSolutions) {
+				for(HashSet<Long> sol : subSolutions) {
 					sub = sol;
 				}
-				TreeSet<ImmutablePair<ArrayList<Integer>, Double>> tentative = new TreeSet<>(previousSolution);
+				TreeSet<ImmutablePair<Long, Double>> tentative = new TreeSet<>(previousSolution);
 
 				//add cycles from subsolution
-				ArrayList<ImmutablePair<ArrayList<Integer>, Double>> toAdd = new ArrayList<>();
-				for(ArrayList<Integer> c : sub) {
-					toAdd.add(new ImmutablePair<ArrayList<Integer>, Double>(c, CycleUtils.calculateCycle(matches, c, pairValues)));
+				ArrayList<ImmutablePair<Long, Double>> toAdd = new ArrayList<>();
+				for(long c : sub) {
+					toAdd.add(new ImmutablePair<Long, Double>(c, scorer.score(c)));
 				}
 				tentative.addAll(toAdd);
 
 				//set as new best and current solution
 				previousSolution = tentative;
 				int objVal = 0;
-				for(ImmutablePair<ArrayList<Integer>, Double> p : tentative) {
-					objVal += p.getLeft().size();
+				for(ImmutablePair<Long, Double> p : tentative) {
+					objVal += transplants(p.getLeft());
 				}
 				//System.out.println("best found: " + objVal + " in "+neighbours.size()+ " neighbours");
 				if(objVal>bestObj) {
@@ -177,16 +199,14 @@ public class TabuLocalSearch {
 			if(tabuList.size()>TABU_SIZE) {
 				tabuList.remove(tabuAges.pollFirst().getLeft());
 			}
-			TreeSet<TreeSet<ImmutablePair<ArrayList<Integer>, Double>>> neighbours = new TreeSet<>(solComp);
+			TreeSet<TreeSet<ImmutablePair<Long, Double>>> neighbours = new TreeSet<>(solComp);
 
-			ArrayList<ImmutablePair<ArrayList<Integer>, Double>> cycleList = new ArrayList<>(previousSolution.size());
-			HashSet<Integer> currentVertices = new HashSet<>(matches.length);
+			ArrayList<ImmutablePair<Long, Double>> cycleList = new ArrayList<>(previousSolution.size());
+			HashSet<Integer> currentVertices = new HashSet<>(matches.size());
 			HashSet<Integer> freeVertices = new HashSet<>(k*SAMPLE);
 
-			for(ImmutablePair<ArrayList<Integer>,Double> c : previousSolution) {
-				for(Integer i : c.getLeft()) {
-					currentVertices.add(i);
-				}
+			for(ImmutablePair<Long, Double> c : previousSolution) {
+				addVertices(c.getLeft(), currentVertices);
 				cycleList.add(c);
 			}
 			for(int v : vertices) {
@@ -196,24 +216,24 @@ public class TabuLocalSearch {
 			}
 
 			HashSet<HashSet<Integer>> triedSamples = new HashSet<>(cycleList.size());
-			for(ImmutablePair<ArrayList<Integer>, Double> pair : previousSolution) {
-				ArrayList<ImmutablePair<ArrayList<Integer>, Double>> pairsToRemove = new ArrayList<>(SAMPLE);
+			for(ImmutablePair<Long, Double> pair : previousSolution) {
+				ArrayList<ImmutablePair<Long, Double>> pairsToRemove = new ArrayList<>(SAMPLE);
 				pairsToRemove.add(pair);
 				while(pairsToRemove.size()<SAMPLE) {
-					ImmutablePair<ArrayList<Integer>, Double> newPair = cycleList.get(r.nextInt(cycleList.size()));
+					ImmutablePair<Long, Double> newPair = cycleList.get(r.nextInt(cycleList.size()));
 					if(!pairsToRemove.contains(newPair)){
 						pairsToRemove.add(newPair);
 					}
 				}
 
-				TreeSet<ImmutablePair<ArrayList<Integer>, Double>> currentSolution = new TreeSet<>(cc);
+				TreeSet<ImmutablePair<Long, Double>> currentSolution = new TreeSet<>(cc);
 				currentSolution.addAll(previousSolution);
 				currentSolution.removeAll(pairsToRemove);
 
 				HashSet<Integer> sampledVertices = new HashSet<>(SAMPLE*k);
 
-				for(ImmutablePair<ArrayList<Integer>, Double> toRemove : pairsToRemove) {
-					sampledVertices.addAll(toRemove.getLeft());
+				for(ImmutablePair<Long, Double> toRemove : pairsToRemove) {
+					addVertices(toRemove.getLeft(), sampledVertices);
 				}
 
 				sampledVertices.addAll(freeVertices);
@@ -221,16 +241,16 @@ public class TabuLocalSearch {
 				if(!triedSamples.contains(sampledVertices)){
 					triedSamples.add(sampledVertices);
 					//get sub-solutions
-					HashSet<HashSet<ArrayList<Integer>>> subSolutions = findSubSolutions(sampledVertices, solNumILP, env);
+					HashSet<HashSet<Long>> subSolutions = findSubSolutions(sampledVertices, solNumILP, env);
 
 					//add subsolutions 
-					for(HashSet<ArrayList<Integer>> sub : subSolutions) {
-						TreeSet<ImmutablePair<ArrayList<Integer>, Double>> tentative = new TreeSet<>(currentSolution);
+					for(HashSet<Long> sub : subSolutions) {
+						TreeSet<ImmutablePair<Long, Double>> tentative = new TreeSet<>(currentSolution);
 
 						//add cycles from subsolution i
-						ArrayList<ImmutablePair<ArrayList<Integer>, Double>> toAdd = new ArrayList<>();
-						for(ArrayList<Integer> c : sub) {
-							toAdd.add(new ImmutablePair<ArrayList<Integer>, Double>(c, CycleUtils.calculateCycle(matches, c, pairValues)));
+						ArrayList<ImmutablePair<Long, Double>> toAdd = new ArrayList<>();
+						for(long c : sub) {
+							toAdd.add(new ImmutablePair<Long, Double>(c, scorer.score(c)));
 						}
 						tentative.addAll(toAdd);
 						neighbours.add(tentative);
@@ -242,12 +262,12 @@ public class TabuLocalSearch {
 			}
 			
 			while(true) {
-				TreeSet<ImmutablePair<ArrayList<Integer>, Double>> next = neighbours.pollLast();
+				TreeSet<ImmutablePair<Long, Double>> next = neighbours.pollLast();
 				if(!tabuList.contains(next)) {
 					previousSolution = next;
 					int objVal = 0;
-					for(ImmutablePair<ArrayList<Integer>, Double> p : next) {
-						objVal += p.getLeft().size();
+					for(ImmutablePair<Long, Double> p : next) {
+						objVal += transplants(p.getLeft());
 					}
 					if(objVal>bestObj) {
 						bestObj = objVal;
@@ -304,35 +324,29 @@ public class TabuLocalSearch {
 		//System.out.println(Arrays.toString(improveValues.toArray()));
 	}
 
-	private HashSet<HashSet<ArrayList<Integer>>> findSubSolutions(HashSet<Integer> freeVertices, int solNumILP, GRBEnv env) throws GRBException {
-		SimpleDirectedGraph<Integer, DefaultEdge> g = new SimpleDirectedGraph<>(DefaultEdge.class);
-
-		//add vertices
-		ArrayList<Integer> vertices = new ArrayList<>(freeVertices.size());
+	private HashSet<HashSet<Long>> findSubSolutions(HashSet<Integer> freeVertices, int solNumILP, GRBEnv env) throws GRBException {
+		int n = matches.size();
+		long[] allowed = new long[matches.words()];
+		long[] allowedAltruists = new long[(altruists.size() + 63) >>> 6];
 		for(Integer v : freeVertices) {
-			vertices.add(v);
-			g.addVertex(v);
-		}
-
-		for(Integer d : vertices) {
-			for(Integer r : vertices) {
-				if(matches[d][r]) {
-					g.addEdge(d, r);
-				}
+			if(v < n) {
+				allowed[v >>> 6] |= 1L << v;
+			}
+			else {
+				allowedAltruists[(v-n) >>> 6] |= 1L << (v-n);
 			}
 		}
 
-		//find cycles
-		HawickJamesSimpleCycles<Integer, DefaultEdge> finder = new HawickJamesSimpleCycles<>(g);
-		finder.setPathLimit(k);
-		ArrayList<ArrayList<Integer>> cycles = new ArrayList<>();
-		finder.findSimpleCycles(new CycleConsumer(cycles));
+		//find cycles and chains
+		CycleStore cycles = new CycleStore();
+		enumerator.enumerate(allowed, cycles.collector());
+		ChainTrie chains = chainEnumerator.enumerate(allowed, allowedAltruists);
 
 		//find combinations
-		return findCombinationsILP(cycles, matches, matches.length, solNumILP, env);
+		return findCombinationsILP(cycles, chains, n, solNumILP, env);
 
 	}
-	private HashSet<HashSet<ArrayList<Integer>>> findCombinationsILP(ArrayList<ArrayList<Integer>> cycles, boolean[][] matches, int n, int solNum, GRBEnv env) throws GRBException{
+	private HashSet<HashSet<Long>> findCombinationsILP(CycleStore cycles, ChainTrie chains, int n, int solNum, GRBEnv env) throws GRBException{
 
 		Random r = new Random();
 
@@ -344,54 +358,49 @@ public class TabuLocalSearch {
 		model.set(GRB.IntParam.PoolSolutions, solNum);
 		model.set(GRB.IntParam.Seed, r.nextInt(100));
 
-		GRBVar[] z = new GRBVar[cycles.size()];
+		GRBVar[] z = new GRBVar[cycles.size() + chains.size()];
+		long[] columns = new long[z.length];
 
 		for(int c = 0; c<cycles.size(); c++) {
-			String listString = cycles.get(c).stream().map(Object::toString)
-					.collect(Collectors.joining(","));
-			z[c] = model.addVar(0, 1, 0, GRB.BINARY, "z("+listString+")");
+			columns[c] = cycles.get(c);
+			z[c] = model.addVar(0, 1, 0, GRB.BINARY, "z("+CycleStore.format(columns[c])+")");
+		}
+		for(int c = 0; c<chains.size(); c++) {
+			columns[cycles.size()+c] = chains.pack(c);
+			z[cycles.size()+c] = model.addVar(0, 1, 0, GRB.BINARY, "y("+ChainTrie.format(columns[cycles.size()+c])+")");
 		}
 
 		//create objective
 		GRBLinExpr obj = new GRBLinExpr();
-		for(int c = 0; c<cycles.size(); c++) {
+		for(int c = 0; c<z.length; c++) {
 			GRBVar var = z[c];
-			obj.addTerm(cycles.get(c).size(), var);
+			obj.addTerm(transplants(columns[c]), var);
 		}
 		model.setObjective(obj, GRB.MAXIMIZE);
 
-		//assign vertices to cycles
-		ArrayList<ArrayList<Integer>> cyclesPerVertex = new ArrayList<>(n);
-		for(int i = 0; i<n; i++) {
-			cyclesPerVertex.add(new ArrayList<Integer>());
-		}
-		for(int i = 0; i<cycles.size(); i++) {
-			for(Integer v : cycles.get(i)) {
-				cyclesPerVertex.get(v).add(i);
-			}
-		}
+		//assign vertices to cycles, and altruists to chains
+		CycleIndex index = chains.altruists() == 0 ? cycles.index(n) : CycleIndex.of(cycles, chains, n);
 
 		//create constraints
-		for(ArrayList<Integer> vertex : cyclesPerVertex) {
-			if(!vertex.isEmpty()) {
+		for(int v = 0; v<index.size(); v++) {
+			if(index.degree(v) > 0) {
 				GRBLinExpr expr = new GRBLinExpr();
-				for(Integer c : vertex) {
-					expr.addTerm(1, z[c]);
+				for(int c = index.start(v); c<index.end(v); c++) {
+					expr.addTerm(1, z[index.cycle(c)]);
 				}
-				model.addConstr(expr, GRB.LESS_EQUAL, 1, "vertex_"+cyclesPerVertex.indexOf(vertex));
-
+				model.addConstr(expr, GRB.LESS_EQUAL, 1, "vertex_"+v);
 			}
 		}
 
 		model.optimize();
-		HashSet<HashSet<ArrayList<Integer>>> result = new HashSet<>(solNum);
+		HashSet<HashSet<Long>> result = new HashSet<>(solNum);
 		for(int s = 0; s<solNum; s++) {
-			HashSet<ArrayList<Integer>> solution = new HashSet<>();
+			HashSet<Long> solution = new HashSet<>();
 			model.set(GRB.IntParam.SolutionNumber, s);
 			for(int u = 0; u<z.length; u++) {
 				GRBVar var = z[u];
 				if(var.get(GRB.DoubleAttr.Xn) == 1) {
-					solution.add(cycles.get(u));
+					solution.add(columns[u]);
 				}
 			}
 			result.add(solution);
@@ -404,22 +413,45 @@ public class TabuLocalSearch {
 		return bestObj;
 	}
 
-	private class SolutionComparator implements Comparator<TreeSet<ImmutablePair<ArrayList<Integer>, Double>>>{
+	/**
+	 * @return amount of pairs matched by a packed cycle or chain
+	 */
+	private static int transplants(long column) {
+		return ChainTrie.isChain(column) ? ChainTrie.length(column) : CycleStore.length(column);
+	}
+
+	/**
+	 * adds the pairs of a packed cycle or chain to dest, and for a chain its altruist numbered after the pairs
+	 */
+	private void addVertices(long column, HashSet<Integer> dest) {
+		if(!ChainTrie.isChain(column)) {
+			for(int p = 0; p<CycleStore.length(column); p++) {
+				dest.add(CycleStore.vertex(column, p));
+			}
+			return;
+		}
+		dest.add(matches.size() + ChainTrie.altruist(column));
+		for(int p = 0; p<ChainTrie.length(column); p++) {
+			dest.add(ChainTrie.pair(column, p));
+		}
+	}
+
+	private class SolutionComparator implements Comparator<TreeSet<ImmutablePair<Long, Double>>>{
 
 		@Override
-		public int compare(TreeSet<ImmutablePair<ArrayList<Integer>, Double>> o1,
-				TreeSet<ImmutablePair<ArrayList<Integer>, Double>> o2) {
+		public int compare(TreeSet<ImmutablePair<Long, Double>> o1,
+				TreeSet<ImmutablePair<Long, Double>> o2) {
 			Integer count1 = 0;
 			Integer count2 = 0;
 			Double sum1 = 0.0;
 			Double sum2 = 0.0;
-			for(ImmutablePair<ArrayList<Integer>, Double> p : o1) {
-				count1 += p.getLeft().size();
+			for(ImmutablePair<Long, Double> p : o1) {
+				count1 += transplants(p.getLeft());
 				sum1 += p.getRight();
 			}
 
-			for(ImmutablePair<ArrayList<Integer>, Double> p : o2) {
-				count2 += p.getLeft().size();
+			for(ImmutablePair<Long, Double> p : o2) {
+				count2 += transplants(p.getLeft());
 				sum2 += p.getRight();
 			}
 			if(count1-count2 == 0) {
@@ -433,16 +465,16 @@ public class TabuLocalSearch {
 
 	}
 
-	private class CycleComparator implements Comparator<ImmutablePair<ArrayList<Integer>, Double>> {
+	private class CycleComparator implements Comparator<ImmutablePair<Long, Double>> {
 
 		@Override
-		public int compare(ImmutablePair<ArrayList<Integer>, Double> o1, ImmutablePair<ArrayList<Integer>, Double> o2) {
-			if(o1.getLeft().size()-o2.getLeft().size() == 0) {
+		public int compare(ImmutablePair<Long, Double> o1, ImmutablePair<Long, Double> o2) {
+			if(transplants(o1.getLeft())-transplants(o2.getLeft()) == 0) {
 
 				return o2.getRight().compareTo(o1.getRight());
 			}
 			else {
-				return o1.getLeft().size()-o2.getLeft().size();
+				return transplants(o1.getLeft())-transplants(o2.getLeft());
 			}
 		}
 	}
@@ -450,23 +482,32 @@ public class TabuLocalSearch {
 	public ArrayList<ArrayList<Integer>> getSolutionCycles(){
 		ArrayList<ArrayList<Integer>> toReturn = new ArrayList<>(bestSolution.size());
 
-		for(ImmutablePair<ArrayList<Integer>, Double> pair : bestSolution) {
+		for(ImmutablePair<Long, Double> pair : bestSolution) {
 
-			toReturn.add(pair.getLeft());
+			long column = pair.getLeft();
+			toReturn.add(ChainTrie.isChain(column) ? ChainTrie.toList(column) : CycleStore.toList(column));
 		}
 		return toReturn;
 	}
 
 	public boolean[][] getSolutionMatrix(){
 
-		boolean[][] toReturn = new boolean[matches.length][matches.length];
-		for(ImmutablePair<ArrayList<Integer>, Double> pair : bestSolution) {
-			ArrayList<Integer> cycle = pair.getLeft();
-			for(int i = 0; i<cycle.size()-1; i++) {
+		boolean[][] toReturn = new boolean[matches.size()][matches.size()];
+		for(ImmutablePair<Long, Double> pair : bestSolution) {
+			long cycle = pair.getLeft();
+			if(ChainTrie.isChain(cycle)) {
+				//the arc from the altruist is not in the matrix
+				for(int i = 0; i<ChainTrie.length(cycle)-1; i++) {
+					toReturn[ChainTrie.pair(cycle, i)][ChainTrie.pair(cycle, i+1)] = true;
+				}
+				continue;
+			}
+			int length = CycleStore.length(cycle);
+			for(int i = 0; i<length-1; i++) {
 
-				toReturn[cycle.get(i)][cycle.get(i+1)] = true;
+				toReturn[CycleStore.vertex(cycle, i)][CycleStore.vertex(cycle, i+1)] = true;
 			}
-			toReturn[cycle.get(cycle.size()-1)][cycle.get(0)] = true;
+			toReturn[CycleStore.vertex(cycle, length-1)][CycleStore.vertex(cycle, 0)] = true;
 		}
 
 
@@ -13,9 +13,14 @@ import org.jgrapht.alg.util.Pair;
 
 import com.gurobi.gurobi.GRBException;
 
-import data.XMLData;
+import data.Instance;
+import data.InstanceCatalog;
+import data.Preprocessing;
 import reproduction.CycleFormulation;
 import reproduction.EEFormulation;
+import util.CSRGraph;
+import util.CycleCache;
+import util.CycleStore;
 import util.CycleUtils;
 import util.TimedPrintStream;
 
@@ -24,22 +29,23 @@ public class Test {
 	public static void main(String[] args) throws Exception {		
 		final int k = 4;
 
-		File folder = new File("src/main/resources/delorme");
-		File[] listOfFiles = folder.listFiles();
+		InstanceCatalog catalog = new InstanceCatalog(InstanceCatalog.DELORME);
+		catalog.loadAll(30, 40, Preprocessing.forCycles(k));
 
 		double avg = 0.0;
 		for(int u = 30; u<40; u++) {
 
-			File data = listOfFiles[u];
+			File data = catalog.get(u);
 			System.out.println("Matching " + data.getName()+ " for k = "+k+" with matheuristic using EE");
 			
-			XMLData reader = new XMLData(data);
-			final boolean[][] matches = reader.getMatches();
-			int n = matches.length;
+			Instance instance = catalog.loadInstance(u, Preprocessing.forCycles(k));
+			System.out.println(instance.pruningSummary());
+			final CSRGraph matches = instance.getGraph();
+			int n = matches.size();
 			int startTime = Math.toIntExact(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()));
 			EEFormulation.solve(matches, 4, null, 10000, 1800);
 			/*
-			ArrayList<ArrayList<Integer>> cycles = CycleUtils.getCycles(matches, k);
+			CycleStore cycles = CycleCache.getCycles(matches, k);
 			CycleFormulation.solveMinimal(cycles, matches, new ArrayList<>());
 			*/
 			avg += Math.toIntExact(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()))-startTime;
@@ -96,7 +102,7 @@ public class Test {
 
 		int n = matches.length;
 
-		ArrayList<ArrayList<Integer>> cycles = CycleUtils.getCycles(matches, k);
+		CycleStore cycles = CycleCache.getCycles(matches, k);
 		GreedyCycles gc = new GreedyCycles(cycles, CycleUtils.calculateCycles(matches, cycles), aggressiveness, randomSelection, matches.length);
 
 		for(int i = 0; i<iter; i++) {
@@ -107,13 +113,13 @@ public class Test {
 			ArrayList<Integer> result = gc.runNoFilter();
 			int pairCount = 0;
 			for(Integer c : result) {
-				pairCount += cycles.get(c).size();
+				pairCount += cycles.length(c);
 			}
 			if(pairCount>best) {
 				best = pairCount;
 				bestSolution = new HashSet<>(n/2);
 				for(Integer c : result) {
-					bestSolution.add(cycles.get(c));
+					bestSolution.add(cycles.toList(c));
 				}
 			}
 		}
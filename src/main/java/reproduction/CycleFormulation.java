@@ -6,10 +6,9 @@ import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 import org.jgrapht.alg.util.Pair;
 
@@ -25,13 +24,25 @@ import com.gurobi.gurobi.GRB.IntParam;
 import data.SimpleDataGeneration;
 import data.WMDReader;
 import data.XMLData;
+import util.Altruists;
+import util.BitGraph;
+import util.ChainEnumerator;
+import util.ChainTrie;
+import util.CycleCache;
+import util.CycleIndex;
+import util.CycleScorer;
+import util.CycleStore;
 import util.CycleUtils;
+import util.MappedCycleStore;
+import util.SpillingCycleStore;
 
 /**
  * Solves the cycle formulation of the problem
  */
 public class CycleFormulation {
 
+	private static final int SOL_NUM = 100;
+
 	public static Pair<Integer, Double> run(File data, int k, ArrayList<Double> cycleValuesAll, ArrayList<Double> cycleValuesSol) throws GRBException, IOException {
 		System.out.println("["+LocalTime.now().truncatedTo(ChronoUnit.MINUTES).toString()+"] "+"Matching " + data.getName());
 
@@ -42,6 +53,16 @@ public class CycleFormulation {
 		final boolean[][] matches = SimpleDataGeneration.generate(128, 0.7);
 		//XMLData reader = new XMLData(data);
 		//final boolean[][] matches = reader.getMatches();
+		return run(matches, k, false, cycleValuesAll, cycleValuesSol);
+	}
+
+	/**
+	 * lists the cycles of matches and solves the cycle formulation
+	 * @param cache whether the cycles go through {@link CycleCache}, only for graphs that come back
+	 * between runs such as a preprocessed instance
+	 * @return the solving time and the time taken to list the cycles
+	 */
+	public static Pair<Integer, Double> run(boolean[][] matches, int k, boolean cache, ArrayList<Double> cycleValuesAll, ArrayList<Double> cycleValuesSol) throws GRBException, IOException {
 		int n = matches.length;
 
 		double matchCount = 0;
@@ -53,7 +74,7 @@ public class CycleFormulation {
 			}
 		}
 		long startTime = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
-		ArrayList<ArrayList<Integer>> cycles = CycleUtils.getCycles(matches, k);
+		CycleStore cycles = cache ? CycleCache.getCycles(matches, k) : CycleUtils.getCycles(matches, k);
 		Integer T = Math.toIntExact(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()) - startTime);
 		System.out.println(cycles.size()+" cycles found in "+T+ "s");
 		double density = matchCount/(double) Math.pow(matches.length,2)*100/100;
@@ -65,6 +86,32 @@ public class CycleFormulation {
 
 		return result;
 	}
+	/**
+	 * lists the cycles of at most k pairs and the chains of at most chainLength pairs of data and
+	 * solves the cycle formulation with both
+	 * @return the solving time and the time taken to list the cycles and chains
+	 */
+	public static Pair<Integer, Double> run(XMLData data, int k, int chainLength, ArrayList<Double> cycleValuesAll, ArrayList<Double> cycleValuesSol) throws GRBException, IOException {
+		return run(data.getGraph(), data.getAltruists(), k, chainLength, cycleValuesAll, cycleValuesSol);
+	}
+
+	/**
+	 * as {@link #run(XMLData, int, int, ArrayList, ArrayList)} for the graph and altruists of an
+	 * instance, such as a {@link data.Instance} of the catalog. The cycles go through the {@link CycleCache}.
+	 * @param altruists with arcs to the pairs of matches
+	 */
+	public static Pair<Integer, Double> run(BitGraph matches, Altruists altruists, int k, int chainLength, ArrayList<Double> cycleValuesAll, ArrayList<Double> cycleValuesSol) throws GRBException, IOException {
+		long startTime = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+		CycleStore cycles = CycleCache.getCycles(matches, k);
+		ChainTrie chains = new ChainEnumerator(matches, altruists, chainLength).enumerate();
+		Integer T = Math.toIntExact(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()) - startTime);
+		System.out.println(cycles.size()+" cycles and "+chains.size()+" chains from "+altruists.size()+" altruists found in "+T+ "s");
+
+		Pair<Integer, Double> result = solve(cycles, chains, altruists, matches.toMatrix(), matches.size(), cycleValuesAll, cycleValuesSol);
+		result.setSecond((double) T);
+		return result;
+	}
+
 	/**
 	 * initiates solve
 	 * 
@@ -72,87 +119,154 @@ public class CycleFormulation {
 	 * @throws IOException 
 	 * @throws GRBException 
 	 */
-	public static Pair<Integer, Double> solve(ArrayList<ArrayList<Integer>> cycles, boolean[][] matches, int n, ArrayList<Double> cycleValuesAll, ArrayList<Double> cycleValuesSol) throws IOException, GRBException {
-
-
-		int solNum = 100;
-		Random r = new Random();
-
-		GRBEnv env = new GRBEnv(true);
-		env.set(IntParam.OutputFlag, 0);
-		env.start();
-
-		GRBModel model = new GRBModel(env);
-		model.set(GRB.DoubleParam.TimeLimit, 1800.0);
-		
-		model.set(GRB.DoubleParam.PoolGap, 0.5);
-		model.set(GRB.IntParam.PoolSearchMode, 2);
+	public static Pair<Integer, Double> solve(CycleStore cycles, boolean[][] matches, int n, ArrayList<Double> cycleValuesAll, ArrayList<Double> cycleValuesSol) throws IOException, GRBException {
+		return solve(cycles, new ChainTrie(0), Altruists.NONE, matches, n, cycleValuesAll, cycleValuesSol);
+	}
 
-		model.set(GRB.IntParam.PoolSolutions, solNum);
-		model.set(GRB.IntParam.Seed, r.nextInt(100));
+	/**
+	 * solves the cycle formulation with a column for every cycle and every chain. Every pair is in
+	 * at most one column and so is every altruist, a chain counts the pairs on it.
+	 * @param chains on the altruists of altruists
+	 */
+	public static Pair<Integer, Double> solve(CycleStore cycles, ChainTrie chains, Altruists altruists, boolean[][] matches, int n, ArrayList<Double> cycleValuesAll, ArrayList<Double> cycleValuesSol) throws IOException, GRBException {
 
-		
-		/*
-		 
-		model.set(GRB.DoubleParam.Heuristics, 1.0);
-		
-        model.set(GRB.IntParam.MIPFocus, 2);
-        model.set(GRB.IntParam.SolutionLimit, Integer.MAX_VALUE);
-        model.set(GRB.DoubleParam.ImproveStartGap, Double.POSITIVE_INFINITY);
-        model.set(GRB.DoubleParam.ImproveStartTime, Double.POSITIVE_INFINITY);
-        model.set(GRB.DoubleParam.NoRelHeurTime, Double.POSITIVE_INFINITY);
-        model.set(GRB.DoubleParam.NoRelHeurWork, Double.POSITIVE_INFINITY);
-        model.set(GRB.IntParam.RINS, 1);
-		
-        */
+		GRBEnv env = newEnv();
+		GRBModel model = newModel(env);
 
-		// create list of cycle variables
-		GRBVar[] z = new GRBVar[cycles.size()];
+		// create list of cycle variables, followed by the chains
+		GRBVar[] z = new GRBVar[cycles.size() + chains.size()];
 		
 		//if(cycles.size()>24000000) {
 		//	return null;
 		//}
 		
 		for(int c = 0; c<cycles.size(); c++) {
-			String listString = cycles.get(c).stream().map(Object::toString)
-					.collect(Collectors.joining(","));
-			z[c] = model.addVar(0, 1, 0, GRB.BINARY, "z("+listString+")");
+			z[c] = model.addVar(0, 1, 0, GRB.BINARY, "z("+CycleStore.format(cycles.get(c))+")");
+		}
+		for(int c = 0; c<chains.size(); c++) {
+			z[cycles.size()+c] = model.addVar(0, 1, 0, GRB.BINARY, "y("+c+")");
 		}
 
 		//create objective
 		GRBLinExpr obj = new GRBLinExpr();
 		for(int c = 0; c<cycles.size(); c++) {
 			GRBVar var = z[c];
-			obj.addTerm(cycles.get(c).size(), var);
+			obj.addTerm(cycles.length(c), var);
+		}
+		for(int c = 0; c<chains.size(); c++) {
+			obj.addTerm(chains.length(c), z[cycles.size()+c]);
 		}
 		model.setObjective(obj, GRB.MAXIMIZE);
 
-		//assign vertices to cycles
-		ArrayList<ArrayList<Integer>> cyclesPerVertex = new ArrayList<>(n);
-		for(int i = 0; i<n; i++) {
-			cyclesPerVertex.add(new ArrayList<Integer>());
-		}
-		for(int i = 0; i<cycles.size(); i++) {
-			for(Integer v : cycles.get(i)) {
-				cyclesPerVertex.get(v).add(i);
-			}
-		}
+		//assign vertices to cycles, and altruists to chains
+		CycleIndex index = chains.altruists() == 0 ? cycles.index(n) : CycleIndex.of(cycles, chains, n);
 
 		int emptyCounter = 0;
 		//create constraints
-		for(ArrayList<Integer> vertex : cyclesPerVertex) {
-			if(!vertex.isEmpty()) {
+		for(int v = 0; v<index.size(); v++) {
+			if(index.degree(v) > 0) {
 				GRBLinExpr expr = new GRBLinExpr();
-				for(Integer c : vertex) {
-					expr.addTerm(1, z[c]);
+				for(int c = index.start(v); c<index.end(v); c++) {
+					expr.addTerm(1, z[index.cycle(c)]);
 				}
-				model.addConstr(expr, GRB.LESS_EQUAL, 1, "vertex_"+cyclesPerVertex.indexOf(vertex));
+				model.addConstr(expr, GRB.LESS_EQUAL, 1, v < n ? "vertex_"+v : "altruist_"+(v-n));
 			}
-			else {
+			else if(v < n) {
 				emptyCounter++;
 			}
 		}
 
+		return optimize(env, model, z, cycles, chains, altruists, matches, emptyCounter, cycleValuesAll, cycleValuesSol);
+	}
+
+	/**
+	 * lists the cycles of matches and builds the cycle formulation at the same time, through a
+	 * {@link CycleModelBuilder}, so the cycles are never listed in full before the model is built
+	 * @return the solving time and the time taken to list the cycles and build the model
+	 */
+	public static Pair<Integer, Double> runPipelined(boolean[][] matches, int k, ArrayList<Double> cycleValuesAll, ArrayList<Double> cycleValuesSol) throws GRBException, IOException {
+		return runPipelined(matches, k, false, false, cycleValuesAll, cycleValuesSol);
+	}
+
+	/**
+	 * as {@link #runPipelined(boolean[][], int, ArrayList, ArrayList)}
+	 * @param spill whether the cycles go to a {@link SpillingCycleStore}, for when they do not fit in the heap
+	 * @param cache whether the cycles are put in the {@link CycleCache} once listed, so the next run
+	 * of the same instance maps them instead
+	 */
+	public static Pair<Integer, Double> runPipelined(boolean[][] matches, int k, boolean spill, boolean cache, ArrayList<Double> cycleValuesAll, ArrayList<Double> cycleValuesSol) throws GRBException, IOException {
+		int n = matches.length;
+		BitGraph graph = BitGraph.fromMatrix(matches);
+		GRBEnv env = newEnv();
+		GRBModel model = newModel(env);
+
+		CycleStore cycles = spill ? new SpillingCycleStore() : new CycleStore();
+		try {
+			long startTime = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+			CycleModelBuilder builder = new CycleModelBuilder(model, n, cycles);
+			builder.build(graph, k, ForkJoinPool.commonPool());
+			Integer T = Math.toIntExact(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()) - startTime);
+			System.out.println(cycles.size()+" cycles found and added in "+T+ "s");
+			if(cache) {
+				CycleCache.put(graph, k, cycles);
+			}
+
+			Pair<Integer, Double> result = optimize(env, model, builder.getVars(), cycles, new ChainTrie(0), Altruists.NONE, matches, builder.getEmptyCount(), cycleValuesAll, cycleValuesSol);
+			result.setSecond((double) T);
+			return result;
+		} finally {
+			if(spill) {
+				((SpillingCycleStore) cycles).close();
+			}
+		}
+	}
+
+	private static GRBEnv newEnv() throws GRBException {
+		GRBEnv env = new GRBEnv(true);
+		env.set(IntParam.OutputFlag, 0);
+		env.start();
+		return env;
+	}
+
+	/**
+	 * @return an empty model with the parameters of the cycle formulation
+	 */
+	private static GRBModel newModel(GRBEnv env) throws GRBException {
+		Random r = new Random();
+
+		GRBModel model = new GRBModel(env);
+		model.set(GRB.DoubleParam.TimeLimit, 1800.0);
+
+		model.set(GRB.DoubleParam.PoolGap, 0.5);
+		model.set(GRB.IntParam.PoolSearchMode, 2);
+
+		model.set(GRB.IntParam.PoolSolutions, SOL_NUM);
+		model.set(GRB.IntParam.Seed, r.nextInt(100));
+
+
+		/*
+
+		model.set(GRB.DoubleParam.Heuristics, 1.0);
+
+        model.set(GRB.IntParam.MIPFocus, 2);
+        model.set(GRB.IntParam.SolutionLimit, Integer.MAX_VALUE);
+        model.set(GRB.DoubleParam.ImproveStartGap, Double.POSITIVE_INFINITY);
+        model.set(GRB.DoubleParam.ImproveStartTime, Double.POSITIVE_INFINITY);
+        model.set(GRB.DoubleParam.NoRelHeurTime, Double.POSITIVE_INFINITY);
+        model.set(GRB.DoubleParam.NoRelHeurWork, Double.POSITIVE_INFINITY);
+        model.set(GRB.IntParam.RINS, 1);
+
+        */
+		return model;
+	}
+
+	/**
+	 * solves the cycle formulation in model and scores its cycles and chains
+	 * @param z the variable of every cycle in cycles, followed by those of the chains
+	 */
+	private static Pair<Integer, Double> optimize(GRBEnv env, GRBModel model, GRBVar[] z, CycleStore cycles, ChainTrie chains, Altruists altruists, boolean[][] matches, int emptyCounter, ArrayList<Double> cycleValuesAll, ArrayList<Double> cycleValuesSol) throws GRBException {
+		int n = matches.length;
+
 		long startTime = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
 		model.optimize();
 		Integer T = Math.toIntExact(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()) - startTime);
@@ -166,7 +280,7 @@ public class CycleFormulation {
 		
 
 		int equiCounter = 1;
-		for(int i = 1; i<solNum; i++) {
+		for(int i = 1; i<SOL_NUM; i++) {
 			model.set(GRB.IntParam.SolutionNumber, i);
 			if(model.get(GRB.DoubleAttr.PoolObjVal) == model.get(GRB.DoubleAttr.ObjVal)) {
 				equiCounter ++;
@@ -176,8 +290,26 @@ public class CycleFormulation {
 
 		System.out.println("Number of equivalent solutions: "+ equiCounter);
 		
-		ArrayList<Double> cycleScores = CycleUtils.calculateCycles(matches, cycles);
-		cycleValuesAll.addAll(cycleScores);
+		CycleScorer scorer = new CycleScorer(BitGraph.fromMatrix(matches), altruists);
+		double[] chainScores = scorer.scoreChains(chains);
+		//cycles kept off the heap are only scored where they are in a solution, a score of every
+		//cycle would take the heap that was saved
+		boolean offHeap = cycles instanceof MappedCycleStore;
+		double[] cycleScores = offHeap ? null : scorer.scoreAll(cycles);
+		CycleScorer.Lazy lazyScores = offHeap ? scorer.lazy(cycles) : null;
+		if(offHeap) {
+			System.out.println("Cycles are off the heap, only the scores of the solution are kept");
+		}
+		else {
+			cycleValuesAll.ensureCapacity(cycleValuesAll.size() + z.length);
+			for(double score : cycleScores) {
+				cycleValuesAll.add(score);
+			}
+			for(double score : chainScores) {
+				cycleValuesAll.add(score);
+			}
+		}
+		int cycleCount = cycles.size();
 		ArrayList<Integer> solutionCycles = new ArrayList<>();
 		for(int s = 0; s<equiCounter; s++) {
 			model.set(GRB.IntParam.SolutionNumber, s);
@@ -185,7 +317,12 @@ public class CycleFormulation {
 				GRBVar var = z[u];
 				if(var.get(GRB.DoubleAttr.Xn) == 1) {
 					solutionCycles.add(u);
-					cycleValuesSol.add(cycleScores.get(u));
+					if(u >= cycleCount) {
+						cycleValuesSol.add(chainScores[u - cycleCount]);
+					}
+					else {
+						cycleValuesSol.add(offHeap ? lazyScores.get(u) : cycleScores[u]);
+					}
 				}
 			}
 		}
@@ -199,13 +336,12 @@ public class CycleFormulation {
 		double[] scoreAvgAll = new double[3];
 		
 		for(Integer c : solutionCycles) {
-			sizeCounterSol[cycles.get(c).size()-2]++;
-			scoreAvgSol[cycles.get(c).size()-2] += cycleValuesAll.get(c);
+			sizeCounterSol[cycles.length(c)-2]++;
+			scoreAvgSol[cycles.length(c)-2] += cycleValuesAll.get(c);
 		}
 		for(int i = 0; i<cycles.size(); i++) {
-			ArrayList<Integer> cycle = cycles.get(i);
-			sizeCounterAll[cycle.size()-2]++;
-			scoreAvgAll[cycle.size()-2] += cycleValuesAll.get(i);
+			sizeCounterAll[cycles.length(i)-2]++;
+			scoreAvgAll[cycles.length(i)-2] += cycleValuesAll.get(i);
 		}
 		for(int i = 0; i<3; i++) {
 			scoreAvgSol[i] = scoreAvgSol[i]/(double)sizeCounterSol[i]; 
@@ -224,7 +360,7 @@ public class CycleFormulation {
 		return result;
 	}
 	
-	public static Integer solveMinimal(ArrayList<ArrayList<Integer>> cycles, boolean[][] matches, ArrayList<ArrayList<Integer>> initialSolution) throws IOException, GRBException {
+	public static Integer solveMinimal(CycleStore cycles, boolean[][] matches, ArrayList<ArrayList<Integer>> initialSolution) throws IOException, GRBException {
 
 		int n = matches.length;
 		
@@ -246,20 +382,21 @@ public class CycleFormulation {
         model.set(GRB.IntParam.MIPFocus, 1);
         */
 		
-        //turn initialSolution into hashset for faster lookup
-        HashSet<ArrayList<Integer>> initialCycles = new HashSet<>(initialSolution.size());
-        initialCycles.addAll(initialSolution);
+        //pack and sort initialSolution for faster lookup
+        long[] initialCycles = new long[initialSolution.size()];
+        for(int c = 0; c<initialCycles.length; c++) {
+            initialCycles[c] = CycleStore.encode(initialSolution.get(c));
+        }
+        Arrays.sort(initialCycles);
         
 		// create list of cycle variables
 		GRBVar[] z = new GRBVar[cycles.size()];
 		
 		for(int c = 0; c<cycles.size(); c++) {
-			String listString = cycles.get(c).stream().map(Object::toString)
-					.collect(Collectors.joining(","));
-			z[c] = model.addVar(0, 1, 0, GRB.BINARY, "z("+listString+")");
+			z[c] = model.addVar(0, 1, 0, GRB.BINARY, "z("+CycleStore.format(cycles.get(c))+")");
 			
 			//if this cycle is in initial solution set as start
-			if(initialCycles.contains(cycles.get(c))){
+			if(Arrays.binarySearch(initialCycles, cycles.get(c)) >= 0){
 				z[c].set(DoubleAttr.Start, 1.0);
 			}
 		}
@@ -268,29 +405,21 @@ public class CycleFormulation {
 		GRBLinExpr obj = new GRBLinExpr();
 		for(int c = 0; c<cycles.size(); c++) {
 			GRBVar var = z[c];
-			obj.addTerm(cycles.get(c).size(), var);
+			obj.addTerm(cycles.length(c), var);
 		}
 		model.setObjective(obj, GRB.MAXIMIZE);
 
 		//assign vertices to cycles
-		ArrayList<ArrayList<Integer>> cyclesPerVertex = new ArrayList<>(n);
-		for(int i = 0; i<n; i++) {
-			cyclesPerVertex.add(new ArrayList<Integer>());
-		}
-		for(int i = 0; i<cycles.size(); i++) {
-			for(Integer v : cycles.get(i)) {
-				cyclesPerVertex.get(v).add(i);
-			}
-		}
-
+		CycleIndex index = cycles.index(n);
 
-		for(ArrayList<Integer> vertex : cyclesPerVertex) {
-			if(!vertex.isEmpty()) {
+		//create constraints
+		for(int v = 0; v<n; v++) {
+			if(index.degree(v) > 0) {
 				GRBLinExpr expr = new GRBLinExpr();
-				for(Integer c : vertex) {
-					expr.addTerm(1, z[c]);
+				for(int c = index.start(v); c<index.end(v); c++) {
+					expr.addTerm(1, z[index.cycle(c)]);
 				}
-				model.addConstr(expr, GRB.LESS_EQUAL, 1, "vertex_"+cyclesPerVertex.indexOf(vertex));
+				model.addConstr(expr, GRB.LESS_EQUAL, 1, "vertex_"+v);
 			}
 		}
 
@@ -302,7 +431,7 @@ public class CycleFormulation {
 		for(int c = 0; c<cycles.size(); c++) {
 			if(z[c].get(DoubleAttr.X) == 1.0){
 				result.add(c);
-				objVal += cycles.get(c).size();
+				objVal += cycles.length(c);
 			}
 		}
 		System.out.println("Final value found: " +objVal);
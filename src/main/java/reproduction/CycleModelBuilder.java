@@ -0,0 +1,247 @@
+package reproduction;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import com.gurobi.gurobi.GRB;
+import com.gurobi.gurobi.GRBException;
+import com.gurobi.gurobi.GRBLinExpr;
+import com.gurobi.gurobi.GRBModel;
+import com.gurobi.gurobi.GRBVar;
+
+import util.BitGraph;
+import util.CycleEnumerator;
+import util.CycleStore;
+import util.IntList;
+
+/**
+ * Builds the cycle formulation while the cycles are being listed. The enumeration runs on a
+ * producer thread, in the unordered mode of {@link CycleEnumerator}, and every thread of it packs
+ * its cycles into batches that go through a bounded queue. The calling thread adds every batch to
+ * the model with a single addVars, with the cycle length as objective and no names, and notes the
+ * new variables under each of their pairs, so the vertex constraints can be added as soon as the
+ * last batch is in. The queue holds at most {@link #QUEUE_BATCHES} batches, which blocks the
+ * enumeration whenever the model falls behind.
+ *
+ * The cycles are kept packed in a {@link CycleStore}, at 8 bytes each, to score them and read the
+ * solution. Their order depends on the threads, so it can differ between runs.
+ */
+public class CycleModelBuilder {
+
+	public static final int BATCH_SIZE = 4096;
+	public static final int QUEUE_BATCHES = 64;
+
+	//marks the end of the cycles
+	private static final long[] END = new long[0];
+
+	private final GRBModel model;
+	private final int n;
+	private final CycleStore cycles;
+	private final IntList[] members;
+	private GRBVar[] vars = new GRBVar[BATCH_SIZE];
+	private int emptyCount;
+
+	//reused by every addVars
+	private final double[] lb = new double[BATCH_SIZE];
+	private final double[] ub = new double[BATCH_SIZE];
+	private final double[] obj = new double[BATCH_SIZE];
+	private final char[] types = new char[BATCH_SIZE];
+
+	private final BlockingQueue<long[]> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+	private volatile boolean cancelled;
+	private volatile Throwable failure;
+
+	/**
+	 * @param model an empty model, which gets the variables, objective and constraints
+	 * @param n amount of pairs
+	 */
+	public CycleModelBuilder(GRBModel model, int n) {
+		this(model, n, new CycleStore());
+	}
+
+	/**
+	 * @param model an empty model, which gets the variables, objective and constraints
+	 * @param n amount of pairs
+	 * @param cycles an empty store that gets the cycles, such as a {@link util.SpillingCycleStore}
+	 */
+	public CycleModelBuilder(GRBModel model, int n, CycleStore cycles) {
+		if(n > CycleStore.MAX_PAIRS) {
+			throw new IllegalArgumentException("Cycles of " +n+ " pairs do not fit in a cycle store");
+		}
+		this.model = model;
+		this.n = n;
+		this.cycles = cycles;
+		this.members = new IntList[n];
+		for(int v = 0; v<n; v++) {
+			members[v] = new IntList(4);
+		}
+		Arrays.fill(ub, 1);
+		Arrays.fill(types, GRB.BINARY);
+	}
+
+	/**
+	 * lists the cycles of at most k pairs of matches on pool and adds them to the model as they come
+	 */
+	public void build(BitGraph matches, int k, ForkJoinPool pool) throws GRBException {
+		if(k > CycleStore.MAX_LENGTH) {
+			throw new IllegalArgumentException("Cycles of " +k+ " pairs do not fit in a cycle store");
+		}
+		CycleEnumerator enumerator = new CycleEnumerator(matches, k);
+		Thread producer = new Thread(() -> {
+			try {
+				List<Batcher> batchers = enumerator.enumerateUnordered(null, Batcher::new, pool);
+				for(Batcher batcher : batchers) {
+					batcher.flush();
+				}
+			} catch (Throwable t) {
+				failure = t;
+			} finally {
+				if(!cancelled) {
+					put(END);
+				}
+			}
+		}, "cycle-producer");
+		producer.setDaemon(true);
+		producer.start();
+
+		boolean done = false;
+		try {
+			while(true) {
+				long[] batch = queue.take();
+				if(batch == END) {
+					break;
+				}
+				add(batch);
+			}
+			done = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while building the cycle formulation", e);
+		} finally {
+			if(!done) {
+				cancelled = true;
+				queue.clear();
+			}
+		}
+		if(failure != null) {
+			throw new IllegalStateException("Listing the cycles failed", failure);
+		}
+
+		model.set(GRB.IntAttr.ModelSense, GRB.MAXIMIZE);
+		addConstraints();
+	}
+
+	/**
+	 * adds a variable per cycle of batch and notes it under its pairs
+	 */
+	private void add(long[] batch) throws GRBException {
+		int first = cycles.size();
+		for(int i = 0; i<batch.length; i++) {
+			obj[i] = CycleStore.length(batch[i]);
+		}
+		GRBVar[] added = model.addVars(lb, ub, obj, types, null, 0, batch.length);
+		if(first + batch.length > vars.length) {
+			vars = Arrays.copyOf(vars, Math.max(vars.length << 1, first + batch.length));
+		}
+		System.arraycopy(added, 0, vars, first, batch.length);
+		for(int i = 0; i<batch.length; i++) {
+			long cycle = batch[i];
+			cycles.add(cycle);
+			for(int p = 0; p<CycleStore.length(cycle); p++) {
+				members[CycleStore.vertex(cycle, p)].add(first + i);
+			}
+		}
+	}
+
+	/**
+	 * adds that every pair is in at most one cycle, from the variables noted per pair
+	 */
+	private void addConstraints() throws GRBException {
+		int maxDegree = 0;
+		for(IntList member : members) {
+			maxDegree = Math.max(maxDegree, member.size());
+		}
+		double[] ones = new double[maxDegree];
+		Arrays.fill(ones, 1);
+		GRBVar[] terms = new GRBVar[maxDegree];
+		for(int v = 0; v<n; v++) {
+			IntList member = members[v];
+			if(member.isEmpty()) {
+				emptyCount++;
+				continue;
+			}
+			for(int c = 0; c<member.size(); c++) {
+				terms[c] = vars[member.get(c)];
+			}
+			GRBLinExpr expr = new GRBLinExpr();
+			expr.addTerms(ones, terms, 0, member.size());
+			model.addConstr(expr, GRB.LESS_EQUAL, 1, "vertex_"+v);
+			members[v] = null;
+		}
+	}
+
+	/**
+	 * puts batch on the queue, waiting while it is full unless the build was cancelled
+	 */
+	private void put(long[] batch) {
+		try {
+			while(!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+				if(cancelled) {
+					throw new CancellationException("The cycle formulation is no longer built");
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while listing cycles");
+		}
+	}
+
+	/**
+	 * packs the cycles of one enumeration thread into batches
+	 */
+	private class Batcher implements CycleEnumerator.CycleVisitor {
+
+		private long[] batch = new long[BATCH_SIZE];
+		private int size;
+
+		@Override
+		public void visit(int[] path, int length) {
+			batch[size++] = CycleStore.encode(path, length);
+			if(size == BATCH_SIZE) {
+				put(batch);
+				batch = new long[BATCH_SIZE];
+				size = 0;
+			}
+		}
+
+		void flush() {
+			if(size > 0) {
+				put(Arrays.copyOf(batch, size));
+				size = 0;
+			}
+		}
+	}
+
+	/**
+	 * @return the variable of every cycle, in the order of {@link #getCycles()}
+	 */
+	public GRBVar[] getVars() {
+		return Arrays.copyOf(vars, cycles.size());
+	}
+
+	public CycleStore getCycles() {
+		return cycles;
+	}
+
+	/**
+	 * @return amount of pairs that are in no cycle
+	 */
+	public int getEmptyCount() {
+		return emptyCount;
+	}
+}
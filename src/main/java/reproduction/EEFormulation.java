@@ -4,9 +4,11 @@ import java.io.File;
 import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.jgrapht.alg.util.Pair;
@@ -25,6 +27,8 @@ import data.XMLData;
 import heuristics.CyclePackingFormulation;
 import heuristics.JumpStart;
 import heuristics.TabuLocalSearch;
+import util.BitGraph;
+import util.CSRGraph;
 
 /**
  * Solves the EE formulation.
@@ -37,24 +41,17 @@ public class EEFormulation {
 
 		//ExcelReader dr = new ExcelReader(data);
 		//final boolean[][] matches = WMDReader.read(data);
-		final boolean[][] matches = SimpleDataGeneration.generate(128, 0.7);
+		final BitGraph matches = SimpleDataGeneration.generateGraph(128, 0.7).toBitGraph();
 		//System.out.println("Simple data generated with n = "+n+" and a density of "+density);
 
 		//XMLData reader = new XMLData(data);
-		//final boolean[][] matches = reader.getMatches();
+		//final BitGraph matches = reader.getGraph();
 
-		double matchCount = 0;
-		for(boolean[] row : matches) {
-			for(boolean val : row) {
-				if(val) {
-					matchCount++;
-				}
-			}
-		}
+		double matchCount = matches.arcCount();
 		int UB = CyclePackingFormulation.solve(matches);
 		
-		double density = matchCount/(double) Math.pow(matches.length,2)*100/100;
-		System.out.println("Data has " +matches.length+ " matchable pairs with an average density of " + density);
+		double density = matchCount/(double) Math.pow(matches.size(),2)*100/100;
+		System.out.println("Data has " +matches.size()+ " matchable pairs with an average density of " + density);
 		
 		System.out.println("Starting Tabu local search search");
 
@@ -67,10 +64,18 @@ public class EEFormulation {
 	}
 
 	public static Pair<Integer, Double> solve(boolean[][] matches, int k, ArrayList<ArrayList<Integer>> initialSolution, int UB, int solverTime) throws GRBException {
+		return solve(BitGraph.fromMatrix(matches), k, initialSolution, UB, solverTime);
+	}
+
+	public static Pair<Integer, Double> solve(BitGraph matches, int k, ArrayList<ArrayList<Integer>> initialSolution, int UB, int solverTime) throws GRBException {
+		return solve(CSRGraph.fromBitGraph(matches), k, initialSolution, UB, solverTime);
+	}
+
+	public static Pair<Integer, Double> solve(CSRGraph matches, int k, ArrayList<ArrayList<Integer>> initialSolution, int UB, int solverTime) throws GRBException {
 		System.out.println(" - ");
 		System.out.println("Starting EE solve with initial solution");
 
-		int n = matches.length;
+		int n = matches.size();
 		//create empty graph copies
 
 		long constructStart = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
@@ -104,7 +109,44 @@ public class EEFormulation {
 
 		//maps the vertices in a copy to array indices
 		ArrayList<HashMap<Integer, Integer>> verticesPerCopy = new ArrayList<>();
+		buildModel(matches, k, initialSolution, verticesPerCopy, model, constructStart);
+		//uncomment to see which edges are chosen
+		/*
+		 * double[] vals = model.get(GRB.DoubleAttr.X, model.getVars()); GRBVar[] vars =
+		 * model.getVars(); for(GRBVar var : vars) { if(var.get(GRB.DoubleAttr.X) == 1)
+		 * { System.out.println(var.get(GRB.StringAttr.VarName)+" = 1"); } }
+		 */
+
+		long startTime = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+		model.optimize();
+		Integer T = Math.toIntExact(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()) - startTime);
+		
+		/*
+		GRBVar[] vars = model.getVars();
+		for(GRBVar var : vars) {
+			if(var.get(GRB.DoubleAttr.X) == 1) {
+				//System.out.println(var.get(GRB.StringAttr.VarName));
+			}
+		}
+		*/
 		
+		System.out.println("EE -> Pairs matched: " + model.get(GRB.DoubleAttr.ObjVal) + " out of " + n + "");
+		System.out.println("linear relaxation bound was: "+model.get(GRB.DoubleAttr.ObjBound));
+		model.dispose();
+		env.dispose();
+		Pair<Integer, Double> result = new Pair<Integer, Double>(T,0.0);
+		return result;
+	}
+	
+	/**
+	 * adds the variables and restrictions of the EE formulation to model
+	 * @param verticesPerCopy gets a map for every copy from pairs to indices in the copy
+	 * @return the variables of every copy
+	 */
+	private static ArrayList<GRBVar[][]> buildModel(CSRGraph matches, int k, ArrayList<ArrayList<Integer>> initialSolution,
+			ArrayList<HashMap<Integer, Integer>> verticesPerCopy, GRBModel model, long constructStart) throws GRBException {
+		int n = matches.size();
+
 		ArrayList<GRBVar[][]> x = edgesPerCopy(matches, k, verticesPerCopy, model);
 		System.out.println(x.size()+" vars created in "+(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime())-constructStart) +" seconds" );
 		
@@ -129,7 +171,7 @@ public class EEFormulation {
 		//create objective
 		model.set(GRB.IntAttr.ModelSense, -1);
 
-		//restrictions 9b & 9e
+		//restrictions 9b, 9d & 9e
 		for(int l = 0; l<n; l++) {
 			GRBVar[][] copy = x.get(l);
 			int dim = x.get(l).length;
@@ -148,14 +190,15 @@ public class EEFormulation {
 						model.addConstr(b, GRB.EQUAL, 0, "9b_"+l+"_"+i);
 					}
 
+					//a pair is only left in copy l when l is left as well
 					GRBLinExpr e = new GRBLinExpr();
 					int l_index = verticesPerCopy.get(l).get(l);
-					for(int j = 0; j<dim; j++) {
-						if(copy[i][j] != null) {
-							b.addTerm(-1, copy[l_index][j]);
+					for(int j = 0; j<dim && i != l_index; j++) {
+						if(copy[l_index][j] != null) {
+							e.addTerm(-1, copy[l_index][j]);
 						}
 						if(copy[i][j] != null) {
-							b.addTerm(1, copy[i][j]);
+							e.addTerm(1, copy[i][j]);
 						}
 					}
 					if(e.size() != 0) {
@@ -163,6 +206,18 @@ public class EEFormulation {
 
 					}
 				}
+
+				//at most k arcs in a copy, and only when l is left
+				GRBLinExpr d = new GRBLinExpr();
+				int l_index = verticesPerCopy.get(l).get(l);
+				for(int i = 0; i<dim; i++) {
+					for(int j = 0; j<dim; j++) {
+						if(copy[i][j] != null) {
+							d.addTerm(i == l_index ? 1-k : 1, copy[i][j]);
+						}
+					}
+				}
+				model.addConstr(d, GRB.LESS_EQUAL, 0, "9d_"+l);
 			}
 		}
 
@@ -186,37 +241,90 @@ public class EEFormulation {
 
 		}
 		System.out.println("model constructed in "+ (TimeUnit.NANOSECONDS.toSeconds(System.nanoTime())-constructStart));
-		//uncomment to see which edges are chosen
-		/*
-		 * double[] vals = model.get(GRB.DoubleAttr.X, model.getVars()); GRBVar[] vars =
-		 * model.getVars(); for(GRBVar var : vars) { if(var.get(GRB.DoubleAttr.X) == 1)
-		 * { System.out.println(var.get(GRB.StringAttr.VarName)+" = 1"); } }
-		 */
+		return x;
+	}
 
-		long startTime = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+	/**
+	 * solves the EE formulation and reads the chosen cycles from the copies
+	 * @param matches
+	 * @param k
+	 * @param initialSolution may be null
+	 * @param solverTime
+	 * @return the cycles of the best solution found and the bound of the solver
+	 * @throws GRBException
+	 */
+	public static Pair<ArrayList<ArrayList<Integer>>, Double> solveWithSolution(CSRGraph matches, int k, ArrayList<ArrayList<Integer>> initialSolution, int solverTime) throws GRBException {
+		long constructStart = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+
+		GRBEnv env = new GRBEnv(true);
+		env.set(IntParam.OutputFlag, 0);
+		env.set("logFile", "mip1.log");
+		env.start();
+
+		GRBModel model = new GRBModel(env);
+		model.set(GRB.DoubleParam.TimeLimit, solverTime);
+
+		ArrayList<HashMap<Integer, Integer>> verticesPerCopy = new ArrayList<>();
+		ArrayList<GRBVar[][]> x = buildModel(matches, k, initialSolution, verticesPerCopy, model, constructStart);
 		model.optimize();
-		Integer T = Math.toIntExact(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()) - startTime);
-		
-		/*
-		GRBVar[] vars = model.getVars();
-		for(GRBVar var : vars) {
-			if(var.get(GRB.DoubleAttr.X) == 1) {
-				//System.out.println(var.get(GRB.StringAttr.VarName));
+
+		ArrayList<ArrayList<Integer>> cycles = new ArrayList<>();
+		if(model.get(GRB.IntAttr.SolCount) > 0) {
+			for(int l = 0; l<x.size(); l++) {
+				GRBVar[][] copy = x.get(l);
+				int dim = copy.length;
+				int[] vertex = new int[dim];
+				for(Map.Entry<Integer, Integer> entry : verticesPerCopy.get(l).entrySet()) {
+					vertex[entry.getValue()] = entry.getKey();
+				}
+				//every chosen arc leaves a different pair, so the chosen arcs of a copy form cycles
+				int[] next = new int[dim];
+				Arrays.fill(next, -1);
+				for(int i = 0; i<dim; i++) {
+					for(int j = 0; j<dim; j++) {
+						if(copy[i][j] != null && copy[i][j].get(DoubleAttr.X) > 0.5) {
+							next[i] = j;
+						}
+					}
+				}
+				for(int i = 0; i<dim; i++) {
+					if(next[i] < 0) {
+						continue;
+					}
+					ArrayList<Integer> cycle = new ArrayList<>();
+					int current = i;
+					while(next[current] >= 0) {
+						cycle.add(vertex[current]);
+						int following = next[current];
+						next[current] = -1;
+						current = following;
+					}
+					//the cycle of copy l goes through l and has at most k pairs, others are not counted
+					if(cycle.size() > k || !cycle.contains(l)) {
+						System.out.println("Dropped cycle "+cycle+" of copy "+l+" that is longer than "+k+" or misses "+l);
+						continue;
+					}
+					cycles.add(cycle);
+				}
 			}
 		}
-		*/
-		
-		System.out.println("EE -> Pairs matched: " + model.get(GRB.DoubleAttr.ObjVal) + " out of " + n + "");
-		System.out.println("linear relaxation bound was: "+model.get(GRB.DoubleAttr.ObjBound));
+		double bound = model.get(GRB.DoubleAttr.ObjBound);
 		model.dispose();
 		env.dispose();
-		Pair<Integer, Double> result = new Pair<Integer, Double>(T,0.0);
-		return result;
+		return new Pair<>(cycles, bound);
 	}
 	
 	public static Pair<Integer, Double> solveRelaxation(boolean[][] matches, int k, ArrayList<ArrayList<Integer>> initialSolution, int solverTime) throws GRBException {
+		return solveRelaxation(BitGraph.fromMatrix(matches), k, initialSolution, solverTime);
+	}
 
-		int n = matches.length;
+	public static Pair<Integer, Double> solveRelaxation(BitGraph matches, int k, ArrayList<ArrayList<Integer>> initialSolution, int solverTime) throws GRBException {
+		return solveRelaxation(CSRGraph.fromBitGraph(matches), k, initialSolution, solverTime);
+	}
+
+	public static Pair<Integer, Double> solveRelaxation(CSRGraph matches, int k, ArrayList<ArrayList<Integer>> initialSolution, int solverTime) throws GRBException {
+
+		int n = matches.size();
 		//create empty graph copies
 
 		long constructStart = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
@@ -264,7 +372,7 @@ public class EEFormulation {
 		//create objective
 		model.set(GRB.IntAttr.ModelSense, -1);
 
-		//restrictions 9b & 9e
+		//restrictions 9b, 9d & 9e
 		for(int l = 0; l<n; l++) {
 			GRBVar[][] copy = x.get(l);
 			int dim = x.get(l).length;
@@ -283,14 +391,15 @@ public class EEFormulation {
 						model.addConstr(b, GRB.EQUAL, 0, "9b_"+l+"_"+i);
 					}
 
+					//a pair is only left in copy l when l is left as well
 					GRBLinExpr e = new GRBLinExpr();
 					int l_index = verticesPerCopy.get(l).get(l);
-					for(int j = 0; j<dim; j++) {
-						if(copy[i][j] != null) {
-							b.addTerm(-1, copy[l_index][j]);
+					for(int j = 0; j<dim && i != l_index; j++) {
+						if(copy[l_index][j] != null) {
+							e.addTerm(-1, copy[l_index][j]);
 						}
 						if(copy[i][j] != null) {
-							b.addTerm(1, copy[i][j]);
+							e.addTerm(1, copy[i][j]);
 						}
 					}
 					if(e.size() != 0) {
@@ -298,6 +407,18 @@ public class EEFormulation {
 
 					}
 				}
+
+				//at most k arcs in a copy, and only when l is left
+				GRBLinExpr d = new GRBLinExpr();
+				int l_index = verticesPerCopy.get(l).get(l);
+				for(int i = 0; i<dim; i++) {
+					for(int j = 0; j<dim; j++) {
+						if(copy[i][j] != null) {
+							d.addTerm(i == l_index ? 1-k : 1, copy[i][j]);
+						}
+					}
+				}
+				model.addConstr(d, GRB.LESS_EQUAL, 0, "9d_"+l);
 			}
 		}
 
@@ -351,8 +472,18 @@ public class EEFormulation {
 	 */
 	public static ArrayList<GRBVar[][]> edgesPerCopy(boolean[][] matches, int k,
 			ArrayList<HashMap<Integer, Integer>> verticesPerCopy, GRBModel model) throws GRBException {
+		return edgesPerCopy(BitGraph.fromMatrix(matches), k, verticesPerCopy, model);
+	}
+
+	public static ArrayList<GRBVar[][]> edgesPerCopy(BitGraph matches, int k,
+			ArrayList<HashMap<Integer, Integer>> verticesPerCopy, GRBModel model) throws GRBException {
+		return edgesPerCopy(CSRGraph.fromBitGraph(matches), k, verticesPerCopy, model);
+	}
+
+	public static ArrayList<GRBVar[][]> edgesPerCopy(CSRGraph matches, int k,
+			ArrayList<HashMap<Integer, Integer>> verticesPerCopy, GRBModel model) throws GRBException {
 		
-		int n = matches.length;
+		int n = matches.size();
 		ArrayList<GRBVar[][]> copies =  new ArrayList<>(n);
 		for(int l = 0; l<n; l++) {
 
@@ -382,11 +513,11 @@ public class EEFormulation {
 		return copies;
 	}
 
-	private static void recursiveFind(boolean[][] matches, int k, ArrayList<Integer> route, HashSet<Pair<Integer, Integer>> copy) {
+	private static void recursiveFind(CSRGraph matches, int k, ArrayList<Integer> route, HashSet<Pair<Integer, Integer>> copy) {
 		int end = route.get(route.size()-1);
 		int l = route.get(0);
 
-		if(matches[end][l]) {
+		if(matches.hasArc(end, l)) {
 			for(int i = 0; i<route.size()-1; i++) {
 				copy.add(new Pair<>(route.get(i), route.get(i+1)));
 			}
@@ -394,9 +525,10 @@ public class EEFormulation {
 		}
 
 		if(route.size() < k) {
-			for(int i = l+1; i<matches.length; i++) {
+			for(int e = matches.firstOutFrom(end, l+1); e<matches.outEnd(end); e++) {
+				int i = matches.target(e);
 
-				if(matches[end][i] && !route.contains(i)) {
+				if(!route.contains(i)) {
 					ArrayList<Integer> newRoute = new ArrayList<>(k);
 					newRoute.addAll(route);
 					newRoute.add(i);
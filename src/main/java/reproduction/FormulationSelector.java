@@ -0,0 +1,72 @@
+package reproduction;
+
+import util.CSRGraph;
+import util.CycleEstimate;
+import util.CycleStore;
+
+/**
+ * Picks the formulation for an instance from a {@link CycleEstimate}: the cycle formulation if its
+ * cycles fit in memory and can be listed and added in a tenth of the time, or fit once the packed
+ * cycles are spilled to disk, otherwise the EE formulation if its copies fit, and otherwise the
+ * decomposition, which only solves small components exactly. The reason is logged with the estimate.
+ */
+public class FormulationSelector {
+
+	public static final int AUTO = -1;
+	public static final int CYCLE = 0;
+	public static final int EE = 1;
+	public static final int DECOMPOSITION = 2;
+	/** the cycle formulation with its cycles in a {@link util.SpillingCycleStore} */
+	public static final int CYCLE_SPILLING = 3;
+
+	//the commented out limit in the cycle formulation
+	private static final double MAX_CYCLES = 24000000;
+	private static final double MAX_EE_VARIABLES = 5000000;
+
+	/**
+	 * @param matches
+	 * @param k maximum cycle length
+	 * @param memoryBudget bytes available to the model
+	 * @param timeBudget seconds available to the solver
+	 * @return one of the constants of this class other than AUTO
+	 */
+	public static int choose(CSRGraph matches, int k, long memoryBudget, int timeBudget) {
+		CycleEstimate estimate = CycleEstimate.of(matches, k);
+		System.out.println(estimate);
+		double budgetMB = memoryBudget / 1e6;
+
+		if(matches.size() > CycleStore.MAX_PAIRS || k > CycleStore.MAX_LENGTH) {
+			System.out.println("Cycles of " +k+ " out of " +matches.size()+ " pairs do not fit in a cycle store");
+		}
+		else if(estimate.total() <= MAX_CYCLES && estimate.cycleSeconds() <= timeBudget / 10.0) {
+			if(estimate.cycleMemory() <= memoryBudget) {
+				System.out.println(String.format("Using the cycle formulation: ~%.3g cycles take ~%.0f of %.0f MB and ~%.0fs to build",
+						estimate.total(), estimate.cycleMemory() / 1e6, budgetMB, estimate.cycleSeconds()));
+				return CYCLE;
+			}
+			if(estimate.cycleMemory() - estimate.cycleStoreMemory() <= memoryBudget) {
+				System.out.println(String.format("Using the cycle formulation on disk: ~%.3g cycles take ~%.0f of %.0f MB, ~%.0f MB of them spilled, and ~%.0fs to build",
+						estimate.total(), estimate.cycleMemory() / 1e6, budgetMB, estimate.cycleStoreMemory() / 1e6, estimate.cycleSeconds()));
+				return CYCLE_SPILLING;
+			}
+		}
+		String cycleReason = String.format("~%.3g cycles would take ~%.0f of %.0f MB and ~%.0fs to build", estimate.total(),
+				estimate.cycleMemory() / 1e6, budgetMB, estimate.cycleSeconds());
+
+		if(estimate.eeVariables() <= MAX_EE_VARIABLES && estimate.eeMemory() <= memoryBudget && estimate.eeSeconds() <= timeBudget / 10.0) {
+			System.out.println(String.format("Using the EE formulation: %s, its ~%.3g variables take ~%.0f MB",
+					cycleReason, estimate.eeVariables(), estimate.eeMemory() / 1e6));
+			return EE;
+		}
+		System.out.println(String.format("Using the decomposition: %s and the EE formulation ~%.3g variables in ~%.0f MB",
+				cycleReason, estimate.eeVariables(), estimate.eeMemory() / 1e6));
+		return DECOMPOSITION;
+	}
+
+	/**
+	 * chooses with the maximum heap of the JVM as memory budget
+	 */
+	public static int choose(CSRGraph matches, int k, int timeBudget) {
+		return choose(matches, k, Runtime.getRuntime().maxMemory(), timeBudget);
+	}
+}
@@ -14,8 +14,14 @@ import org.jgrapht.alg.util.Pair;
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.graph.SimpleDirectedGraph;
 
-import data.XMLData;
+import data.InstanceCatalog;
+import data.Preprocessing;
 import heuristics.CyclePackingFormulation;
+import heuristics.Decomposition;
+import util.Altruists;
+import util.CSRGraph;
+import util.CycleCache;
+import util.CycleProfile;
 import util.CycleUtils;
 import util.TimedPrintStream;
 
@@ -25,23 +31,54 @@ public class Main {
 
 		System.setOut(new TimedPrintStream(System.out));
 		
-		int method = 0;
+		int method = FormulationSelector.AUTO;
+		int solverTime = 1800;
 		final int k = 5;
+		//print the score distribution of all cycles and of the solution, for the cycle formulation
+		boolean distributions = false;
+		//most pairs on a chain from an altruist in the cycle formulation, 0 leaves the altruists out
+		int chainLength = 0;
 		double T_average = 0;
 		double cycleT_average = 0;
 
-		File folder = new File("src/main/resources/preflib");
-		File[] listOfFiles = folder.listFiles();
+		InstanceCatalog catalog = new InstanceCatalog(InstanceCatalog.PREFLIB);
+		if(method != FormulationSelector.CYCLE) {
+			catalog.loadAll(50, 60, Preprocessing.forCycles(k));
+		}
 
 		int testSetSize = 5;
 		for(int u = 50; u<60; u++) {
-			File data = listOfFiles[u];
+			File data = catalog.get(u);
+			if(method != FormulationSelector.CYCLE) {
+				System.out.println(data.getName()+ ": " +catalog.loadInstance(u, Preprocessing.forCycles(k)).pruningSummary());
+			}
 
 			ArrayList<Double> cycleValuesAll = new ArrayList<>();
 
 			ArrayList<Double> cycleValuesSol = new ArrayList<>();
 			Pair<Integer, Double> result = null;
-			if(method == 0) {
+			int chosen = method;
+			if(method == FormulationSelector.AUTO) {
+				System.out.println("Choosing formulation for " + data.getName());
+				CSRGraph matches = catalog.load(u, Preprocessing.forCycles(k));
+				chosen = FormulationSelector.choose(matches, k, solverTime);
+				//cached cycles are mapped, others are listed while the model is built and cached for the next run
+				boolean cycle = chosen == FormulationSelector.CYCLE || chosen == FormulationSelector.CYCLE_SPILLING;
+				Altruists altruists = catalog.loadInstance(u, Preprocessing.forCycles(k)).getAltruists();
+				if(cycle && chainLength > 0 && altruists.size() > 0) {
+					result = CycleFormulation.run(matches.toBitGraph(), altruists, k, chainLength, cycleValuesAll, cycleValuesSol);
+				}
+				else if(cycle && CycleCache.contains(matches.toBitGraph(), k)) {
+					result = CycleFormulation.run(matches.toMatrix(), k, true, cycleValuesAll, cycleValuesSol);
+				}
+				else if(cycle) {
+					result = CycleFormulation.runPipelined(matches.toMatrix(), k, chosen == FormulationSelector.CYCLE_SPILLING, true, cycleValuesAll, cycleValuesSol);
+				}
+				if(cycle && distributions) {
+					printDistributions(CycleProfile.of(matches, k, 20), cycleValuesSol);
+				}
+			}
+			else if(chosen == FormulationSelector.CYCLE) {
 				result = CycleFormulation.run(data, k, cycleValuesAll, cycleValuesSol);
 				
 				//for distributions
@@ -78,11 +115,17 @@ public class Main {
 				*/
 
 			}
-			if(method == 1) {
-				boolean[][] matches = (new XMLData(data)).getMatches();
-				result = EEFormulation.solve(matches, k, new ArrayList<>(), 10000, 1800);
+			if(chosen == FormulationSelector.EE) {
+				CSRGraph matches = catalog.load(u, Preprocessing.forCycles(k));
+				result = EEFormulation.solve(matches, k, new ArrayList<>(), 10000, solverTime);
 				
 			}
+			if(chosen == FormulationSelector.DECOMPOSITION) {
+				CSRGraph matches = catalog.load(u, Preprocessing.forCycles(k));
+				long startTime = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+				Decomposition.solve(matches, k, 300, solverTime, Runtime.getRuntime().availableProcessors());
+				result = new Pair<>(Math.toIntExact(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()) - startTime), 0.0);
+			}
 			T_average += result.getFirst();
 			cycleT_average += result.getSecond();
 		}
@@ -92,6 +135,30 @@ public class Main {
 		System.out.println("avg T: "+((double) T_average)/testSetSize);
 
 	}
+
+	/**
+	 * prints the histogram of all cycles, of the cycles in the solution and the fraction of every
+	 * bucket that was chosen
+	 * @param profile with the score histogram of all cycles, which are not listed for it
+	 * @param cycleValuesSol scores of the cycles in the solution
+	 */
+	private static void printDistributions(CycleProfile profile, ArrayList<Double> cycleValuesSol) {
+		long[] histogramAll = profile.getHistogram();
+		double[] histogramSol = new double[histogramAll.length];
+		for(Double value : cycleValuesSol) {
+			histogramSol[profile.bucket(value)]++;
+		}
+
+		double[] fractions = new double[histogramAll.length];
+		for(int i = 0; i<histogramAll.length; i++) {
+			if(histogramAll[i]>0) {
+				fractions[i] = Math.round(histogramSol[i]/histogramAll[i]*1000)/10.0;
+			}
+		}
+		System.out.println(Arrays.toString(histogramAll));
+		System.out.println(Arrays.toString(histogramSol));
+		System.out.println(Arrays.toString(fractions)+ "\n");
+	}
 }
 
 
@@ -0,0 +1,140 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * The non-directed donors of an instance, donors without a recipient of their own, with the pairs
+ * they can donate to in the offsets and targets layout of {@link CSRGraph}. An altruist starts a
+ * chain instead of closing a cycle, see {@link ChainEnumerator}. Targets are indices of the pairs of
+ * a graph and sorted within a row; every altruist keeps the id it had in the source data.
+ */
+public class Altruists {
+
+	public static final Altruists NONE = new Altruists(new int[1], new int[0], new int[0]);
+
+	private final int[] offsets;
+	private final int[] targets;
+	private final int[] ids;
+
+	private Altruists(int[] offsets, int[] targets, int[] ids) {
+		this.offsets = offsets;
+		this.targets = targets;
+		this.ids = ids;
+	}
+
+	/**
+	 * builds the altruists from an unordered arc list, of duplicate arcs only one is kept
+	 * @param count amount of altruists
+	 * @param sources altruist of every arc
+	 * @param targets recipient pair of every arc
+	 * @param m amount of arcs in the arrays
+	 * @param ids id of every altruist in the data, null numbers them from 0
+	 * @return
+	 */
+	public static Altruists fromArcs(int count, int[] sources, int[] targets, int m, int[] ids) {
+		int[] offsets = new int[count+1];
+		for(int e = 0; e<m; e++) {
+			offsets[sources[e]+1]++;
+		}
+		for(int a = 0; a<count; a++) {
+			offsets[a+1] += offsets[a];
+		}
+		int[] sorted = new int[m];
+		int[] fill = Arrays.copyOf(offsets, count);
+		for(int e = 0; e<m; e++) {
+			sorted[fill[sources[e]]++] = targets[e];
+		}
+
+		//sort and deduplicate every row in place, moving it to the left
+		int size = 0;
+		for(int a = 0; a<count; a++) {
+			int start = offsets[a];
+			int end = offsets[a+1];
+			Arrays.sort(sorted, start, end);
+			offsets[a] = size;
+			for(int e = start; e<end; e++) {
+				if(e == start || sorted[e] != sorted[e-1]) {
+					sorted[size++] = sorted[e];
+				}
+			}
+		}
+		offsets[count] = size;
+
+		if(ids == null) {
+			ids = new int[count];
+			for(int a = 0; a<count; a++) {
+				ids[a] = a;
+			}
+		}
+		return new Altruists(offsets, Arrays.copyOf(sorted, size), ids);
+	}
+
+	/**
+	 * maps the targets from the pairs of before to the pairs of after by their ids, dropping the
+	 * arcs to pairs that are not in after, for instance after {@link Reduction} and {@link VertexOrdering}
+	 * @param before the graph the targets are indices of
+	 * @param after
+	 * @return
+	 */
+	public Altruists onto(CSRGraph before, CSRGraph after) {
+		IntIntMap index = new IntIntMap(after.size());
+		for(int i = 0; i<after.size(); i++) {
+			index.put(after.id(i), i);
+		}
+		int[] sources = new int[targets.length];
+		int[] mapped = new int[targets.length];
+		int m = 0;
+		for(int a = 0; a<size(); a++) {
+			for(int e = offsets[a]; e<offsets[a+1]; e++) {
+				int j = index.get(before.id(targets[e]));
+				if(j >= 0) {
+					sources[m] = a;
+					mapped[m] = j;
+					m++;
+				}
+			}
+		}
+		return fromArcs(size(), sources, mapped, m, ids);
+	}
+
+	/**
+	 * @return amount of altruists
+	 */
+	public int size() {
+		return ids.length;
+	}
+
+	public int arcCount() {
+		return targets.length;
+	}
+
+	public int outStart(int a) {
+		return offsets[a];
+	}
+
+	public int outEnd(int a) {
+		return offsets[a+1];
+	}
+
+	public int outDegree(int a) {
+		return offsets[a+1] - offsets[a];
+	}
+
+	/**
+	 * @return the pair arc e goes to
+	 */
+	public int target(int e) {
+		return targets[e];
+	}
+
+	public int id(int a) {
+		return ids[a];
+	}
+
+	/**
+	 * @return bytes taken by the offsets, targets and ids
+	 */
+	public long sizeInBytes() {
+		return (long) (offsets.length + targets.length + ids.length) * Integer.BYTES;
+	}
+}
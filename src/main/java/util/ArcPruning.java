@@ -0,0 +1,142 @@
+package util;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Removes the arcs that are on no cycle of at most k pairs. Arc i->j is on such a cycle exactly
+ * when i can be reached from j in at most k-1 steps, so for every donor the pairs that reach it are
+ * found with a breadth first search over the columns of a bitset graph, stopping as soon as all of
+ * its recipients are found. Donors are searched in parallel. Pairs left without arcs are peeled off
+ * with a {@link Reduction} afterwards.
+ */
+public class ArcPruning {
+
+	private final int k;
+	private final int removedArcs;
+	private final Reduction reduction;
+
+	private ArcPruning(int k, int removedArcs, Reduction reduction) {
+		this.k = k;
+		this.removedArcs = removedArcs;
+		this.reduction = reduction;
+	}
+
+	/**
+	 * @param matches left unchanged
+	 * @param k maximum cycle length
+	 * @return
+	 */
+	public static ArcPruning prune(CSRGraph matches, int k) {
+		int n = matches.size();
+		int words = (n + 63) >>> 6;
+		//rows of the transpose are the donors of every pair
+		BitGraph donors = matches.toBitGraph().transpose();
+		boolean[] keep = new boolean[matches.arcCount()];
+
+		ThreadLocal<long[][]> buffers = ThreadLocal.withInitial(() -> new long[3][words]);
+		IntStream.range(0, n).parallel().forEach(i -> {
+			if(matches.outDegree(i) == 0) {
+				return;
+			}
+			long[][] buffer = buffers.get();
+			long[] reached = buffer[0];
+			long[] frontier = buffer[1];
+			long[] next = buffer[2];
+			Arrays.fill(reached, 0L);
+			Arrays.fill(frontier, 0L);
+			reached[i >>> 6] |= 1L << i;
+			frontier[i >>> 6] |= 1L << i;
+
+			int found = 0;
+			for(int step = 1; step<k && found < matches.outDegree(i); step++) {
+				Arrays.fill(next, 0L);
+				boolean grew = false;
+				for(int w = 0; w<words; w++) {
+					long word = frontier[w];
+					while(word != 0) {
+						donors.orRow((w << 6) + Long.numberOfTrailingZeros(word), next);
+						word &= word - 1;
+					}
+				}
+				for(int w = 0; w<words; w++) {
+					next[w] &= ~reached[w];
+					reached[w] |= next[w];
+					grew |= next[w] != 0;
+				}
+				if(!grew) {
+					break;
+				}
+				long[] swap = frontier;
+				frontier = next;
+				next = swap;
+
+				found = 0;
+				for(int e = matches.outStart(i); e<matches.outEnd(i); e++) {
+					int j = matches.target(e);
+					if((reached[j >>> 6] & (1L << j)) != 0) {
+						found++;
+					}
+				}
+			}
+			for(int e = matches.outStart(i); e<matches.outEnd(i); e++) {
+				int j = matches.target(e);
+				keep[e] = (reached[j >>> 6] & (1L << j)) != 0;
+			}
+		});
+
+		int[] offsets = new int[n+1];
+		int[] targets = new int[matches.arcCount()];
+		float[] scores = new float[matches.arcCount()];
+		int count = 0;
+		for(int i = 0; i<n; i++) {
+			for(int e = matches.outStart(i); e<matches.outEnd(i); e++) {
+				if(keep[e]) {
+					targets[count] = matches.target(e);
+					scores[count] = matches.score(e);
+					count++;
+				}
+			}
+			offsets[i+1] = count;
+		}
+		CSRGraph pruned = new CSRGraph(offsets, Arrays.copyOf(targets, count), Arrays.copyOf(scores, count), matches.getIds());
+		return new ArcPruning(k, matches.arcCount() - count, Reduction.peel(pruned));
+	}
+
+	/**
+	 * @return the graph on the pairs that are on a cycle of at most k pairs
+	 */
+	public CSRGraph getGraph() {
+		return reduction.getGraph();
+	}
+
+	/**
+	 * @return the peeling after the arcs were removed, with the mapping to the pairs of the input
+	 */
+	public Reduction getReduction() {
+		return reduction;
+	}
+
+	/**
+	 * @return the maximum cycle length the arcs were pruned for
+	 */
+	public int getK() {
+		return k;
+	}
+
+	/**
+	 * @return amount of arcs removed because they are on no short enough cycle
+	 */
+	public int removedArcs() {
+		return removedArcs;
+	}
+
+	public int removedPairs() {
+		return reduction.removedPairs();
+	}
+
+	@Override
+	public String toString() {
+		return "k=" +k+ " pruning removed " +removedArcs+ " arcs and " +reduction.removedPairs()+ " pairs";
+	}
+}
@@ -0,0 +1,291 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Directed compatibility graph stored as one bitset row per pair. Bit j of row i is set when the
+ * donor of pair i can give to the recipient of pair j. All rows live in a single flat long array
+ * (64 arcs per word, no object per row), so degrees are popcounts and neighbour scans skip empty
+ * words at once.
+ */
+public class BitGraph {
+
+	private final int n;
+	private final int words;
+	private final long[] bits;
+
+	/**
+	 * creates an empty graph on n pairs
+	 * @param n amount of pairs
+	 */
+	public BitGraph(int n) {
+		this.n = n;
+		this.words = (n + 63) >>> 6;
+		this.bits = new long[n * words];
+	}
+
+	/**
+	 * packs an n-by-n boolean match matrix
+	 * @param matches n-by-n boolean array of the possible matches between pairs
+	 * @return
+	 */
+	public static BitGraph fromMatrix(boolean[][] matches) {
+		int n = matches.length;
+		BitGraph g = new BitGraph(n);
+		for(int i = 0; i<n; i++) {
+			boolean[] row = matches[i];
+			int base = i*g.words;
+			for(int j = 0; j<n; j++) {
+				if(row[j]) {
+					g.bits[base + (j >>> 6)] |= 1L << j;
+				}
+			}
+		}
+		return g;
+	}
+
+	/**
+	 * unpacks the graph into the n-by-n boolean matrix used by the older code paths
+	 * @return
+	 */
+	public boolean[][] toMatrix() {
+		boolean[][] matches = new boolean[n][n];
+		for(int i = 0; i<n; i++) {
+			for(int j = nextOut(i, 0); j>=0; j = nextOut(i, j+1)) {
+				matches[i][j] = true;
+			}
+		}
+		return matches;
+	}
+
+	public int size() {
+		return n;
+	}
+
+	/**
+	 * @return amount of longs per row
+	 */
+	public int words() {
+		return words;
+	}
+
+	public boolean hasArc(int i, int j) {
+		return (bits[i*words + (j >>> 6)] & (1L << j)) != 0;
+	}
+
+	public void addArc(int i, int j) {
+		bits[i*words + (j >>> 6)] |= 1L << j;
+	}
+
+	public void removeArc(int i, int j) {
+		bits[i*words + (j >>> 6)] &= ~(1L << j);
+	}
+
+	/**
+	 * @return word w of row i
+	 */
+	public long word(int i, int w) {
+		return bits[i*words + w];
+	}
+
+	/**
+	 * @return the flat array of all rows, row i starts at i*{@link #words()}
+	 */
+	long[] bits() {
+		return bits;
+	}
+
+	/**
+	 * copies row i into dest, which must hold at least {@link #words()} longs
+	 */
+	public void copyRow(int i, long[] dest) {
+		System.arraycopy(bits, i*words, dest, 0, words);
+	}
+
+	/**
+	 * sets the recipients of donor i in dest
+	 */
+	public void orRow(int i, long[] dest) {
+		int base = i*words;
+		for(int w = 0; w<words; w++) {
+			dest[w] |= bits[base + w];
+		}
+	}
+
+	/**
+	 * removes all outgoing arcs of pair i
+	 */
+	public void clearRow(int i) {
+		Arrays.fill(bits, i*words, (i+1)*words, 0L);
+	}
+
+	/**
+	 * removes all incoming arcs of pair j
+	 */
+	public void clearColumn(int j) {
+		long mask = ~(1L << j);
+		for(int idx = j >>> 6; idx<bits.length; idx += words) {
+			bits[idx] &= mask;
+		}
+	}
+
+	/**
+	 * removes all arcs from and to pair v, the pair itself keeps its index
+	 */
+	public void removeVertex(int v) {
+		clearRow(v);
+		clearColumn(v);
+	}
+
+	/**
+	 * keeps only the arcs of row i whose recipient is set in mask
+	 */
+	public void retainRow(int i, long[] mask) {
+		int base = i*words;
+		for(int w = 0; w<words; w++) {
+			bits[base + w] &= mask[w];
+		}
+	}
+
+	/**
+	 * returns the first recipient of donor i at or after index from
+	 * @return the recipient index, or -1 if there is none
+	 */
+	public int nextOut(int i, int from) {
+		if(from >= n) {
+			return -1;
+		}
+		int base = i*words;
+		int w = from >>> 6;
+		long word = bits[base + w] & (-1L << from);
+		while(true) {
+			if(word != 0) {
+				return (w << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if(++w == words) {
+				return -1;
+			}
+			word = bits[base + w];
+		}
+	}
+
+	public int outDegree(int i) {
+		int base = i*words;
+		int degree = 0;
+		for(int w = 0; w<words; w++) {
+			degree += Long.bitCount(bits[base + w]);
+		}
+		return degree;
+	}
+
+	public int[] outDegrees() {
+		int[] degrees = new int[n];
+		for(int i = 0; i<n; i++) {
+			degrees[i] = outDegree(i);
+		}
+		return degrees;
+	}
+
+	public int[] inDegrees() {
+		int[] degrees = new int[n];
+		for(int i = 0; i<n; i++) {
+			int base = i*words;
+			for(int w = 0; w<words; w++) {
+				long word = bits[base + w];
+				while(word != 0) {
+					degrees[(w << 6) + Long.numberOfTrailingZeros(word)]++;
+					word &= word - 1;
+				}
+			}
+		}
+		return degrees;
+	}
+
+	public long arcCount() {
+		long count = 0;
+		for(long word : bits) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the amount of recipients of donor i that are also set in mask
+	 */
+	public int intersectionCount(int i, long[] mask) {
+		int base = i*words;
+		int count = 0;
+		for(int w = 0; w<words; w++) {
+			count += Long.bitCount(bits[base + w] & mask[w]);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the amount of pairs set in both row i of this graph and row j of other
+	 */
+	public int intersectionCount(int i, BitGraph other, int j) {
+		int base = i*words;
+		int otherBase = j*other.words;
+		int count = 0;
+		for(int w = 0; w<words; w++) {
+			count += Long.bitCount(bits[base + w] & other.bits[otherBase + w]);
+		}
+		return count;
+	}
+
+	/**
+	 * writes row i of this graph AND row j of other into dest
+	 */
+	public void intersect(int i, BitGraph other, int j, long[] dest) {
+		int base = i*words;
+		int otherBase = j*other.words;
+		for(int w = 0; w<words; w++) {
+			dest[w] = bits[base + w] & other.bits[otherBase + w];
+		}
+	}
+
+	/**
+	 * @return a graph with every arc reversed, so its rows are the columns of this graph
+	 */
+	public BitGraph transpose() {
+		BitGraph t = new BitGraph(n);
+		for(int i = 0; i<n; i++) {
+			int base = i*words;
+			long bit = 1L << i;
+			int col = i >>> 6;
+			for(int w = 0; w<words; w++) {
+				long word = bits[base + w];
+				while(word != 0) {
+					int j = (w << 6) + Long.numberOfTrailingZeros(word);
+					t.bits[j*words + col] |= bit;
+					word &= word - 1;
+				}
+			}
+		}
+		return t;
+	}
+
+	public BitGraph copy() {
+		BitGraph g = new BitGraph(n);
+		System.arraycopy(bits, 0, g.bits, 0, bits.length);
+		return g;
+	}
+
+	/**
+	 * relabels the pairs
+	 * @param oldToNew new index of every pair
+	 * @return the relabeled graph
+	 */
+	public BitGraph permute(int[] oldToNew) {
+		BitGraph g = new BitGraph(n);
+		for(int i = 0; i<n; i++) {
+			int base = oldToNew[i]*words;
+			for(int j = nextOut(i, 0); j>=0; j = nextOut(i, j+1)) {
+				int nj = oldToNew[j];
+				g.bits[base + (nj >>> 6)] |= 1L << nj;
+			}
+		}
+		return g;
+	}
+}
@@ -0,0 +1,325 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Immutable compressed sparse row form of the compatibility graph, meant for the sparse pools
+ * where a dense matrix is mostly empty. Arc e = outOffsets[i]..outOffsets[i+1]-1 goes from pair i
+ * to outTargets[e] and carries scores[e]; targets are sorted within a row. The reverse arrays list
+ * the donors of every pair together with the index of the forward arc, so arc data can be shared.
+ * Every pair also keeps the id it had in the source data.
+ */
+public class CSRGraph {
+
+	final int n;
+	final int[] outOffsets;
+	final int[] outTargets;
+	final float[] scores;
+	final int[] inOffsets;
+	final int[] inSources;
+	final int[] inArcs;
+	final int[] ids;
+
+	/**
+	 * wraps complete arrays as they are, used when reading a stored graph
+	 */
+	CSRGraph(int[] outOffsets, int[] outTargets, float[] scores, int[] inOffsets, int[] inSources, int[] inArcs, int[] ids) {
+		this.n = outOffsets.length-1;
+		this.outOffsets = outOffsets;
+		this.outTargets = outTargets;
+		this.scores = scores;
+		this.inOffsets = inOffsets;
+		this.inSources = inSources;
+		this.inArcs = inArcs;
+		this.ids = ids;
+	}
+
+	/**
+	 * wraps already sorted forward arrays and derives the reverse arrays
+	 */
+	CSRGraph(int[] outOffsets, int[] outTargets, float[] scores, int[] ids) {
+		this.n = outOffsets.length-1;
+		this.outOffsets = outOffsets;
+		this.outTargets = outTargets;
+		this.scores = scores;
+		this.ids = ids;
+
+		int m = outOffsets[n];
+		inOffsets = new int[n+1];
+		for(int e = 0; e<m; e++) {
+			inOffsets[outTargets[e]+1]++;
+		}
+		for(int i = 0; i<n; i++) {
+			inOffsets[i+1] += inOffsets[i];
+		}
+		inSources = new int[m];
+		inArcs = new int[m];
+		int[] fill = Arrays.copyOf(inOffsets, n);
+		for(int i = 0; i<n; i++) {
+			for(int e = outOffsets[i]; e<outOffsets[i+1]; e++) {
+				int pos = fill[outTargets[e]]++;
+				inSources[pos] = i;
+				inArcs[pos] = e;
+			}
+		}
+	}
+
+	/**
+	 * builds a graph from an unordered arc list. Self loops are dropped and of duplicate arcs only
+	 * the first is kept.
+	 * @param n amount of pairs
+	 * @param sources donor pair of every arc
+	 * @param targets recipient pair of every arc
+	 * @param arcScores score of every arc, null gives every arc a score of 1
+	 * @param m amount of arcs in the arrays
+	 * @param ids id of every pair in the data, null numbers the pairs from 0
+	 * @return
+	 */
+	public static CSRGraph fromArcs(int n, int[] sources, int[] targets, float[] arcScores, int m, int[] ids) {
+
+		//bucket by target first so the stable bucketing by source leaves every row sorted
+		int[] byTarget = bucket(n, targets, identity(m), m);
+		int[] order = bucket(n, sources, byTarget, m);
+
+		int[] offsets = new int[n+1];
+		int[] outTargets = new int[m];
+		float[] scores = new float[m];
+		int count = 0;
+		int row = -1;
+		for(int e : order) {
+			int i = sources[e];
+			int j = targets[e];
+			while(row < i) {
+				offsets[++row] = count;
+			}
+			if(i == j || (count > offsets[i] && outTargets[count-1] == j)) {
+				continue;
+			}
+			outTargets[count] = j;
+			scores[count] = arcScores == null ? 1f : arcScores[e];
+			count++;
+		}
+		while(row < n) {
+			offsets[++row] = count;
+		}
+		if(ids == null) {
+			ids = identity(n);
+		}
+		return new CSRGraph(offsets, Arrays.copyOf(outTargets, count), Arrays.copyOf(scores, count), ids);
+	}
+
+	/**
+	 * builds a graph from per-pair recipient lists without sorting, every arc gets a score of 1
+	 * @param rows recipients of every pair, ascending and without the pair itself
+	 * @param ids id of every pair in the data, null numbers the pairs from 0
+	 * @return
+	 */
+	public static CSRGraph fromRows(int[][] rows, int[] ids) {
+		int n = rows.length;
+		int[] offsets = new int[n+1];
+		for(int i = 0; i<n; i++) {
+			offsets[i+1] = offsets[i] + rows[i].length;
+		}
+		int[] targets = new int[offsets[n]];
+		for(int i = 0; i<n; i++) {
+			System.arraycopy(rows[i], 0, targets, offsets[i], rows[i].length);
+		}
+		float[] scores = new float[targets.length];
+		Arrays.fill(scores, 1f);
+		return new CSRGraph(offsets, targets, scores, ids == null ? identity(n) : ids);
+	}
+
+	public static CSRGraph fromBitGraph(BitGraph matches) {
+		int n = matches.size();
+		int[] offsets = new int[n+1];
+		int[] targets = new int[(int) matches.arcCount()];
+		int count = 0;
+		for(int i = 0; i<n; i++) {
+			for(int j = matches.nextOut(i, 0); j>=0; j = matches.nextOut(i, j+1)) {
+				targets[count++] = j;
+			}
+			offsets[i+1] = count;
+		}
+		float[] scores = new float[count];
+		Arrays.fill(scores, 1f);
+		return new CSRGraph(offsets, targets, scores, identity(n));
+	}
+
+	public static CSRGraph fromMatrix(boolean[][] matches) {
+		return fromBitGraph(BitGraph.fromMatrix(matches));
+	}
+
+	public BitGraph toBitGraph() {
+		BitGraph g = new BitGraph(n);
+		for(int i = 0; i<n; i++) {
+			for(int e = outOffsets[i]; e<outOffsets[i+1]; e++) {
+				g.addArc(i, outTargets[e]);
+			}
+		}
+		return g;
+	}
+
+	public boolean[][] toMatrix() {
+		boolean[][] matches = new boolean[n][n];
+		for(int i = 0; i<n; i++) {
+			for(int e = outOffsets[i]; e<outOffsets[i+1]; e++) {
+				matches[i][outTargets[e]] = true;
+			}
+		}
+		return matches;
+	}
+
+	public int size() {
+		return n;
+	}
+
+	public int arcCount() {
+		return outOffsets[n];
+	}
+
+	/**
+	 * @return index of the first outgoing arc of pair i
+	 */
+	public int outStart(int i) {
+		return outOffsets[i];
+	}
+
+	/**
+	 * @return index after the last outgoing arc of pair i
+	 */
+	public int outEnd(int i) {
+		return outOffsets[i+1];
+	}
+
+	public int outDegree(int i) {
+		return outOffsets[i+1] - outOffsets[i];
+	}
+
+	/**
+	 * @return recipient pair of arc e
+	 */
+	public int target(int e) {
+		return outTargets[e];
+	}
+
+	/**
+	 * @return score of arc e as given in the data
+	 */
+	public float score(int e) {
+		return scores[e];
+	}
+
+	/**
+	 * @return index of the first incoming entry of pair j
+	 */
+	public int inStart(int j) {
+		return inOffsets[j];
+	}
+
+	public int inEnd(int j) {
+		return inOffsets[j+1];
+	}
+
+	public int inDegree(int j) {
+		return inOffsets[j+1] - inOffsets[j];
+	}
+
+	/**
+	 * @return donor pair of incoming entry e
+	 */
+	public int source(int e) {
+		return inSources[e];
+	}
+
+	/**
+	 * @return forward arc index of incoming entry e
+	 */
+	public int inArc(int e) {
+		return inArcs[e];
+	}
+
+	/**
+	 * finds arc i->j with a binary search in the sorted row of i
+	 * @return the arc index, or a negative value if there is no such arc
+	 */
+	public int arcIndex(int i, int j) {
+		int index = Arrays.binarySearch(outTargets, outOffsets[i], outOffsets[i+1], j);
+		return index >= 0 ? index : -1;
+	}
+
+	public boolean hasArc(int i, int j) {
+		return arcIndex(i, j) >= 0;
+	}
+
+	/**
+	 * @return index of the first outgoing arc of pair i whose recipient is at least j
+	 */
+	public int firstOutFrom(int i, int j) {
+		int index = Arrays.binarySearch(outTargets, outOffsets[i], outOffsets[i+1], j);
+		return index >= 0 ? index : -index-1;
+	}
+
+	/**
+	 * @return id of pair i in the source data
+	 */
+	public int id(int i) {
+		return ids[i];
+	}
+
+	public int[] getIds() {
+		return ids.clone();
+	}
+
+	/**
+	 * @return approximate heap size of the arrays of this graph in bytes
+	 */
+	public long sizeInBytes() {
+		return 4L*(3L*(n+1) + 4L*arcCount());
+	}
+
+	/**
+	 * relabels the pairs in O(n+m)
+	 * @param oldToNew new index of every pair
+	 * @return the relabeled graph, ids and scores move along
+	 */
+	public CSRGraph permute(int[] oldToNew) {
+		int m = arcCount();
+		int[] sources = new int[m];
+		int[] targets = new int[m];
+		int[] newIds = new int[n];
+		for(int i = 0; i<n; i++) {
+			newIds[oldToNew[i]] = ids[i];
+			for(int e = outOffsets[i]; e<outOffsets[i+1]; e++) {
+				sources[e] = oldToNew[i];
+				targets[e] = oldToNew[outTargets[e]];
+			}
+		}
+		return fromArcs(n, sources, targets, scores, m, newIds);
+	}
+
+	/**
+	 * stable counting sort of the arc indices in order by key
+	 */
+	private static int[] bucket(int n, int[] key, int[] order, int m) {
+		int[] start = new int[n+1];
+		for(int idx = 0; idx<m; idx++) {
+			start[key[idx]+1]++;
+		}
+		for(int i = 0; i<n; i++) {
+			start[i+1] += start[i];
+		}
+		int[] result = new int[m];
+		for(int e : order) {
+			result[start[key[e]]++] = e;
+		}
+		return result;
+	}
+
+	static int[] identity(int n) {
+		int[] result = new int[n];
+		for(int i = 0; i<n; i++) {
+			result[i] = i;
+		}
+		return result;
+	}
+}
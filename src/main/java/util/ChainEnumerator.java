@@ -0,0 +1,143 @@
+package util;
+
+/**
+ * Lists every chain of at most maxLength pairs into a {@link ChainTrie}. From every altruist a depth
+ * first search walks the paths through distinct pairs, and every path it reaches is a chain, since
+ * a chain can end at any pair: the last donor gives to the waiting list. The search adds a chain to
+ * the trie as soon as it reaches it and extends it from there, so a chain is stored as its last pair
+ * and the index of its prefix and nothing is copied. Rows are scanned word by word against a mask
+ * of the pairs on the path, as in {@link CycleEnumerator}.
+ */
+public class ChainEnumerator {
+
+	private final BitGraph matches;
+	private final Altruists altruists;
+	private final int maxLength;
+	private final int words;
+
+	/**
+	 * @param matches
+	 * @param altruists with targets among the pairs of matches
+	 * @param maxLength most pairs on a chain
+	 */
+	public ChainEnumerator(BitGraph matches, Altruists altruists, int maxLength) {
+		this.matches = matches;
+		this.altruists = altruists;
+		this.maxLength = maxLength;
+		this.words = matches.words();
+	}
+
+	/**
+	 * @return all chains of at most maxLength pairs
+	 */
+	public ChainTrie enumerate() {
+		return enumerate(null, null);
+	}
+
+	/**
+	 * lists the chains that start at an altruist set in allowedAltruists and use only pairs set in allowed
+	 * @param allowed bitset of pairs, null for all pairs
+	 * @param allowedAltruists bitset of altruists, null for all altruists
+	 * @return the chains, those of every altruist in depth first order
+	 */
+	public ChainTrie enumerate(long[] allowed, long[] allowedAltruists) {
+		ChainTrie chains = new ChainTrie(altruists.size());
+		new Search(allowed).run(allowedAltruists, chains, null);
+		return chains;
+	}
+
+	/**
+	 * @return amount of chains of at most maxLength pairs, counted without storing them
+	 */
+	public long count() {
+		long[] count = new long[1];
+		new Search(null).run(null, null, count);
+		return count[0];
+	}
+
+	private class Search {
+
+		private final long[] allowed;
+		private final long[] onPath = new long[words];
+		//candidates of every depth, kept while the deeper levels are searched
+		private final long[][] candidates = new long[Math.max(maxLength, 1)][words];
+
+		Search(long[] allowed) {
+			this.allowed = allowed;
+		}
+
+		/**
+		 * adds the chains to chains, or counts them in count when chains is null
+		 */
+		void run(long[] allowedAltruists, ChainTrie chains, long[] count) {
+			if(maxLength < 1) {
+				return;
+			}
+			for(int a = 0; a<altruists.size(); a++) {
+				if(allowedAltruists != null && (allowedAltruists[a >>> 6] & (1L << a)) == 0) {
+					continue;
+				}
+				for(int e = altruists.outStart(a); e<altruists.outEnd(a); e++) {
+					int u = altruists.target(e);
+					if(allowed != null && (allowed[u >>> 6] & (1L << u)) == 0) {
+						continue;
+					}
+					int chain = -1;
+					if(chains != null) {
+						chain = add(chains, ChainTrie.root(a), u);
+					}
+					else {
+						count[0]++;
+					}
+					onPath[u >>> 6] |= 1L << u;
+					extend(u, 1, chain, chains, count);
+					onPath[u >>> 6] &= ~(1L << u);
+				}
+			}
+		}
+
+		/**
+		 * extends the chain of depth pairs that ends at v with every pair v gives to
+		 */
+		private void extend(int v, int depth, int chain, ChainTrie chains, long[] count) {
+			if(depth == maxLength) {
+				return;
+			}
+			long[] next = candidates[depth];
+			for(int w = 0; w<words; w++) {
+				long word = matches.word(v, w) & ~onPath[w];
+				next[w] = allowed == null ? word : word & allowed[w];
+			}
+			if(chains == null && depth+1 == maxLength) {
+				for(int w = 0; w<words; w++) {
+					count[0] += Long.bitCount(next[w]);
+				}
+				return;
+			}
+			for(int w = 0; w<words; w++) {
+				long word = next[w];
+				while(word != 0) {
+					int u = (w << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					int extended = -1;
+					if(chains != null) {
+						extended = add(chains, chain, u);
+					}
+					else {
+						count[0]++;
+					}
+					onPath[w] |= 1L << u;
+					extend(u, depth+1, extended, chains, count);
+					onPath[w] &= ~(1L << u);
+				}
+			}
+		}
+
+		private int add(ChainTrie chains, int parent, int u) {
+			if(chains.size() == 1 << 30) {
+				throw new IllegalStateException("More chains of at most " +maxLength+ " pairs than fit in a trie");
+			}
+			return chains.add(parent, u);
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prefix trie of chains, paths that start at an altruist and go through distinct pairs. Every
+ * chain is one node: the pair it ends with and a pointer to the chain it extends, or to its
+ * altruist through {@link #root}. A chain of d pairs takes 8 bytes however long it is, and every
+ * prefix of a chain is a chain of the trie as well, so the chains that share a start share it in
+ * memory too. Chains are added after their parent, so going up always goes to lower indices.
+ *
+ * A chain can also be packed into a long in the layout of {@link CycleStore}, with the altruist in
+ * the first slot and {@link #CHAIN} added to the length field, which then holds the amount of
+ * pairs. Packed chains go next to packed cycles where the columns of a solution are kept.
+ */
+public class ChainTrie {
+
+	/** flag in the length field of a packed chain */
+	public static final int CHAIN = 8;
+	/** most pairs a packed chain holds */
+	public static final int MAX_PACKED_PAIRS = CycleStore.MAX_LENGTH - 1;
+
+	private static final int LENGTH_BITS = 4;
+	private static final int VERTEX_BITS = 12;
+
+	private final int altruists;
+	private final IntList parents;
+	private final IntList pairs;
+
+	/**
+	 * @param altruists amount of altruists the chains can start at
+	 */
+	public ChainTrie(int altruists) {
+		this(altruists, 16);
+	}
+
+	public ChainTrie(int altruists, int capacity) {
+		this.altruists = altruists;
+		this.parents = new IntList(capacity);
+		this.pairs = new IntList(capacity);
+	}
+
+	/**
+	 * @return the parent of the chains that start at altruist a with their first pair
+	 */
+	public static int root(int a) {
+		return -1-a;
+	}
+
+	/**
+	 * @param parent a chain, or the {@link #root} of an altruist
+	 * @param pair not on parent
+	 * @return the new chain, parent followed by pair
+	 */
+	public int add(int parent, int pair) {
+		parents.add(parent);
+		pairs.add(pair);
+		return pairs.size()-1;
+	}
+
+	/**
+	 * @return amount of chains
+	 */
+	public int size() {
+		return pairs.size();
+	}
+
+	public boolean isEmpty() {
+		return pairs.isEmpty();
+	}
+
+	/**
+	 * @return amount of altruists the chains can start at
+	 */
+	public int altruists() {
+		return altruists;
+	}
+
+	/**
+	 * @return the chain c extends, or the root of its altruist when c has a single pair
+	 */
+	public int parent(int c) {
+		return parents.get(c);
+	}
+
+	/**
+	 * @return the last pair of c
+	 */
+	public int pair(int c) {
+		return pairs.get(c);
+	}
+
+	/**
+	 * @return the altruist c starts at
+	 */
+	public int altruist(int c) {
+		while(c >= 0) {
+			c = parents.get(c);
+		}
+		return -1-c;
+	}
+
+	/**
+	 * @return amount of pairs on c
+	 */
+	public int length(int c) {
+		int length = 0;
+		while(c >= 0) {
+			c = parents.get(c);
+			length++;
+		}
+		return length;
+	}
+
+	/**
+	 * writes the pairs of c in the order of the chain
+	 * @param dest at least {@link #length} long
+	 * @return amount of pairs
+	 */
+	public int pairs(int c, int[] dest) {
+		int length = length(c);
+		for(int p = length-1; p>=0; p--) {
+			dest[p] = pairs.get(c);
+			c = parents.get(c);
+		}
+		return length;
+	}
+
+	/**
+	 * @return chain c packed into a long
+	 */
+	public long pack(int c) {
+		int[] path = new int[MAX_PACKED_PAIRS];
+		int length = length(c);
+		if(length > MAX_PACKED_PAIRS) {
+			throw new IllegalArgumentException("Chains of " +length+ " pairs do not fit in a long");
+		}
+		pairs(c, path);
+		return pack(altruist(c), path, length);
+	}
+
+	/**
+	 * @param altruist below {@link CycleStore#MAX_PAIRS}
+	 * @param path pairs of the chain in order, each below {@link CycleStore#MAX_PAIRS}
+	 * @param length at most {@link #MAX_PACKED_PAIRS}
+	 * @return the packed chain
+	 */
+	public static long pack(int altruist, int[] path, int length) {
+		if(length > MAX_PACKED_PAIRS) {
+			throw new IllegalArgumentException("Chains of " +length+ " pairs do not fit in a long");
+		}
+		long chain = CHAIN | length | (long) altruist << LENGTH_BITS;
+		for(int p = 0; p<length; p++) {
+			chain |= (long) path[p] << (LENGTH_BITS + (p+1)*VERTEX_BITS);
+		}
+		return chain;
+	}
+
+	/**
+	 * @param chain the altruist as -1-a followed by the pairs, as in {@link #toList(long)}
+	 */
+	public static long pack(List<Integer> chain) {
+		int[] path = new int[chain.size()-1];
+		for(int p = 0; p<path.length; p++) {
+			path[p] = chain.get(p+1);
+		}
+		return pack(-1-chain.get(0), path, path.length);
+	}
+
+	/**
+	 * @return whether column is a packed chain rather than a packed cycle
+	 */
+	public static boolean isChain(long column) {
+		return (column & CHAIN) != 0;
+	}
+
+	/**
+	 * @return amount of pairs on a packed chain
+	 */
+	public static int length(long chain) {
+		return (int) (chain & (CHAIN-1));
+	}
+
+	public static int altruist(long chain) {
+		return CycleStore.vertex(chain, 0);
+	}
+
+	/**
+	 * @return pair i of a packed chain
+	 */
+	public static int pair(long chain, int i) {
+		return CycleStore.vertex(chain, i+1);
+	}
+
+	/**
+	 * @return whether a packed column, chain or cycle, has pair v
+	 */
+	public static boolean containsPair(long column, int v) {
+		if(!isChain(column)) {
+			return CycleStore.contains(column, v);
+		}
+		for(int i = 0; i<length(column); i++) {
+			if(pair(column, i) == v) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the altruist of chain c as -1-a followed by its pairs, so chains and cycles can share
+	 * a list of lists
+	 */
+	public ArrayList<Integer> toList(int c) {
+		int[] path = new int[length(c)];
+		pairs(c, path);
+		ArrayList<Integer> result = new ArrayList<>(path.length+1);
+		result.add(-1-altruist(c));
+		for(int v : path) {
+			result.add(v);
+		}
+		return result;
+	}
+
+	/**
+	 * @return a packed chain as in {@link #toList(int)}
+	 */
+	public static ArrayList<Integer> toList(long chain) {
+		int length = length(chain);
+		ArrayList<Integer> result = new ArrayList<>(length+1);
+		result.add(-1-altruist(chain));
+		for(int i = 0; i<length; i++) {
+			result.add(pair(chain, i));
+		}
+		return result;
+	}
+
+	/**
+	 * @return whether a list of {@link #toList(int)} is a chain rather than a cycle
+	 */
+	public static boolean isChain(List<Integer> column) {
+		return !column.isEmpty() && column.get(0) < 0;
+	}
+
+	/**
+	 * @return the altruist and the pairs separated by arrows
+	 */
+	public static String format(long chain) {
+		StringBuilder result = new StringBuilder("a").append(altruist(chain));
+		for(int i = 0; i<length(chain); i++) {
+			result.append("->").append(pair(chain, i));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * @return bytes taken by the parent and pair arrays
+	 */
+	public long sizeInBytes() {
+		return (long) (parents.array().length + pairs.array().length) * Integer.BYTES;
+	}
+}
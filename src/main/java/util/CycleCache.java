@@ -0,0 +1,159 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Keeps listed cycle sets as binary files next to the build output, see {@link CycleFile}. A file is
+ * named after a fingerprint of the graph the cycles were listed on and k, so every run that ends up
+ * with the same graph after reduction maps the cycles instead of listing them again, whichever
+ * instance or driver it came from. Files that can not be read or written are skipped with a message,
+ * the cycles are then listed as without the cache.
+ *
+ * Only graphs that come back between runs belong here, the preprocessed graph of an instance. Graphs
+ * that differ every run, such as generated data, never hit and should be listed with
+ * {@link CycleUtils#getCycles(BitGraph, int)}. A graph that is an instance with some pairs removed
+ * gets the cached cycles of the instance that avoid those pairs. Cycles listed elsewhere, while a
+ * model is built, can be {@link #put} here. The files together are kept under {@link #MAX_BYTES},
+ * the least recently used go first.
+ */
+public class CycleCache {
+
+	public static final long MAX_BYTES = 4L << 30;
+
+	private static final File CACHE_DIR = new File("target/cycle-cache");
+
+	public static CycleStore getCycles(boolean[][] matches, int k) {
+		return getCycles(BitGraph.fromMatrix(matches), k);
+	}
+
+	public static CycleStore getCycles(CSRGraph matches, int k) {
+		return getCycles(matches.toBitGraph(), k);
+	}
+
+	/**
+	 * returns the cycles of at most k pairs of matches, from the cache if they were listed before
+	 * @param matches
+	 * @param k
+	 * @return the same cycles as {@link CycleUtils#getCycles(BitGraph, int)}, in the order of the
+	 * run that cached them
+	 */
+	public static CycleStore getCycles(BitGraph matches, int k) {
+		long fingerprint = fingerprint(matches);
+		Path cached = cacheFile(fingerprint, k);
+		try {
+			CycleStore cycles = CycleFile.read(cached, fingerprint, k);
+			if(cycles != null) {
+				cached.toFile().setLastModified(System.currentTimeMillis());
+				return cycles;
+			}
+		} catch (IOException e) {
+			System.out.println("Could not read cached cycles " +cached+ ": " +e.getMessage());
+		}
+		CycleStore cycles = CycleUtils.getCycles(matches, k);
+		put(matches, k, cycles);
+		return cycles;
+	}
+
+	/**
+	 * returns the cycles of at most k pairs of matches that only use pairs set in allowed, which are
+	 * the cycles of matches with the other pairs removed
+	 * @param allowed bitset of pairs
+	 * @return the cycles, on the heap
+	 */
+	public static CycleStore getCycles(BitGraph matches, int k, long[] allowed) {
+		CycleStore all = getCycles(matches, k);
+		CycleStore cycles = new CycleStore();
+		for(int c = 0; c<all.size(); c++) {
+			long cycle = all.get(c);
+			boolean keep = true;
+			for(int i = 0; i<CycleStore.length(cycle) && keep; i++) {
+				int v = CycleStore.vertex(cycle, i);
+				keep = (allowed[v >>> 6] & (1L << v)) != 0;
+			}
+			if(keep) {
+				cycles.add(cycle);
+			}
+		}
+		return cycles;
+	}
+
+	/**
+	 * caches cycles that were listed elsewhere, for instance while a model was built from them
+	 * @param cycles all cycles of at most k pairs of matches, in any order
+	 */
+	public static void put(BitGraph matches, int k, CycleStore cycles) {
+		long fingerprint = fingerprint(matches);
+		Path cached = cacheFile(fingerprint, k);
+		try {
+			CycleFile.write(cached, cycles, fingerprint, k);
+			evict(cached.toFile());
+		} catch (IOException e) {
+			System.out.println("Could not cache cycles in " +cached+ ": " +e.getMessage());
+		}
+	}
+
+	/**
+	 * deletes the least recently used files until the cache fits in {@link #MAX_BYTES}
+	 * @param keep the file just written, which stays even if it is larger on its own
+	 */
+	private static void evict(File keep) {
+		File[] files = CACHE_DIR.listFiles((dir, name) -> name.endsWith(".kcy"));
+		if(files == null) {
+			return;
+		}
+		long total = 0;
+		for(File file : files) {
+			total += file.length();
+		}
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for(int i = 0; i<files.length && total > MAX_BYTES; i++) {
+			if(files[i].equals(keep)) {
+				continue;
+			}
+			long length = files[i].length();
+			if(files[i].delete()) {
+				total -= length;
+			}
+			else {
+				System.out.println("Could not remove cached cycles " +files[i]);
+			}
+		}
+	}
+
+	/**
+	 * @return whether the cycles of at most k pairs of matches are in the cache
+	 */
+	public static boolean contains(BitGraph matches, int k) {
+		return cacheFile(fingerprint(matches), k).toFile().isFile();
+	}
+
+	/**
+	 * @return a 64-bit hash of the amount of pairs and every row of matches
+	 */
+	public static long fingerprint(BitGraph matches) {
+		long hash = mix(matches.size());
+		for(int i = 0; i<matches.size(); i++) {
+			for(int w = 0; w<matches.words(); w++) {
+				hash = mix(hash ^ matches.word(i, w)) + 0x9E3779B97F4A7C15L;
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * the finalizer of splitmix64
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private static Path cacheFile(long fingerprint, int k) {
+		return new File(CACHE_DIR, String.format("%016x.k%d.kcy", fingerprint, k)).toPath();
+	}
+}
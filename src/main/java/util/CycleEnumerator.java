@@ -0,0 +1,434 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Lists every cycle of at most k pairs exactly once, starting at its lowest pair. From every root
+ * a depth first search extends the path with higher pairs only, scanning the bitset rows word by
+ * word against a mask of the pairs already on the path. A breadth first search back from the root
+ * first gives the distance of every pair to it, so a path is only extended with pairs that can
+ * still close the cycle within k. The path is a fixed int[k], so nothing is allocated per cycle.
+ *
+ * The parallel mode cuts the search into tasks per root, and heavy roots into a task per second
+ * pair, which are spread over a work-stealing pool. Every task writes to its own buffer and the
+ * buffers are handed to the visitor in task order afterwards, which is the order of the sequential
+ * search, so the result does not depend on the amount of threads. The unordered mode skips the
+ * buffers and gives every thread a visitor of its own, for counts that are merged afterwards.
+ */
+public class CycleEnumerator {
+
+	/**
+	 * receives the cycles, path[0..length-1] is a cycle starting at its lowest pair. The array is
+	 * reused, so it has to be copied if it is kept.
+	 */
+	public interface CycleVisitor {
+		void visit(int[] path, int length);
+	}
+
+	private final BitGraph matches;
+	private final BitGraph donors;
+	private final int k;
+	private final int words;
+
+	public CycleEnumerator(BitGraph matches, int k) {
+		this.matches = matches;
+		this.donors = matches.transpose();
+		this.k = k;
+		this.words = matches.words();
+	}
+
+	public CycleEnumerator(CSRGraph matches, int k) {
+		this(matches.toBitGraph(), k);
+	}
+
+	public int size() {
+		return matches.size();
+	}
+
+	/**
+	 * visits all cycles of at most k pairs
+	 */
+	public void enumerate(CycleVisitor visitor) {
+		enumerate(null, visitor);
+	}
+
+	/**
+	 * visits all cycles of at most k pairs that use only pairs set in allowed
+	 * @param allowed bitset of pairs, null for all pairs
+	 * @param visitor
+	 */
+	public void enumerate(long[] allowed, CycleVisitor visitor) {
+		Search search = new Search(allowed);
+		for(int r = 0; r<matches.size(); r++) {
+			if(allowed == null || (allowed[r >>> 6] & (1L << r)) != 0) {
+				search.root(r, visitor);
+			}
+		}
+	}
+
+	/**
+	 * visits all cycles of at most k pairs, found on the common pool
+	 */
+	public void enumerateParallel(CycleVisitor visitor) {
+		enumerateParallel(null, visitor, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * visits all cycles of at most k pairs that use only pairs set in allowed. The cycles are found
+	 * on pool and visited afterwards on the calling thread, in the same order as {@link #enumerate}.
+	 * @param allowed bitset of pairs, null for all pairs
+	 * @param visitor
+	 * @param pool
+	 */
+	public void enumerateParallel(long[] allowed, CycleVisitor visitor, ForkJoinPool pool) {
+		if(pool.getParallelism() < 2) {
+			enumerate(allowed, visitor);
+			return;
+		}
+		int[][] tasks = tasks(allowed, pool.getParallelism());
+		int[] roots = tasks[0];
+		int[] seconds = tasks[1];
+		IntList[] found = new IntList[roots.length];
+		ThreadLocal<Search> searches = ThreadLocal.withInitial(() -> new Search(allowed));
+
+		IntFunction<CycleVisitor> buffers = t -> {
+			IntList buffer = new IntList();
+			found[t] = buffer;
+			return (path, length) -> {
+				buffer.add(length);
+				for(int p = 0; p<length; p++) {
+					buffer.add(path[p]);
+				}
+			};
+		};
+		if(roots.length > 0) {
+			pool.invoke(new Tasks(roots, seconds, searches, buffers, 0, roots.length));
+		}
+
+		int[] path = new int[Math.max(k, 1)];
+		for(int t = 0; t<found.length; t++) {
+			int[] buffer = found[t].array();
+			int size = found[t].size();
+			found[t] = null;
+			for(int pos = 0; pos<size;) {
+				int length = buffer[pos++];
+				System.arraycopy(buffer, pos, path, 0, length);
+				pos += length;
+				visitor.visit(path, length);
+			}
+		}
+	}
+
+	/**
+	 * visits all cycles of at most k pairs that use only pairs set in allowed, on the thread of pool
+	 * that finds them and in no particular order. Every thread gets its own visitor from visitors,
+	 * so they need no locking; this suits counts and other statistics that are merged afterwards.
+	 * @param allowed bitset of pairs, null for all pairs
+	 * @param visitors
+	 * @param pool
+	 * @return the visitors that were used
+	 */
+	public <V extends CycleVisitor> List<V> enumerateUnordered(long[] allowed, Supplier<V> visitors, ForkJoinPool pool) {
+		List<V> used = Collections.synchronizedList(new ArrayList<>());
+		if(pool.getParallelism() < 2) {
+			V visitor = visitors.get();
+			used.add(visitor);
+			enumerate(allowed, visitor);
+			return used;
+		}
+		int[][] tasks = tasks(allowed, pool.getParallelism());
+		ThreadLocal<Search> searches = ThreadLocal.withInitial(() -> new Search(allowed));
+		ThreadLocal<V> local = ThreadLocal.withInitial(() -> {
+			V visitor = visitors.get();
+			used.add(visitor);
+			return visitor;
+		});
+		if(tasks[0].length > 0) {
+			pool.invoke(new Tasks(tasks[0], tasks[1], searches, t -> local.get(), 0, tasks[0].length));
+		}
+		return used;
+	}
+
+	/**
+	 * cuts the search into tasks. A root whose branching, the higher recipients times the higher
+	 * donors, is above an even share of 8 tasks per thread gets a task per second pair.
+	 * @return the root of every task and its second pair, -1 for all
+	 */
+	private int[][] tasks(long[] allowed, int parallelism) {
+		int n = matches.size();
+		long[] weight = new long[n];
+		long total = 0;
+		for(int r = 0; r<n; r++) {
+			if(allowed != null && (allowed[r >>> 6] & (1L << r)) == 0) {
+				continue;
+			}
+			long out = 0;
+			for(int j = matches.nextOut(r, r+1); j>=0; j = matches.nextOut(r, j+1)) {
+				out++;
+			}
+			long in = 0;
+			for(int j = donors.nextOut(r, r+1); j>=0; j = donors.nextOut(r, j+1)) {
+				in++;
+			}
+			weight[r] = out*in;
+			total += weight[r];
+		}
+		long heavy = Math.max(1, total / (8L*Math.max(1, parallelism)));
+
+		IntList roots = new IntList(n);
+		IntList seconds = new IntList(n);
+		for(int r = 0; r<n; r++) {
+			if(weight[r] == 0) {
+				continue;
+			}
+			if(weight[r] <= heavy) {
+				roots.add(r);
+				seconds.add(-1);
+				continue;
+			}
+			for(int s = matches.nextOut(r, r+1); s>=0; s = matches.nextOut(r, s+1)) {
+				if(allowed == null || (allowed[s >>> 6] & (1L << s)) != 0) {
+					roots.add(r);
+					seconds.add(s);
+				}
+			}
+		}
+		return new int[][] {roots.toArray(), seconds.toArray()};
+	}
+
+	/**
+	 * @return amount of cycles of at most k pairs
+	 */
+	public long count() {
+		long[] count = new long[1];
+		enumerate((path, length) -> count[0]++);
+		return count[0];
+	}
+
+	/**
+	 * the tasks from index from to to, split in halves until a single task is left
+	 */
+	private class Tasks extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final int[] roots;
+		private final int[] seconds;
+		private final ThreadLocal<Search> searches;
+		//the visitor of every task
+		private final IntFunction<CycleVisitor> visitors;
+		private final int from;
+		private final int to;
+
+		Tasks(int[] roots, int[] seconds, ThreadLocal<Search> searches, IntFunction<CycleVisitor> visitors, int from, int to) {
+			this.roots = roots;
+			this.seconds = seconds;
+			this.searches = searches;
+			this.visitors = visitors;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new Tasks(roots, seconds, searches, visitors, from, mid),
+						new Tasks(roots, seconds, searches, visitors, mid, to));
+				return;
+			}
+			searches.get().root(roots[from], seconds[from], visitors.apply(from));
+		}
+	}
+
+	/**
+	 * the working memory of one search, which can be reused for every root
+	 */
+	class Search {
+
+		private final long[] allowed;
+		private final RowKernel kernel = ShortCycles.kernel();
+		private final int[] path = new int[Math.max(k, 1)];
+		private final int[] cursor = new int[Math.max(k, 1)];
+		private final long[] onPath = new long[words];
+		//arcs from a pair back to the root, among higher pairs and counted up to k-1
+		private final int[] distance;
+		private final int[] queue;
+
+		Search(long[] allowed) {
+			int n = matches.size();
+			this.allowed = allowed;
+			this.distance = new int[n];
+			this.queue = new int[n];
+			Arrays.fill(distance, Integer.MAX_VALUE);
+		}
+
+		/**
+		 * visits the cycles whose lowest pair is r
+		 */
+		void root(int r, CycleVisitor visitor) {
+			root(r, -1, visitor);
+		}
+
+		/**
+		 * visits the cycles whose lowest pair is r and, if second is not -1, whose next pair is second
+		 */
+		void root(int r, int second, CycleVisitor visitor) {
+			if(k < 2) {
+				return;
+			}
+			int reached = distances(r);
+
+			path[0] = r;
+			onPath[r >>> 6] |= 1L << r;
+			cursor[1] = r+1;
+			int depth = 1;
+			while(depth > 0) {
+				int last = path[depth-1];
+				int w;
+				if(depth == 1 && second >= 0) {
+					w = cursor[1] <= second ? next(last, second, depth) : -1;
+					w = w == second ? w : -1;
+				}
+				else {
+					w = next(last, cursor[depth], depth);
+				}
+				if(w < 0) {
+					depth--;
+					onPath[path[depth] >>> 6] &= ~(1L << path[depth]);
+					continue;
+				}
+				cursor[depth] = w+1;
+				path[depth] = w;
+				if(distance[w] == 1) {
+					visitor.visit(path, depth+1);
+				}
+				if(depth+1 < k) {
+					onPath[w >>> 6] |= 1L << w;
+					depth++;
+					cursor[depth] = r+1;
+				}
+			}
+
+			for(int q = 0; q<reached; q++) {
+				distance[queue[q]] = Integer.MAX_VALUE;
+			}
+		}
+
+		/**
+		 * adds the amount of cycles whose lowest pair is r to counts, by length. The cycles of k pairs
+		 * are not visited but counted per path of k-1 pairs, as the recipients of its last pair that
+		 * are donors of r, intersected by the kernel of {@link ShortCycles}.
+		 */
+		void count(int r, long[] counts) {
+			if(k < 2) {
+				return;
+			}
+			int reached = distances(r);
+			long[] closers = new long[words];
+			for(int q = 1; q<reached && distance[queue[q]] == 1; q++) {
+				closers[queue[q] >>> 6] |= 1L << queue[q];
+			}
+
+			path[0] = r;
+			onPath[r >>> 6] |= 1L << r;
+			cursor[1] = r+1;
+			int depth = 1;
+			while(depth > 0) {
+				if(depth == k-1) {
+					//the recipients of the last pair that close the cycle, less those on the path
+					int last = path[depth-1];
+					int closing = kernel.andCount(matches.bits(), last*words, closers, 0, words);
+					for(int p = 1; p<depth; p++) {
+						if((closers[path[p] >>> 6] & (1L << path[p])) != 0 && matches.hasArc(last, path[p])) {
+							closing--;
+						}
+					}
+					counts[k] += closing;
+					depth--;
+					onPath[path[depth] >>> 6] &= ~(1L << path[depth]);
+					continue;
+				}
+				int w = next(path[depth-1], cursor[depth], depth);
+				if(w < 0) {
+					depth--;
+					onPath[path[depth] >>> 6] &= ~(1L << path[depth]);
+					continue;
+				}
+				cursor[depth] = w+1;
+				path[depth] = w;
+				if(distance[w] == 1) {
+					counts[depth+1]++;
+				}
+				onPath[w >>> 6] |= 1L << w;
+				depth++;
+				cursor[depth] = r+1;
+			}
+
+			for(int q = 0; q<reached; q++) {
+				distance[queue[q]] = Integer.MAX_VALUE;
+			}
+		}
+
+		/**
+		 * @return the first recipient of v from index from that is allowed, not on the path and
+		 * close enough to the root to end a cycle of at most k pairs, or -1
+		 */
+		private int next(int v, int from, int depth) {
+			int w = from >>> 6;
+			if(w >= words) {
+				return -1;
+			}
+			long word = candidates(v, w) & (-1L << from);
+			while(true) {
+				while(word != 0) {
+					int j = (w << 6) + Long.numberOfTrailingZeros(word);
+					//the path would hold depth+1 pairs, plus distance-1 more to get back
+					if(distance[j] <= k - depth) {
+						return j;
+					}
+					word &= word - 1;
+				}
+				if(++w == words) {
+					return -1;
+				}
+				word = candidates(v, w);
+			}
+		}
+
+		private long candidates(int v, int w) {
+			long word = matches.word(v, w) & ~onPath[w];
+			return allowed == null ? word : word & allowed[w];
+		}
+
+		/**
+		 * fills distance for the allowed pairs above r that reach r within k-1 arcs
+		 * @return amount of pairs in queue whose distance has to be reset
+		 */
+		private int distances(int r) {
+			int tail = 0;
+			distance[r] = 0;
+			queue[tail++] = r;
+			for(int head = 0; head<tail; head++) {
+				int v = queue[head];
+				int d = distance[v] + 1;
+				if(d >= k) {
+					break;
+				}
+				for(int u = donors.nextOut(v, r+1); u>=0; u = donors.nextOut(v, u+1)) {
+					if(distance[u] == Integer.MAX_VALUE && (allowed == null || (allowed[u >>> 6] & (1L << u)) != 0)) {
+						distance[u] = d;
+						queue[tail++] = u;
+					}
+				}
+			}
+			return tail;
+		}
+	}
+}
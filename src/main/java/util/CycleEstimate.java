@@ -0,0 +1,276 @@
+package util;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Predicts the amount of cycles of every length up to k, and from that the memory and size of the
+ * formulations, without enumerating all cycles. Cycles of 2 and 3 pairs are counted exactly by
+ * {@link ShortCycles}. Longer ones are counted from a sample of roots: the roots are sorted by
+ * their branching, higher recipients times higher donors, every stride-th is searched and the counts
+ * are scaled by the total branching over that of the searched roots. The searches only count, so
+ * the cycles of k pairs are not visited one by one. The same roots give the variables of their copy
+ * in the EE formulation. The degree moment estimate of a random graph with the same degrees is kept
+ * as a cross check.
+ */
+public class CycleEstimate {
+
+	public static final int DEFAULT_SAMPLES = 64;
+
+	//rough sizes of a gurobi model, a variable keeps its name, bounds and column
+	private static final double BYTES_PER_VARIABLE = 160;
+	private static final double BYTES_PER_NONZERO = 16;
+	//measured on the delorme instances, counting and storing cycles on a single thread
+	private static final double CYCLES_PER_SECOND = 8e6;
+	private static final double VARIABLES_PER_SECOND = 1e6;
+
+	private final int n;
+	private final int k;
+	private final double[] cycles;
+	private final double[] moments;
+	private final double eeVariables;
+	private final int samples;
+
+	private CycleEstimate(int n, int k, double[] cycles, double[] moments, double eeVariables, int samples) {
+		this.n = n;
+		this.k = k;
+		this.cycles = cycles;
+		this.moments = moments;
+		this.eeVariables = eeVariables;
+		this.samples = samples;
+	}
+
+	public static CycleEstimate of(BitGraph matches, int k) {
+		return of(matches, k, DEFAULT_SAMPLES, 0);
+	}
+
+	public static CycleEstimate of(CSRGraph matches, int k) {
+		return of(matches.toBitGraph(), k);
+	}
+
+	/**
+	 * @param matches
+	 * @param k maximum cycle length
+	 * @param samples amount of roots searched, all roots are searched if there are not more
+	 * @param seed
+	 * @return
+	 */
+	public static CycleEstimate of(BitGraph matches, int k, int samples, long seed) {
+		int n = matches.size();
+		BitGraph donors = matches.transpose();
+		double[] cycles = new double[Math.max(k, 1)+1];
+		if(k >= 2) {
+			cycles[2] = ShortCycles.countTwoCycles(matches, donors);
+		}
+		if(k >= 3) {
+			cycles[3] = ShortCycles.countThreeCycles(matches, donors);
+		}
+
+		//roots that can start a cycle, by ascending weight
+		long[] weighted = new long[n];
+		int roots = 0;
+		for(int r = 0; r<n; r++) {
+			long weight = (long) higher(matches, r) * higher(donors, r);
+			if(weight > 0) {
+				weighted[roots++] = (weight << 32) | r;
+			}
+		}
+		Arrays.sort(weighted, 0, roots);
+
+		int sampled = Math.min(Math.max(samples, 1), roots);
+		double stride = sampled == 0 ? 0 : roots / (double) sampled;
+		double offset = new SplittableRandom(seed).nextDouble() * stride;
+		CycleEnumerator enumerator = new CycleEnumerator(matches, k);
+		CycleEnumerator.Search search = enumerator.new Search(null);
+		long[] found = new long[cycles.length];
+		int[] forward = new int[n];
+		int[] backward = new int[n];
+		int[] queue = new int[n];
+		double totalWeight = 0;
+		for(int p = 0; p<roots; p++) {
+			totalWeight += weighted[p] >>> 32;
+		}
+		double sampledWeight = 0;
+		double[] longer = new double[cycles.length];
+		double eeVariables = 0;
+		for(int s = 0; s<sampled; s++) {
+			long root = weighted[sampled == roots ? s : Math.min(roots-1, (int) (offset + s*stride))];
+			int r = (int) root;
+			sampledWeight += root >>> 32;
+			Arrays.fill(found, 0);
+			search.count(r, found);
+			for(int length = 4; length<cycles.length; length++) {
+				longer[length] += found[length];
+			}
+			eeVariables += copyArcs(matches, donors, r, k, forward, backward, queue);
+		}
+		//the samples count for their share of the total weight
+		double scale = sampledWeight == 0 ? 0 : totalWeight / sampledWeight;
+		for(int length = 4; length<cycles.length; length++) {
+			cycles[length] = longer[length] * scale;
+		}
+		eeVariables *= scale;
+
+		double[] moments = new double[cycles.length];
+		double arcs = matches.arcCount();
+		if(arcs > 0) {
+			int[] inDegrees = matches.inDegrees();
+			double mixed = 0;
+			for(int i = 0; i<n; i++) {
+				mixed += (double) matches.outDegree(i) * inDegrees[i];
+			}
+			double mu = mixed / arcs;
+			for(int length = 2; length<moments.length; length++) {
+				moments[length] = Math.pow(mu, length) / length;
+			}
+		}
+		return new CycleEstimate(n, k, cycles, moments, eeVariables, sampled);
+	}
+
+	/**
+	 * @return amount of pairs above r in row r
+	 */
+	private static int higher(BitGraph graph, int r) {
+		int count = 0;
+		for(int w = (r+1) >>> 6; w<graph.words(); w++) {
+			long word = graph.word(r, w);
+			if(w == (r+1) >>> 6) {
+				word &= -1L << (r+1);
+			}
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the arcs among pairs from r on that lie on a closed walk through r of at most k arcs,
+	 * which bounds the variables of the copy of r in the EE formulation
+	 */
+	private static long copyArcs(BitGraph matches, BitGraph donors, int r, int k, int[] forward, int[] backward, int[] queue) {
+		distances(matches, r, k, forward, queue);
+		distances(donors, r, k, backward, queue);
+		long arcs = 0;
+		for(int i = r; i<matches.size(); i++) {
+			if(forward[i] >= k) {
+				continue;
+			}
+			int left = k - 1 - forward[i];
+			for(int j = matches.nextOut(i, r); j>=0; j = matches.nextOut(i, j+1)) {
+				if(backward[j] <= left) {
+					arcs++;
+				}
+			}
+		}
+		return arcs;
+	}
+
+	/**
+	 * fills distance with the arcs from r to every pair from r on, k for pairs further than k-1
+	 */
+	private static void distances(BitGraph graph, int r, int k, int[] distance, int[] queue) {
+		Arrays.fill(distance, k);
+		distance[r] = 0;
+		int tail = 0;
+		queue[tail++] = r;
+		for(int head = 0; head<tail; head++) {
+			int v = queue[head];
+			if(distance[v] + 1 >= k) {
+				continue;
+			}
+			for(int u = graph.nextOut(v, r+1); u>=0; u = graph.nextOut(v, u+1)) {
+				if(distance[u] == k) {
+					distance[u] = distance[v] + 1;
+					queue[tail++] = u;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return predicted amount of cycles of length pairs
+	 */
+	public double cycles(int length) {
+		return length < cycles.length ? cycles[length] : 0;
+	}
+
+	public double total() {
+		double total = 0;
+		for(double count : cycles) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * @return the expected amount of cycles of length pairs in a random graph with the same degrees
+	 */
+	public double degreeMoment(int length) {
+		return length < moments.length ? moments[length] : 0;
+	}
+
+	/**
+	 * @return nonzeros of the cycle formulation, one per pair of every cycle
+	 */
+	public double cycleNonzeros() {
+		double nonzeros = 0;
+		for(int length = 2; length<cycles.length; length++) {
+			nonzeros += length * cycles[length];
+		}
+		return nonzeros;
+	}
+
+	/**
+	 * @return bytes of the cycle store, its index and the model of the cycle formulation
+	 */
+	public double cycleMemory() {
+		double variables = total();
+		double nonzeros = cycleNonzeros();
+		return variables * Long.BYTES + nonzeros * Integer.BYTES + variables * BYTES_PER_VARIABLE + (nonzeros + variables) * BYTES_PER_NONZERO;
+	}
+
+	/**
+	 * @return bytes of the packed cycles alone, the part of {@link #cycleMemory()} that a
+	 * {@link SpillingCycleStore} keeps off the heap
+	 */
+	public double cycleStoreMemory() {
+		return total() * Long.BYTES;
+	}
+
+	/**
+	 * @return seconds to enumerate the cycles and add them to the model
+	 */
+	public double cycleSeconds() {
+		return total() / CYCLES_PER_SECOND + total() / VARIABLES_PER_SECOND;
+	}
+
+	/**
+	 * @return an upper estimate of the arc variables over all copies of the EE formulation
+	 */
+	public double eeVariables() {
+		return eeVariables;
+	}
+
+	/**
+	 * @return bytes of the EE model, every arc variable is in about four constraints
+	 */
+	public double eeMemory() {
+		return eeVariables * BYTES_PER_VARIABLE + 4 * eeVariables * BYTES_PER_NONZERO;
+	}
+
+	public double eeSeconds() {
+		return eeVariables / VARIABLES_PER_SECOND;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		result.append(String.format("~%.3g cycles for k = %d from %d of %d roots", total(), k, samples, n));
+		for(int length = 2; length<cycles.length; length++) {
+			result.append(length == 2 ? ": " : ", ");
+			result.append(String.format("%.3g (moments %.3g) of length %d", cycles[length], moments[length], length));
+		}
+		result.append(String.format("; cycle formulation ~%.0f MB, EE ~%.3g variables and ~%.0f MB",
+				cycleMemory() / 1e6, eeVariables, eeMemory() / 1e6));
+		return result.toString();
+	}
+}
@@ -0,0 +1,99 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary file format for a {@link CycleStore}. The file starts with a header holding a magic
+ * number, the format version, the fingerprint of the graph the cycles were listed on, k and the
+ * amount of cycles, followed by the packed cycles. Everything is little endian and the cycles
+ * start 8-byte aligned, so they are mapped in place on reading.
+ */
+public class CycleFile {
+
+	private static final int MAGIC = 0x3159434B; // "KCY1"
+	public static final int VERSION = 1;
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4;
+
+	/**
+	 * writes cycles to path, through a temporary file so readers never see half a cycle set
+	 * @param fingerprint see {@link CycleCache#fingerprint}
+	 * @param k maximum length the cycles were listed with
+	 */
+	public static void write(Path path, CycleStore cycles, long fingerprint, int k) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocateDirect(HEADER_SIZE + (1 << 19)).order(ByteOrder.LITTLE_ENDIAN);
+		buf.putInt(MAGIC);
+		buf.putInt(VERSION);
+		buf.putLong(fingerprint);
+		buf.putInt(k);
+		buf.putInt(cycles.size());
+
+		Path parent = path.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+		Path tmp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+			int size = cycles.size();
+			for(int c = 0; c<size; c++) {
+				if(buf.remaining() < Long.BYTES) {
+					write(channel, buf);
+				}
+				buf.putLong(cycles.get(c));
+			}
+			write(channel, buf);
+		} catch(IOException e) {
+			Files.deleteIfExists(tmp);
+			throw e;
+		}
+		try {
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch(IOException e) {
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buf) throws IOException {
+		buf.flip();
+		while(buf.hasRemaining()) {
+			channel.write(buf);
+		}
+		buf.clear();
+	}
+
+	/**
+	 * maps a stored cycle set
+	 * @param fingerprint the fingerprint the file must have been written with
+	 * @param k the maximum length the file must have been written with
+	 * @return the cycles, or null when the file is missing, of another version or of another graph
+	 */
+	public static MappedCycleStore read(Path path, long fingerprint, int k) throws IOException {
+		if(!Files.isRegularFile(path)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if(channel.size() < HEADER_SIZE) {
+				return null;
+			}
+			ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while(buf.hasRemaining()) {
+				if(channel.read(buf) < 0) {
+					return null;
+				}
+			}
+			buf.flip();
+			if(buf.getInt() != MAGIC || buf.getInt() != VERSION || buf.getLong() != fingerprint || buf.getInt() != k) {
+				return null;
+			}
+			int size = buf.getInt();
+			if(channel.size() != HEADER_SIZE + (long) size * Long.BYTES) {
+				return null;
+			}
+			return MappedCycleStore.map(channel, HEADER_SIZE, size, ByteOrder.LITTLE_ENDIAN);
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Inverted index from every pair to the cycles that contain it, in the same offsets and ids layout
+ * as {@link CSRGraph}. It is built in two passes over a {@link CycleStore}, counting and then
+ * filling, and lists the cycles of every pair in ascending order.
+ *
+ * With chains, the columns are the cycles followed by the chains of a {@link ChainTrie} and the
+ * rows are the pairs followed by the altruists, so a chain is in the row of every pair on it and in
+ * that of its altruist, and two columns conflict exactly when they share a row.
+ */
+public class CycleIndex {
+
+	private final int[] offsets;
+	private final int[] ids;
+	private final int cycleCount;
+
+	private CycleIndex(int[] offsets, int[] ids, int cycleCount) {
+		this.offsets = offsets;
+		this.ids = ids;
+		this.cycleCount = cycleCount;
+	}
+
+	/**
+	 * @param cycles
+	 * @param n amount of pairs, above every pair in cycles
+	 * @return
+	 */
+	public static CycleIndex of(CycleStore cycles, int n) {
+		int[] offsets = new int[n+1];
+		int size = cycles.size();
+		for(int c = 0; c<size; c++) {
+			long cycle = cycles.get(c);
+			for(int p = 0; p<CycleStore.length(cycle); p++) {
+				offsets[CycleStore.vertex(cycle, p)+1]++;
+			}
+		}
+		for(int v = 0; v<n; v++) {
+			offsets[v+1] += offsets[v];
+		}
+		int[] ids = new int[offsets[n]];
+		int[] fill = new int[n];
+		System.arraycopy(offsets, 0, fill, 0, n);
+		for(int c = 0; c<size; c++) {
+			long cycle = cycles.get(c);
+			for(int p = 0; p<CycleStore.length(cycle); p++) {
+				ids[fill[CycleStore.vertex(cycle, p)]++] = c;
+			}
+		}
+		return new CycleIndex(offsets, ids, size);
+	}
+
+	/**
+	 * @param cycles columns 0 to cycles.size()-1
+	 * @param chains columns from cycles.size() on, chain c being column cycles.size()+c
+	 * @param n amount of pairs, the altruists are rows n and on
+	 * @return
+	 */
+	public static CycleIndex of(CycleStore cycles, ChainTrie chains, int n) {
+		int rows = n + chains.altruists();
+		int[] offsets = new int[rows+1];
+		int size = cycles.size();
+		for(int c = 0; c<size; c++) {
+			long cycle = cycles.get(c);
+			for(int p = 0; p<CycleStore.length(cycle); p++) {
+				offsets[CycleStore.vertex(cycle, p)+1]++;
+			}
+		}
+		//the rows of a chain are those of its prefix, found earlier, and its last pair
+		int[] altruist = new int[chains.size()];
+		for(int c = 0; c<chains.size(); c++) {
+			int parent = chains.parent(c);
+			altruist[c] = parent < 0 ? -1-parent : altruist[parent];
+			offsets[n+altruist[c]+1]++;
+			for(int d = c; d>=0; d = chains.parent(d)) {
+				offsets[chains.pair(d)+1]++;
+			}
+		}
+		for(int v = 0; v<rows; v++) {
+			offsets[v+1] += offsets[v];
+		}
+		int[] ids = new int[offsets[rows]];
+		int[] fill = new int[rows];
+		System.arraycopy(offsets, 0, fill, 0, rows);
+		for(int c = 0; c<size; c++) {
+			long cycle = cycles.get(c);
+			for(int p = 0; p<CycleStore.length(cycle); p++) {
+				ids[fill[CycleStore.vertex(cycle, p)]++] = c;
+			}
+		}
+		for(int c = 0; c<chains.size(); c++) {
+			ids[fill[n+altruist[c]]++] = size+c;
+			for(int d = c; d>=0; d = chains.parent(d)) {
+				ids[fill[chains.pair(d)]++] = size+c;
+			}
+		}
+		return new CycleIndex(offsets, ids, size+chains.size());
+	}
+
+	/**
+	 * @return amount of pairs, and altruists when built with chains
+	 */
+	public int size() {
+		return offsets.length-1;
+	}
+
+	/**
+	 * @return amount of columns, cycles and chains
+	 */
+	public int cycleCount() {
+		return cycleCount;
+	}
+
+	public int start(int v) {
+		return offsets[v];
+	}
+
+	public int end(int v) {
+		return offsets[v+1];
+	}
+
+	/**
+	 * @return amount of cycles that contain v
+	 */
+	public int degree(int v) {
+		return offsets[v+1] - offsets[v];
+	}
+
+	/**
+	 * @param pos between start(v) and end(v) of some pair v
+	 * @return the cycle at pos
+	 */
+	public int cycle(int pos) {
+		return ids[pos];
+	}
+
+	/**
+	 * @return the cycles that contain v, in ascending order
+	 */
+	public int[] cycles(int v) {
+		int[] result = new int[degree(v)];
+		System.arraycopy(ids, offsets[v], result, 0, result.length);
+		return result;
+	}
+
+	/**
+	 * @return a reusable iterator over the cycles that share a pair with a given cycle
+	 */
+	public Conflicts conflicts(CycleStore cycles) {
+		return new Conflicts(cycles, null);
+	}
+
+	/**
+	 * @return a reusable iterator over the columns that share a row with a given column, for an
+	 * index built with chains
+	 */
+	public Conflicts conflicts(CycleStore cycles, ChainTrie chains) {
+		return new Conflicts(cycles, chains);
+	}
+
+	/**
+	 * Lists every cycle that shares a pair with cycle c once, other than c itself, or with chains
+	 * every column that shares a row with column c. Cycles seen are stamped with the current round,
+	 * so nothing is cleared or allocated between rounds.
+	 */
+	public class Conflicts {
+
+		private final CycleStore cycles;
+		private final ChainTrie chains;
+		private final int[] seen = new int[cycleCount];
+		private int[] rows = new int[CycleStore.MAX_LENGTH+1];
+		private int length;
+		private int round;
+		private int p;
+		private int pos;
+		private int end;
+
+		private Conflicts(CycleStore cycles, ChainTrie chains) {
+			this.cycles = cycles;
+			this.chains = chains;
+		}
+
+		/**
+		 * starts listing the conflicts of cycle c
+		 */
+		public Conflicts of(int c) {
+			if(++round == 0) {
+				Arrays.fill(seen, 0);
+				round = 1;
+			}
+			seen[c] = round;
+			if(c < cycles.size()) {
+				long cycle = cycles.get(c);
+				length = CycleStore.length(cycle);
+				for(int i = 0; i<length; i++) {
+					rows[i] = CycleStore.vertex(cycle, i);
+				}
+			}
+			else {
+				int chain = c - cycles.size();
+				length = chains.length(chain) + 1;
+				if(rows.length < length) {
+					rows = new int[length];
+				}
+				chains.pairs(chain, rows);
+				rows[length-1] = size() - chains.altruists() + chains.altruist(chain);
+			}
+			p = -1;
+			pos = end = 0;
+			return this;
+		}
+
+		/**
+		 * @return the next conflicting cycle, or -1 once all have been listed
+		 */
+		public int next() {
+			while(true) {
+				while(pos < end) {
+					int d = ids[pos++];
+					if(seen[d] != round) {
+						seen[d] = round;
+						return d;
+					}
+				}
+				if(++p == length) {
+					p--;
+					return -1;
+				}
+				int v = rows[p];
+				pos = offsets[v];
+				end = offsets[v+1];
+			}
+		}
+	}
+}
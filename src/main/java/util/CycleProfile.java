@@ -0,0 +1,163 @@
+package util;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Counts of the cycles of at most k pairs, found without keeping the cycles: per length, per pair
+ * and optionally a histogram of their scores in fixed buckets over [0, 1]. Pair scores are degrees
+ * divided by n, so every cycle score falls in that range. The cycles are enumerated in the
+ * unordered parallel mode of {@link CycleEnumerator} with a counter per thread, so the memory used
+ * depends on n and the amount of buckets but not on the amount of cycles.
+ */
+public class CycleProfile {
+
+	private final long[] lengths;
+	private final long[] pairs;
+	private final long[] histogram;
+	private double maxScore;
+
+	private CycleProfile(int k, int n, int buckets) {
+		this.lengths = new long[Math.max(k, 1)+1];
+		this.pairs = new long[n];
+		this.histogram = new long[buckets];
+	}
+
+	/**
+	 * @return the counts per length and per pair, without scores
+	 */
+	public static CycleProfile count(BitGraph matches, int k) {
+		return of(matches, k, 0, ForkJoinPool.commonPool());
+	}
+
+	public static CycleProfile count(CSRGraph matches, int k) {
+		return count(matches.toBitGraph(), k);
+	}
+
+	/**
+	 * @param matches
+	 * @param k maximum cycle length
+	 * @param buckets amount of score buckets, 0 to skip scoring
+	 * @return
+	 */
+	public static CycleProfile of(BitGraph matches, int k, int buckets) {
+		return of(matches, k, buckets, ForkJoinPool.commonPool());
+	}
+
+	public static CycleProfile of(CSRGraph matches, int k, int buckets) {
+		return of(matches.toBitGraph(), k, buckets);
+	}
+
+	public static CycleProfile of(BitGraph matches, int k, int buckets, ForkJoinPool pool) {
+		int n = matches.size();
+		CycleScorer scorer = buckets > 0 ? new CycleScorer(matches) : null;
+		List<Counter> counters = new CycleEnumerator(matches, k).enumerateUnordered(null,
+				() -> new Counter(k, n, buckets, scorer), pool);
+
+		CycleProfile result = new CycleProfile(k, n, buckets);
+		for(Counter counter : counters) {
+			add(result.lengths, counter.profile.lengths);
+			add(result.pairs, counter.profile.pairs);
+			add(result.histogram, counter.profile.histogram);
+			result.maxScore = Math.max(result.maxScore, counter.profile.maxScore);
+		}
+		return result;
+	}
+
+	private static void add(long[] total, long[] part) {
+		for(int i = 0; i<total.length; i++) {
+			total[i] += part[i];
+		}
+	}
+
+	/**
+	 * counts the cycles found by one thread
+	 */
+	private static class Counter implements CycleEnumerator.CycleVisitor {
+
+		private final CycleProfile profile;
+		private final CycleScorer scorer;
+
+		Counter(int k, int n, int buckets, CycleScorer scorer) {
+			this.profile = new CycleProfile(k, n, buckets);
+			this.scorer = scorer;
+		}
+
+		@Override
+		public void visit(int[] path, int length) {
+			profile.lengths[length]++;
+			for(int p = 0; p<length; p++) {
+				profile.pairs[path[p]]++;
+			}
+			if(scorer != null) {
+				double score = scorer.score(path, length);
+				profile.histogram[profile.bucket(score)]++;
+				profile.maxScore = Math.max(profile.maxScore, score);
+			}
+		}
+	}
+
+	/**
+	 * @return the bucket of score
+	 */
+	public int bucket(double score) {
+		return Math.min(histogram.length-1, (int) (score*histogram.length));
+	}
+
+	/**
+	 * @return amount of cycles
+	 */
+	public long total() {
+		long total = 0;
+		for(long count : lengths) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * @return amount of cycles of length pairs
+	 */
+	public long count(int length) {
+		return length < lengths.length ? lengths[length] : 0;
+	}
+
+	/**
+	 * @return amount of cycles per length, indexed by length
+	 */
+	public long[] getLengthCounts() {
+		return lengths.clone();
+	}
+
+	/**
+	 * @return amount of cycles that contain pair v
+	 */
+	public long pairCount(int v) {
+		return pairs[v];
+	}
+
+	public long[] getPairCounts() {
+		return pairs.clone();
+	}
+
+	/**
+	 * @return amount of cycles per score bucket, bucket b holds scores from b/buckets on
+	 */
+	public long[] getHistogram() {
+		return histogram.clone();
+	}
+
+	public double getMaxScore() {
+		return maxScore;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		result.append(total()).append(" cycles");
+		for(int length = 2; length<lengths.length; length++) {
+			result.append(length == 2 ? ": " : ", ").append(lengths[length]).append(" of length ").append(length);
+		}
+		return result.toString();
+	}
+}
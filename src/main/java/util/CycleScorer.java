@@ -0,0 +1,222 @@
+package util;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Scores cycles and chains as {@link CycleUtils#calculateCycle(long, double[][])} does, from a
+ * table of arc weights sqrt(donor score * recipient score) that is filled once per graph, so
+ * scoring a cycle takes a load and an add per arc instead of a square root over a row of the pair
+ * scores. The score of a cycle closes with the donor of its first pair and the recipient of its
+ * last, which need not be an arc, so up to {@link #DENSE_PAIRS} pairs the table holds every ordered
+ * pair. Larger graphs keep a weight per arc beside the rows of the graph and work out the others
+ * when they are asked for. The sums are taken in the same order as calculateCycle, so the scores
+ * are the same to the last bit.
+ *
+ * A whole store is scored into a double[] in parallel, a chunk of the store per task, or through
+ * {@link #lazy} only where cycles are looked at.
+ */
+public class CycleScorer {
+
+	public static final int DENSE_PAIRS = 2048;
+
+	private final int n;
+	private final double[] donor;
+	private final double[] recipient;
+	private final double[] altruistValues;
+	//weights[i*n+j] when dense, otherwise weights[e] for arc e of the rows in offsets and targets
+	private final double[] weights;
+	private final int[] offsets;
+	private final int[] targets;
+
+	public CycleScorer(BitGraph matches) {
+		this(matches, Altruists.NONE);
+	}
+
+	/**
+	 * @param matches
+	 * @param altruists to score chains from, see {@link CycleUtils#calculateChains}
+	 */
+	public CycleScorer(BitGraph matches, Altruists altruists) {
+		this(CycleUtils.calculatePairs(matches), CycleUtils.calculateAltruists(altruists, matches.size()), matches);
+	}
+
+	public CycleScorer(CSRGraph matches) {
+		this(matches.toBitGraph());
+	}
+
+	/**
+	 * @param pairValues result of {@link CycleUtils#calculatePairs(BitGraph)}
+	 * @param altruistValues result of {@link CycleUtils#calculateAltruists}
+	 * @param matches the arcs to keep weights for when the table is not dense
+	 */
+	public CycleScorer(double[][] pairValues, double[] altruistValues, BitGraph matches) {
+		this.n = pairValues.length;
+		this.donor = new double[n];
+		this.recipient = new double[n];
+		for(int i = 0; i<n; i++) {
+			donor[i] = pairValues[i][0];
+			recipient[i] = pairValues[i][1];
+		}
+		this.altruistValues = altruistValues;
+
+		if(n <= DENSE_PAIRS) {
+			weights = new double[n*n];
+			IntStream.range(0, n).parallel().forEach(i -> {
+				for(int j = 0; j<n; j++) {
+					weights[i*n+j] = Math.sqrt(donor[i]*recipient[j]);
+				}
+			});
+			offsets = null;
+			targets = null;
+			return;
+		}
+		offsets = new int[n+1];
+		for(int i = 0; i<n; i++) {
+			offsets[i+1] = offsets[i] + matches.outDegree(i);
+		}
+		targets = new int[offsets[n]];
+		weights = new double[offsets[n]];
+		for(int i = 0; i<n; i++) {
+			int e = offsets[i];
+			for(int j = matches.nextOut(i, 0); j>=0; j = matches.nextOut(i, j+1)) {
+				targets[e] = j;
+				weights[e++] = Math.sqrt(donor[i]*recipient[j]);
+			}
+		}
+	}
+
+	/**
+	 * @return sqrt of the donor score of i times the recipient score of j
+	 */
+	public double weight(int i, int j) {
+		if(offsets == null) {
+			return weights[i*n+j];
+		}
+		int e = Arrays.binarySearch(targets, offsets[i], offsets[i+1], j);
+		return e >= 0 ? weights[e] : Math.sqrt(donor[i]*recipient[j]);
+	}
+
+	/**
+	 * @param column a packed cycle, or a packed chain of {@link ChainTrie} when there are altruists
+	 * @return the score
+	 */
+	public double score(long column) {
+		if(ChainTrie.isChain(column)) {
+			return scoreChain(column);
+		}
+		int length = CycleStore.length(column);
+		int first = CycleStore.vertex(column, 0);
+		double value = 0;
+		int v = first;
+		for(int i = 1; i<length; i++) {
+			int u = CycleStore.vertex(column, i);
+			value += weight(v, u);
+			v = u;
+		}
+		value += weight(first, v);
+		return value/(double) length;
+	}
+
+	/**
+	 * @return the score of the cycle path[0..length-1]
+	 */
+	public double score(int[] path, int length) {
+		double value = 0;
+		for(int i = 0; i<length-1; i++) {
+			value += weight(path[i], path[i+1]);
+		}
+		value += weight(path[0], path[length-1]);
+		return value/(double) length;
+	}
+
+	private double scoreChain(long chain) {
+		int length = ChainTrie.length(chain);
+		double value = Math.sqrt(altruistValues[ChainTrie.altruist(chain)]*recipient[ChainTrie.pair(chain, 0)]);
+		for(int i = 0; i<length-1; i++) {
+			value += weight(ChainTrie.pair(chain, i), ChainTrie.pair(chain, i+1));
+		}
+		return value/(double) length;
+	}
+
+	/**
+	 * scores all cycles on the common pool, a chunk of the store per task
+	 * @return the score of every cycle, by index
+	 */
+	public double[] scoreAll(CycleStore cycles) {
+		int size = cycles.size();
+		double[] scores = new double[size];
+		int chunks = (size + CycleStore.CHUNK_MASK) >>> CycleStore.CHUNK_BITS;
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			int end = Math.min(size, (chunk+1) << CycleStore.CHUNK_BITS);
+			for(int c = chunk << CycleStore.CHUNK_BITS; c<end; c++) {
+				scores[c] = score(cycles.get(c));
+			}
+		});
+		return scores;
+	}
+
+	/**
+	 * scores all chains, carrying the sum of the arcs of every chain down to the chains that extend it
+	 * @return the score of every chain, by index
+	 */
+	public double[] scoreChains(ChainTrie chains) {
+		double[] sums = new double[chains.size()];
+		int[] lengths = new int[chains.size()];
+		double[] scores = new double[chains.size()];
+		for(int c = 0; c<chains.size(); c++) {
+			int parent = chains.parent(c);
+			int pair = chains.pair(c);
+			if(parent < 0) {
+				sums[c] = Math.sqrt(altruistValues[-1-parent]*recipient[pair]);
+				lengths[c] = 1;
+			}
+			else {
+				sums[c] = sums[parent] + weight(chains.pair(parent), pair);
+				lengths[c] = lengths[parent] + 1;
+			}
+			scores[c] = sums[c]/(double) lengths[c];
+		}
+		return scores;
+	}
+
+	/**
+	 * @return scores of cycles that are worked out the first time they are asked for
+	 */
+	public Lazy lazy(CycleStore cycles) {
+		return new Lazy(cycles);
+	}
+
+	/**
+	 * Scores of a cycle store that are worked out on demand and kept, in chunks of the store that
+	 * are allocated when a cycle in them is first scored. Not safe for use by several threads.
+	 */
+	public class Lazy {
+
+		private final CycleStore cycles;
+		private final double[][] chunks;
+
+		private Lazy(CycleStore cycles) {
+			this.cycles = cycles;
+			this.chunks = new double[(cycles.size() + CycleStore.CHUNK_MASK) >>> CycleStore.CHUNK_BITS][];
+		}
+
+		/**
+		 * @return the score of cycle c
+		 */
+		public double get(int c) {
+			double[] chunk = chunks[c >>> CycleStore.CHUNK_BITS];
+			if(chunk == null) {
+				chunk = new double[CycleStore.CHUNK_SIZE];
+				Arrays.fill(chunk, Double.NaN);
+				chunks[c >>> CycleStore.CHUNK_BITS] = chunk;
+			}
+			double score = chunk[c & CycleStore.CHUNK_MASK];
+			if(Double.isNaN(score)) {
+				score = score(cycles.get(c));
+				chunk[c & CycleStore.CHUNK_MASK] = score;
+			}
+			return score;
+		}
+	}
+}
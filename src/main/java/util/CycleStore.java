@@ -0,0 +1,257 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Flat list of cycles of at most 5 pairs on graphs of at most 4096 pairs, each packed into a single
+ * long: the lowest 4 bits hold the length and every pair takes 12 bits after that, in the order of
+ * the cycle. Cycles are stored in their canonical rotation, starting at their lowest pair, so two
+ * cycles are equal exactly when their longs are equal. The longs live in chunks of 2^16 that are
+ * added as the store grows, so nothing is copied and a 4-cycle takes 8 bytes instead of the 100 and
+ * more of a boxed list.
+ *
+ * Subclasses can keep the chunks elsewhere by overriding {@link #newChunk}, {@link #chunkFull} and
+ * {@link #chunk}, as {@link MappedCycleStore} and {@link SpillingCycleStore} do.
+ */
+public class CycleStore {
+
+	public static final int MAX_LENGTH = 5;
+	public static final int MAX_PAIRS = 1 << 12;
+
+	private static final int LENGTH_BITS = 4;
+	private static final int VERTEX_BITS = 12;
+	private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+	private static final int VERTEX_MASK = MAX_PAIRS - 1;
+
+	protected static final int CHUNK_BITS = 16;
+	protected static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	protected static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private long[][] chunks = new long[4][];
+	private long[] current;
+	private int size;
+	private CycleIndex index;
+
+	public CycleStore() {
+	}
+
+	/**
+	 * for subclasses that already hold size cycles, which they return through {@link #chunk}
+	 */
+	protected CycleStore(int size) {
+		this.size = size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the packed cycle at index
+	 */
+	public long get(int index) {
+		return chunk(index >>> CHUNK_BITS)[index & CHUNK_MASK];
+	}
+
+	public int length(int index) {
+		return length(get(index));
+	}
+
+	/**
+	 * @return pair i of the cycle at index
+	 */
+	public int vertex(int index, int i) {
+		return vertex(get(index), i);
+	}
+
+	public void add(long cycle) {
+		int offset = size & CHUNK_MASK;
+		if(offset == 0) {
+			int c = size >>> CHUNK_BITS;
+			if(c == chunks.length) {
+				chunks = Arrays.copyOf(chunks, c << 1);
+			}
+			current = newChunk(c);
+			chunks[c] = current;
+		}
+		current[offset] = cycle;
+		size++;
+		if(offset == CHUNK_MASK) {
+			chunkFull((size-1) >>> CHUNK_BITS);
+		}
+	}
+
+	/**
+	 * adds path[0..length-1], rotated to start at its lowest pair
+	 */
+	public void add(int[] path, int length) {
+		add(encode(path, length));
+	}
+
+	/**
+	 * @return a visitor that adds every cycle to this store
+	 */
+	public CycleEnumerator.CycleVisitor collector() {
+		return this::add;
+	}
+
+	/**
+	 * passes every packed cycle to action, in order
+	 */
+	public void forEach(LongConsumer action) {
+		int count = (size + CHUNK_MASK) >>> CHUNK_BITS;
+		for(int c = 0; c<count; c++) {
+			long[] chunk = chunk(c);
+			int end = Math.min(CHUNK_SIZE, size - (c << CHUNK_BITS));
+			for(int i = 0; i<end; i++) {
+				action.accept(chunk[i]);
+			}
+		}
+	}
+
+	/**
+	 * @param n amount of pairs
+	 * @return the index from pairs to the cycles in this store, built once and kept until cycles
+	 * are added
+	 */
+	public CycleIndex index(int n) {
+		if(index == null || index.size() != n || index.cycleCount() != size) {
+			index = CycleIndex.of(this, n);
+		}
+		return index;
+	}
+
+	public ArrayList<Integer> toList(int index) {
+		return toList(get(index));
+	}
+
+	/**
+	 * @return bytes taken by the chunks
+	 */
+	public long sizeInBytes() {
+		return (long) ((size + CHUNK_MASK) >>> CHUNK_BITS) * CHUNK_SIZE * Long.BYTES;
+	}
+
+	/**
+	 * @return an empty chunk to hold the cycles from index c*2^16 on
+	 */
+	protected long[] newChunk(int c) {
+		return new long[CHUNK_SIZE];
+	}
+
+	/**
+	 * called once chunk c holds 2^16 cycles, after which it is only read
+	 */
+	protected void chunkFull(int c) {
+	}
+
+	/**
+	 * @return chunk c, which has been filled through {@link #newChunk}
+	 */
+	protected long[] chunk(int c) {
+		return chunks[c];
+	}
+
+	/**
+	 * replaces chunk c, for subclasses that release or reload chunks
+	 */
+	protected void setChunk(int c, long[] chunk) {
+		chunks[c] = chunk;
+	}
+
+	/**
+	 * @param path pairs of the cycle in order, each below {@link #MAX_PAIRS}
+	 * @param length at most {@link #MAX_LENGTH}
+	 * @return the packed cycle, rotated to start at its lowest pair
+	 */
+	public static long encode(int[] path, int length) {
+		if(length > MAX_LENGTH) {
+			throw new IllegalArgumentException("Cycles of " +length+ " pairs do not fit in a long");
+		}
+		int first = 0;
+		for(int p = 1; p<length; p++) {
+			if(path[p] < path[first]) {
+				first = p;
+			}
+		}
+		long cycle = length;
+		for(int p = 0; p<length; p++) {
+			int v = path[(first + p) % length];
+			if((v & ~VERTEX_MASK) != 0) {
+				throw new IllegalArgumentException("Pair " +v+ " does not fit in 12 bits");
+			}
+			cycle |= (long) v << (LENGTH_BITS + p*VERTEX_BITS);
+		}
+		return cycle;
+	}
+
+	public static long encode(List<Integer> cycle) {
+		int[] path = new int[cycle.size()];
+		for(int p = 0; p<path.length; p++) {
+			path[p] = cycle.get(p);
+		}
+		return encode(path, path.length);
+	}
+
+	public static int length(long cycle) {
+		return (int) (cycle & LENGTH_MASK);
+	}
+
+	public static int vertex(long cycle, int i) {
+		return (int) (cycle >>> (LENGTH_BITS + i*VERTEX_BITS)) & VERTEX_MASK;
+	}
+
+	public static boolean contains(long cycle, int v) {
+		int length = length(cycle);
+		for(int i = 0; i<length; i++) {
+			if(vertex(cycle, i) == v) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return whether the cycles share a pair
+	 */
+	public static boolean overlaps(long a, long b) {
+		int length = length(a);
+		for(int i = 0; i<length; i++) {
+			if(contains(b, vertex(a, i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public static ArrayList<Integer> toList(long cycle) {
+		int length = length(cycle);
+		ArrayList<Integer> result = new ArrayList<>(length);
+		for(int i = 0; i<length; i++) {
+			result.add(vertex(cycle, i));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the pairs separated by commas
+	 */
+	public static String format(long cycle) {
+		StringBuilder result = new StringBuilder();
+		int length = length(cycle);
+		for(int i = 0; i<length; i++) {
+			if(i > 0) {
+				result.append(',');
+			}
+			result.append(vertex(cycle, i));
+		}
+		return result.toString();
+	}
+}
@@ -2,93 +2,92 @@ package util;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-import java.util.function.Consumer;
-
-import org.jgrapht.alg.connectivity.GabowStrongConnectivityInspector;
-import org.jgrapht.alg.cycle.HawickJamesSimpleCycles;
-import org.jgrapht.graph.DefaultEdge;
-import org.jgrapht.graph.SimpleDirectedGraph;
-
-import com.gurobi.gurobi.GRBException;
 
 public class CycleUtils {
 
-	public static ArrayList<ArrayList<Integer>> getCycles(boolean[][] matches, int k) throws GRBException {
-
-		SimpleDirectedGraph<Integer, DefaultEdge> g = new SimpleDirectedGraph<>(DefaultEdge.class);
-
-		//add vertices
-		ArrayList<Integer> vertices = new ArrayList<>(matches.length);
-		for(int i = 0; i<matches.length; i++) {
-			vertices.add(i);
-			g.addVertex(vertices.get(i));
+	public static CycleStore getCycles(boolean[][] matches, int k) {
+		return getCycles(BitGraph.fromMatrix(matches), k);
+	}
 
-		}
+	/**
+	 * lists all cycles of at most k pairs, see {@link CycleEnumerator}
+	 * @param matches at most {@link CycleStore#MAX_PAIRS} pairs
+	 * @param k at most {@link CycleStore#MAX_LENGTH}
+	 * @return every cycle once, starting at its lowest pair
+	 */
+	public static CycleStore getCycles(BitGraph matches, int k) {
+		return getCycles(matches, k, new CycleStore());
+	}
 
-		//add edges
-		for(int i = 0; i<matches.length; i++) {
-			for(int j = 0; j<matches.length; j++) {
-				if(matches[i][j]) {
-					g.addEdge(vertices.get(i), vertices.get(j));
-				}
-			}
+	/**
+	 * lists all cycles of at most k pairs into cycles, for instance a {@link SpillingCycleStore}
+	 * @return cycles
+	 */
+	public static CycleStore getCycles(BitGraph matches, int k, CycleStore cycles) {
+		if(matches.size() > CycleStore.MAX_PAIRS || k > CycleStore.MAX_LENGTH) {
+			throw new IllegalArgumentException("Cycles of " +k+ " out of " +matches.size()+ " pairs do not fit in a cycle store");
 		}
-
-		
-		//find cycles
-		HawickJamesSimpleCycles<Integer, DefaultEdge> finder = new HawickJamesSimpleCycles<>(g);
-		finder.setPathLimit(k);
-		ArrayList<ArrayList<Integer>> cycles = new ArrayList<>();
-		finder.findSimpleCycles(new CycleConsumer(cycles));
+		new CycleEnumerator(matches, k).enumerateParallel(cycles.collector());
 		return cycles;
 	}
 
-	public static class CycleConsumer implements Consumer<List<Integer>> {
+	public static CycleStore getCycles(CSRGraph matches, int k) {
+		return getCycles(matches.toBitGraph(), k);
+	}
 
-		ArrayList<ArrayList<Integer>> cycles;
+	/**
+	 * Calculates the scores of each pair's donor and recipient.
+	 * @param matches n-by-n boolean array of the possible matches between pairs
+	 * @return an n-by-2 double array where the first column is the score of the donor and
+	 * the second column the score of the recipient.
+	 */
+	public static double[][] calculatePairs(boolean[][] matches){
+		return calculatePairs(BitGraph.fromMatrix(matches));
+	}
 
-		public CycleConsumer(ArrayList<ArrayList<Integer>> cycles) {
-			this.cycles = cycles;
-		}
+	/**
+	 * Calculates the scores of each pair's donor and recipient from popcounts of the rows.
+	 * @param matches the possible matches between pairs
+	 * @return an n-by-2 double array where the first column is the score of the donor and
+	 * the second column the score of the recipient.
+	 */
+	public static double[][] calculatePairs(BitGraph matches){
 
-		@Override
-		public void accept(List<Integer> t) {
-			ArrayList<Integer> c = new ArrayList<>(t.size());
-			c.addAll(t);
-			cycles.add(c);
+		int n = matches.size();
+		double[][] result = new double[n][2];
+		int[] inDegrees = matches.inDegrees();
+		for(int i = 0; i<n; i++) {
+			result[i][0] = matches.outDegree(i);
+			result[i][1] = inDegrees[i];
 		}
+		averagePairs(result, n);
+		return result;
 	}
 
 	/**
-	 * Calculates the scores of each pair's donor and recipient.
-	 * @param matches n-by-n boolean array of the possible matches between pairs
+	 * Calculates the scores of each pair's donor and recipient from the row offsets.
+	 * @param matches the possible matches between pairs
 	 * @return an n-by-2 double array where the first column is the score of the donor and
 	 * the second column the score of the recipient.
 	 */
-	public static double[][] calculatePairs(boolean[][] matches){
+	public static double[][] calculatePairs(CSRGraph matches){
 
-		int n = matches.length;
+		int n = matches.size();
 		double[][] result = new double[n][2];
 		for(int i = 0; i<n; i++) {
-			for(int j = 0; j<n; j++) {
-				if(matches[i][j]) {
-					result[i][0]++;
-					result[j][1]++;
-				}
-			}
+			result[i][0] = matches.outDegree(i);
+			result[i][1] = matches.inDegree(i);
 		}
-		//get average
+		averagePairs(result, n);
+		return result;
+	}
+
+	private static void averagePairs(double[][] result, int n) {
 		for(int i = 0; i<n; i++) {
 			for(int j = 0; j<2; j++) {
 				result[i][j] = Math.round((result[i][j]/(double) n)*1000)/1000.0;
 			}
 		}
-
-		return result;
 	}
 
 	/**
@@ -97,25 +96,26 @@ public class CycleUtils {
 	 * @param cycles The cycles to be assigned a value
 	 * @return
 	 */
-	public static ArrayList<Double> calculateCycles(boolean[][] matches, ArrayList<ArrayList<Integer>> cycles) {
-		ArrayList<Double> values = new ArrayList<>(cycles.size());
-		double[][] pairValues = calculatePairs(matches);
-		for(ArrayList<Integer> cycle : cycles) {
-			double value = 0;
-			for(int i = 0; i<cycle.size()-1;i++) {
-				//value += Math.max(pairValues[cycle.get(i)][0],pairValues[cycle.get(i+1)][1]);
-				//value += pairValues[cycle.get(i)][0] + pairValues[cycle.get(i+1)][1];
-				value += Math.sqrt(pairValues[cycle.get(i)][0]*pairValues[cycle.get(i+1)][1]);
-			}
+	public static ArrayList<Double> calculateCycles(boolean[][] matches, CycleStore cycles) {
+		return calculateCycles(BitGraph.fromMatrix(matches), cycles);
+	}
 
-			//take donor score of vertex i and recipient score of vertex i+1
-			//value += Math.max(pairValues[cycle.get(0)][0], pairValues[cycle.get(cycle.size()-1)][1]);
-			//value += pairValues[cycle.get(0)][0]+pairValues[cycle.get(cycle.size()-1)][1];
-			value += Math.sqrt(pairValues[cycle.get(0)][0]*pairValues[cycle.get(cycle.size()-1)][1]);
+	/**
+	 * scores the cycles with a {@link CycleScorer}, callers that do not need a list use
+	 * {@link CycleScorer#scoreAll} directly
+	 */
+	public static ArrayList<Double> calculateCycles(BitGraph matches, CycleStore cycles) {
+		return toList(new CycleScorer(matches).scoreAll(cycles));
+	}
 
-			value = value/(double)cycle.size();
+	public static ArrayList<Double> calculateCycles(CSRGraph matches, CycleStore cycles) {
+		return toList(new CycleScorer(matches).scoreAll(cycles));
+	}
 
-			values.add(value);
+	private static ArrayList<Double> toList(double[] scores) {
+		ArrayList<Double> values = new ArrayList<>(scores.length);
+		for(double score : scores) {
+			values.add(score);
 		}
 		return values;
 	}
@@ -123,134 +123,149 @@ public class CycleUtils {
 	/**
 	 * Calculates the score of a single cycle as defined in the thesis.
 	 * @param matches possible matches
-	 * @param cycles The cycles to be assigned a value
+	 * @param cycle The cycle to be assigned a value, packed as in {@link CycleStore}
+	 * @return
+	 */
+	public static double calculateCycle(boolean[][] matches, long cycle, double[][] pairValues) {
+		return calculateCycle(cycle, pairValues);
+	}
+
+	/**
+	 * Calculates the score of a single cycle from precomputed pair scores.
+	 * @param cycle The cycle to be assigned a value, packed as in {@link CycleStore}
+	 * @param pairValues result of {@link #calculatePairs(BitGraph)}
 	 * @return
 	 */
-	public static double calculateCycle(boolean[][] matches, ArrayList<Integer> cycle, double[][] pairValues) {
+	public static double calculateCycle(long cycle, double[][] pairValues) {
 
+		int length = CycleStore.length(cycle);
 		double value = 0;
-		for(int i = 0; i<cycle.size()-1;i++) {
+		for(int i = 0; i<length-1;i++) {
 			//value += Math.max(pairValues[cycle.get(i)][0],pairValues[cycle.get(i+1)][1]);
 			//value += pairValues[cycle.get(i)][0]+pairValues[cycle.get(i+1)][1];
-			value += Math.sqrt(pairValues[cycle.get(i)][0]*pairValues[cycle.get(i+1)][1]);
+			value += Math.sqrt(pairValues[CycleStore.vertex(cycle, i)][0]*pairValues[CycleStore.vertex(cycle, i+1)][1]);
 		}
 
 		//take donor score of vertex i and recipient score of vertex i+1
 		//value += Math.max(pairValues[cycle.get(0)][0],pairValues[cycle.get(cycle.size()-1)][1]);
 		//value += pairValues[cycle.get(0)][0]+pairValues[cycle.get(cycle.size()-1)][1];
-		value += Math.sqrt(pairValues[cycle.get(0)][0]*pairValues[cycle.get(cycle.size()-1)][1]);
+		value += Math.sqrt(pairValues[CycleStore.vertex(cycle, 0)][0]*pairValues[CycleStore.vertex(cycle, length-1)][1]);
 
-		value = value/(double)cycle.size();
+		value = value/(double)length;
 
 		return value;
 	}
 	
 	/**
-	 * iteratively removes unmatchable pairs
-	 * @param matches
+	 * Calculates the score of the cycle path[0..length-1] from precomputed pair scores, the same as
+	 * {@link #calculateCycle(long, double[][])} for the packed cycle.
+	 * @param path
+	 * @param length
+	 * @param pairValues result of {@link #calculatePairs(BitGraph)}
 	 * @return
 	 */
-	public static boolean[][] reduceMatchMatrix(boolean[][] matches){
-		int n = matches.length;
-		
-		HashSet<Integer> toRemove = new HashSet<>(n/2);
-		boolean improved = true;
-		boolean encounter = false;
-		while(improved) {
-			improved = false;
-			
-			for(int i = 0; i<n; i++) {
-				encounter = false;
-				for(int j = 0; j<n; j++) {
-					
-					//if a true value is encountered go to the next row
-					if(matches[i][j]) {
-						if(toRemove.contains(j)) {
-							matches[i][j] = false;
-							improved = true;
-						}
-						else {
-							encounter = true;
-						}
-					}
-					
-				}
-				if(encounter == false && !toRemove.contains(i)){
-					toRemove.add(i);
-					improved = true;
-				}
-			}
-			
-
-			for(int j = 0; j<n; j++) {
-				encounter = false;
-				for(int i = 0; i<n; i++) {
-					
-					if(matches[i][j]) {
-						if(toRemove.contains(i)) {
-							matches[i][j] = false;
-							improved = true;
-						}
-						else {
-							encounter = true;
-						}
-					}
-					
-				}
-				if(encounter == false && !toRemove.contains(j)){
-					toRemove.add(j);
-					improved = true;
-				}
-			}
+	public static double calculateCycle(int[] path, int length, double[][] pairValues) {
+
+		double value = 0;
+		for(int i = 0; i<length-1;i++) {
+			value += Math.sqrt(pairValues[path[i]][0]*pairValues[path[i+1]][1]);
 		}
-		
-		for(int i = 0; i<n; i++) {
-			for(int j = 0; j<n; j++) {
-				if(toRemove.contains(i) || toRemove.contains(j)) {
-					matches[i][j] = false;
-				}
-			}
+		value += Math.sqrt(pairValues[path[0]][0]*pairValues[path[length-1]][1]);
+
+		return value/(double)length;
+	}
+
+	/**
+	 * Calculates the donor score of every altruist the way {@link #calculatePairs(BitGraph)} does for pairs.
+	 * @param altruists
+	 * @param n amount of pairs
+	 * @return the score of every altruist
+	 */
+	public static double[] calculateAltruists(Altruists altruists, int n) {
+		double[] result = new double[altruists.size()];
+		for(int a = 0; a<result.length; a++) {
+			result[a] = Math.round((altruists.outDegree(a)/(double) n)*1000)/1000.0;
 		}
-		
-		System.out.println("Match-matrix reduction removed " +toRemove.size()+ " pairs");
-		return matches;
+		return result;
 	}
-	
-	public static void connectivity(boolean[][] matches, int k) {
-		
-		SimpleDirectedGraph<Integer, DefaultEdge> g = new SimpleDirectedGraph<>(DefaultEdge.class);
 
-		//add vertices
-		ArrayList<Integer> vertices = new ArrayList<>(matches.length);
-		for(int i = 0; i<matches.length; i++) {
-			vertices.add(i);
-			g.addVertex(vertices.get(i));
+	/**
+	 * Calculates the score of all chains like that of a cycle, the mean over the arcs of the chain,
+	 * the first of which leaves the altruist, see {@link CycleScorer#scoreChains}.
+	 * @param matches possible matches between pairs
+	 * @param altruists
+	 * @param chains
+	 * @return the score of every chain
+	 */
+	public static ArrayList<Double> calculateChains(BitGraph matches, Altruists altruists, ChainTrie chains) {
+		return toList(new CycleScorer(matches, altruists).scoreChains(chains));
+	}
 
+	/**
+	 * Calculates the score of a single packed chain, the same as {@link #calculateChains} does.
+	 * @param chain packed as in {@link ChainTrie#pack(int)}
+	 * @param pairValues result of {@link #calculatePairs(BitGraph)}
+	 * @param altruistValues result of {@link #calculateAltruists}
+	 * @return
+	 */
+	public static double calculateChain(long chain, double[][] pairValues, double[] altruistValues) {
+		int length = ChainTrie.length(chain);
+		double value = Math.sqrt(altruistValues[ChainTrie.altruist(chain)]*pairValues[ChainTrie.pair(chain, 0)][1]);
+		for(int i = 0; i<length-1; i++) {
+			value += Math.sqrt(pairValues[ChainTrie.pair(chain, i)][0]*pairValues[ChainTrie.pair(chain, i+1)][1]);
 		}
+		return value/(double) length;
+	}
 
-		//add edges
-		for(int i = 0; i<matches.length; i++) {
-			for(int j = 0; j<matches.length; j++) {
-				if(matches[i][j]) {
-					g.addEdge(vertices.get(i), vertices.get(j));
-				}
-			}
-		}
+	/**
+	 * removes unmatchable pairs, see {@link Reduction}
+	 * @param matches
+	 * @return the matrix on the remaining pairs
+	 */
+	public static boolean[][] reduceMatchMatrix(boolean[][] matches){
+		return reduceMatchMatrix(CSRGraph.fromMatrix(matches)).toMatrix();
+	}
+
+	/**
+	 * removes unmatchable pairs, see {@link Reduction}
+	 * @param matches left unchanged
+	 * @return the graph on the remaining pairs
+	 */
+	public static BitGraph reduceMatchMatrix(BitGraph matches){
+		return reduceMatchMatrix(CSRGraph.fromBitGraph(matches)).toBitGraph();
+	}
+	
+	/**
+	 * removes unmatchable pairs, see {@link Reduction} for the mapping to the old pairs
+	 * @param matches
+	 * @return the graph on the remaining pairs, which keep their ids
+	 */
+	public static CSRGraph reduceMatchMatrix(CSRGraph matches){
+		return Reduction.peel(matches).getGraph();
+	}
+	
+	public static void connectivity(boolean[][] matches, int k) {
+		connectivity(BitGraph.fromMatrix(matches), k);
+	}
+
+	public static void connectivity(BitGraph matches, int k) {
+		connectivity(CSRGraph.fromBitGraph(matches), k);
+	}
+
+	public static void connectivity(CSRGraph matches, int k) {
 		
-		GabowStrongConnectivityInspector<Integer, DefaultEdge> insp = new GabowStrongConnectivityInspector<>(g);
-		if(!insp.isStronglyConnected()) {
+		StrongComponents components = StrongComponents.of(matches);
+		if(components.count() > 1) {
 			System.out.println("Graph not strongly connected, analysing...");
-			for(Set<Integer> set : insp.stronglyConnectedSets()) {
-				System.out.println("set size: "+ set.size());
-				System.out.println(Arrays.toString(set.toArray())); 
+			for(int c = 0; c<components.count(); c++) {
+				System.out.println("set size: "+ components.size(c));
+				System.out.println(Arrays.toString(components.members(c))); 
 			}
 		} else {
 			System.out.println("graph is strongly connected");
 		}
 	}
 	
-	
-	// this will not be efficient
 	/**
 	 * orders matrix by degree
 	 * mode 0 is descending, mode 1 is ascending
@@ -259,63 +274,28 @@ public class CycleUtils {
 	 * @return
 	 */
 	public static boolean[][] orderMatrixByDegree(boolean[][] matches, int mode){
-		
-		int n = matches.length;
-		int[] degrees = new int[n];
-		HashMap<Integer, Integer> oldToNew = new HashMap<>(n);
-		for(int i = 0; i<n; i++) {
-			for(int j = 0; j<n; j++) {
-				if(matches[i][j]) {
-					degrees[i]++;
-					degrees[j]++;
-				}
-			}
-		}
-		while(oldToNew.size()<n) {
-			if(mode == 0) {
-				int max = -1;
-				int maxVal = -1;
-				for(int i = 0; i<n; i++) {
-					if(degrees[i]>maxVal) {
-						max = i;
-						maxVal = degrees[i];
-					}
-				}
-				oldToNew.put(max, oldToNew.size());
-				degrees[max] = -1;
-			}
-			
-			if(mode == 1) {
-				int min = -1;
-				int minVal = Integer.MAX_VALUE;
-				for(int i = 0; i<n; i++) {
-					if(degrees[i]<minVal) {
-						min = i;
-						minVal = degrees[i];
-					}
-				}
-				oldToNew.put(min, oldToNew.size());
-				degrees[min] = Integer.MAX_VALUE;
-			}
-		}
-		
-		boolean[][] toReturn = new boolean[n][n];
-		for(int i = 0; i<n; i++) {
-			for(int j = 0; j<n; j++) {
-				if(matches[i][j]) {
-					toReturn[oldToNew.get(i)][oldToNew.get(j)] = true;
-				}
-			}
-		}
-		int[] newDegrees = new int[n];
-		for(int i = 0; i<n; i++) {
-			for(int j = 0; j<n; j++) {
-				if(toReturn[i][j]) {
-					newDegrees[i]++;
-					newDegrees[j]++;
-				}
-			}
-		}
-		return toReturn;
+		return orderMatrixByDegree(CSRGraph.fromMatrix(matches), mode).toMatrix();
+	}
+
+	/**
+	 * orders graph by degree, see {@link VertexOrdering#byDegree}
+	 * mode 0 is descending, mode 1 is ascending
+	 * @param matches
+	 * @param mode
+	 * @return a relabeled copy
+	 */
+	public static BitGraph orderMatrixByDegree(BitGraph matches, int mode){
+		return orderMatrixByDegree(CSRGraph.fromBitGraph(matches), mode).toBitGraph();
+	}
+
+	/**
+	 * orders graph by degree, see {@link VertexOrdering#byDegree}
+	 * mode 0 is descending, mode 1 is ascending
+	 * @param matches
+	 * @param mode
+	 * @return a relabeled copy
+	 */
+	public static CSRGraph orderMatrixByDegree(CSRGraph matches, int mode){
+		return VertexOrdering.byDegree(matches, mode == 0).apply(matches);
 	}
 }
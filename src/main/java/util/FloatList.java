@@ -0,0 +1,46 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive floats, the score counterpart of {@link IntList}.
+ */
+public class FloatList {
+
+	private float[] values;
+	private int size;
+
+	public FloatList() {
+		this(16);
+	}
+
+	public FloatList(int capacity) {
+		values = new float[Math.max(capacity, 1)];
+	}
+
+	public void add(float value) {
+		if(size == values.length) {
+			values = Arrays.copyOf(values, values.length << 1);
+		}
+		values[size++] = value;
+	}
+
+	public float get(int index) {
+		return values[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the backing array, only the first {@link #size()} entries are used
+	 */
+	public float[] array() {
+		return values;
+	}
+
+	public float[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+}
@@ -0,0 +1,194 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Binary file format for a preprocessed {@link CSRGraph}. The file starts with a header holding
+ * a magic number, the format version, a checksum of the source data and the key of the
+ * preprocessing that was applied, followed by the forward and reverse CSR arrays, the scores and
+ * the data ids. After the graph come sections of ints, each with its length, for what the caller
+ * keeps beside the graph. Everything is little endian and 4-byte aligned so a mapped file can be
+ * bulk transferred into the arrays.
+ */
+public class GraphFile {
+
+	private static final int MAGIC = 0x3143584B; // "KXC1"
+	public static final int VERSION = 2;
+
+	/**
+	 * writes g to path, through a temporary file so readers never see half a graph
+	 * @param sourceChecksum see {@link #checksum(File)}
+	 * @param key identifies the preprocessing applied to g
+	 */
+	public static void write(Path path, CSRGraph g, long sourceChecksum, String key) throws IOException {
+		write(path, g, new int[0][], sourceChecksum, key);
+	}
+
+	/**
+	 * writes g and sections to path, through a temporary file so readers never see half a graph
+	 * @param sections stored after the graph in this order
+	 * @param sourceChecksum see {@link #checksum(File)}
+	 * @param key identifies the preprocessing applied to g
+	 */
+	public static void write(Path path, CSRGraph g, int[][] sections, long sourceChecksum, String key) throws IOException {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		int n = g.n;
+		int m = g.outOffsets[n];
+		long size = headerSize(keyBytes.length) + 4L*(n + (n+1) + m + m + (n+1) + m + m) + 4;
+		for(int[] section : sections) {
+			size += 4 + 4L*section.length;
+		}
+
+		ByteBuffer buf = ByteBuffer.allocate(Math.toIntExact(size)).order(ByteOrder.LITTLE_ENDIAN);
+		buf.putInt(MAGIC);
+		buf.putInt(VERSION);
+		buf.putLong(sourceChecksum);
+		buf.putInt(keyBytes.length);
+		buf.put(keyBytes);
+		while(buf.position() % 4 != 0) {
+			buf.put((byte) 0);
+		}
+		buf.putInt(n);
+		buf.putInt(m);
+		buf.asIntBuffer().put(g.ids);
+		buf.position(buf.position() + 4*n);
+		putInts(buf, g.outOffsets);
+		putInts(buf, g.outTargets);
+		buf.asFloatBuffer().put(g.scores);
+		buf.position(buf.position() + 4*m);
+		putInts(buf, g.inOffsets);
+		putInts(buf, g.inSources);
+		putInts(buf, g.inArcs);
+		buf.putInt(sections.length);
+		for(int[] section : sections) {
+			buf.putInt(section.length);
+			putInts(buf, section);
+		}
+		buf.flip();
+
+		Path parent = path.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+		Path tmp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+			while(buf.hasRemaining()) {
+				channel.write(buf);
+			}
+		}
+		try {
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch(IOException e) {
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * maps a stored graph
+	 * @param sourceChecksum the checksum the file must have been written with
+	 * @param key the preprocessing the file must have been written with
+	 * @return the graph, or null when the file is missing, of another version or stale
+	 */
+	public static CSRGraph read(Path path, long sourceChecksum, String key) throws IOException {
+		return read(path, sourceChecksum, key, null);
+	}
+
+	/**
+	 * maps a stored graph and its sections
+	 * @param sourceChecksum the checksum the file must have been written with
+	 * @param key the preprocessing the file must have been written with
+	 * @param sections gets the sections stored after the graph, may be null
+	 * @return the graph, or null when the file is missing, of another version or stale
+	 */
+	public static CSRGraph read(Path path, long sourceChecksum, String key, List<int[]> sections) throws IOException {
+		if(!Files.isRegularFile(path)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if(channel.size() < headerSize(0)) {
+				return null;
+			}
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			ByteBuffer buf = mapped.order(ByteOrder.LITTLE_ENDIAN);
+			if(buf.getInt() != MAGIC || buf.getInt() != VERSION || buf.getLong() != sourceChecksum) {
+				return null;
+			}
+			byte[] keyBytes = new byte[buf.getInt()];
+			if(keyBytes.length > buf.remaining()) {
+				return null;
+			}
+			buf.get(keyBytes);
+			if(!key.equals(new String(keyBytes, StandardCharsets.UTF_8))) {
+				return null;
+			}
+			buf.position(headerSize(keyBytes.length) - 8);
+			int n = buf.getInt();
+			int m = buf.getInt();
+			if(n < 0 || m < 0 || buf.remaining() < 4L*(n + (n+1) + m + m + (n+1) + m + m) + 4) {
+				return null;
+			}
+			int[] ids = getInts(buf, n);
+			int[] outOffsets = getInts(buf, n+1);
+			int[] outTargets = getInts(buf, m);
+			float[] scores = new float[m];
+			buf.asFloatBuffer().get(scores);
+			buf.position(buf.position() + 4*m);
+			int[] inOffsets = getInts(buf, n+1);
+			int[] inSources = getInts(buf, m);
+			int[] inArcs = getInts(buf, m);
+			int count = buf.getInt();
+			for(int s = 0; s<count; s++) {
+				int length = buf.remaining() >= 4 ? buf.getInt() : -1;
+				if(length < 0 || 4L*length > buf.remaining()) {
+					return null;
+				}
+				int[] section = getInts(buf, length);
+				if(sections != null) {
+					sections.add(section);
+				}
+			}
+			if(buf.hasRemaining()) {
+				return null;
+			}
+			return new CSRGraph(outOffsets, outTargets, scores, inOffsets, inSources, inArcs, ids);
+		}
+	}
+
+	/**
+	 * CRC32 over the mapped bytes of the source file
+	 */
+	public static long checksum(File source) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(source, "r"); FileChannel channel = raf.getChannel()) {
+			CRC32 crc = new CRC32();
+			crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			return crc.getValue() ^ (channel.size() << 32);
+		}
+	}
+
+	private static int headerSize(int keyLength) {
+		return 4 + 4 + 8 + 4 + ((keyLength + 3) & ~3) + 4 + 4;
+	}
+
+	private static void putInts(ByteBuffer buf, int[] values) {
+		buf.asIntBuffer().put(values);
+		buf.position(buf.position() + 4*values.length);
+	}
+
+	private static int[] getInts(ByteBuffer buf, int length) {
+		int[] values = new int[length];
+		buf.asIntBuffer().get(values);
+		buf.position(buf.position() + 4*length);
+		return values;
+	}
+}
@@ -0,0 +1,91 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from int keys to non-negative int values, used to turn the ids in the
+ * data into matrix indices without boxing.
+ */
+public class IntIntMap {
+
+	private static final int FREE = Integer.MIN_VALUE;
+
+	private int[] keys;
+	private int[] values;
+	private int mask;
+	private int size;
+
+	public IntIntMap() {
+		this(16);
+	}
+
+	public IntIntMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(expected, 4) * 2 - 1) << 1;
+		allocate(capacity);
+	}
+
+	/**
+	 * @return the value of key, or -1 if it is not in the map
+	 */
+	public int get(int key) {
+		int slot = slot(key);
+		return keys[slot] == key ? values[slot] : -1;
+	}
+
+	public boolean containsKey(int key) {
+		return keys[slot(key)] == key;
+	}
+
+	/**
+	 * @param key any int except Integer.MIN_VALUE
+	 */
+	public void put(int key, int value) {
+		int slot = slot(key);
+		if(keys[slot] != key) {
+			keys[slot] = key;
+			if(++size * 2 > keys.length) {
+				values[slot] = value;
+				grow();
+				return;
+			}
+		}
+		values[slot] = value;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private int slot(int key) {
+		int slot = mix(key) & mask;
+		while(keys[slot] != FREE && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void grow() {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(keys.length << 1);
+		for(int s = 0; s<oldKeys.length; s++) {
+			if(oldKeys[s] != FREE) {
+				int slot = slot(oldKeys[s]);
+				keys[slot] = oldKeys[s];
+				values[slot] = oldValues[s];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, FREE);
+		mask = capacity - 1;
+	}
+
+	private static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
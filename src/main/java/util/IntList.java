@@ -0,0 +1,65 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints, used to collect arcs and ids without boxing.
+ */
+public class IntList {
+
+	private int[] values;
+	private int size;
+
+	public IntList() {
+		this(16);
+	}
+
+	public IntList(int capacity) {
+		values = new int[Math.max(capacity, 1)];
+	}
+
+	public void add(int value) {
+		if(size == values.length) {
+			values = Arrays.copyOf(values, values.length << 1);
+		}
+		values[size++] = value;
+	}
+
+	public int get(int index) {
+		return values[index];
+	}
+
+	public void set(int index, int value) {
+		values[index] = value;
+	}
+
+	/**
+	 * @return the last value, which is removed
+	 */
+	public int removeLast() {
+		return values[--size];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return the backing array, only the first {@link #size()} entries are used
+	 */
+	public int[] array() {
+		return values;
+	}
+
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+}
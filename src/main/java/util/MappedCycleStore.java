@@ -0,0 +1,115 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link CycleStore} whose chunks are read from a memory mapped file, mapped in segments of 64
+ * chunks so files beyond 2 GB can be mapped too. Single cycles are read from the mapping in place,
+ * {@link #forEach} and other users of {@link #chunk} copy one chunk at a time. A store from
+ * {@link #map} holds a finished file and can not be added to.
+ */
+public class MappedCycleStore extends CycleStore {
+
+	protected static final int SEGMENT_CHUNKS = 64;
+	protected static final long CHUNK_BYTES = (long) CHUNK_SIZE * Long.BYTES;
+	protected static final long SEGMENT_BYTES = SEGMENT_CHUNKS * CHUNK_BYTES;
+
+	protected LongBuffer[] segments;
+	//chunks below mapped are read from the segments
+	protected int mapped;
+	private final boolean readOnly;
+	//the last chunk copied back by chunk
+	private volatile Loaded loaded;
+
+	/**
+	 * for subclasses that map their chunks as they are filled
+	 */
+	protected MappedCycleStore() {
+		this.segments = new LongBuffer[4];
+		this.readOnly = false;
+	}
+
+	private MappedCycleStore(LongBuffer[] segments, int size) {
+		super(size);
+		this.segments = segments;
+		this.mapped = (size + CHUNK_MASK) >>> CHUNK_BITS;
+		this.readOnly = true;
+	}
+
+	/**
+	 * maps size packed cycles from channel, the mapping stays valid after the channel is closed
+	 * @param channel
+	 * @param offset position of the first cycle
+	 * @param size amount of cycles
+	 * @param order byte order of the cycles
+	 * @return
+	 * @throws IOException
+	 */
+	public static MappedCycleStore map(FileChannel channel, long offset, int size, ByteOrder order) throws IOException {
+		long bytes = (long) size * Long.BYTES;
+		LongBuffer[] segments = new LongBuffer[(int) ((bytes + SEGMENT_BYTES - 1) / SEGMENT_BYTES)];
+		for(int s = 0; s<segments.length; s++) {
+			long start = s * SEGMENT_BYTES;
+			segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start, Math.min(SEGMENT_BYTES, bytes - start))
+					.order(order).asLongBuffer();
+		}
+		return new MappedCycleStore(segments, size);
+	}
+
+	@Override
+	public long get(int index) {
+		int c = index >>> CHUNK_BITS;
+		if(c < mapped) {
+			return segments[c / SEGMENT_CHUNKS].get(((c % SEGMENT_CHUNKS) << CHUNK_BITS) | (index & CHUNK_MASK));
+		}
+		return super.get(index);
+	}
+
+	@Override
+	public void add(long cycle) {
+		if(readOnly) {
+			throw new UnsupportedOperationException("Mapped cycles can not be added to");
+		}
+		super.add(cycle);
+	}
+
+	@Override
+	protected long[] chunk(int c) {
+		if(c >= mapped) {
+			return super.chunk(c);
+		}
+		Loaded last = loaded;
+		if(last == null || last.c != c) {
+			long[] chunk = new long[CHUNK_SIZE];
+			LongBuffer segment = segments[c / SEGMENT_CHUNKS].duplicate();
+			segment.position((c % SEGMENT_CHUNKS) << CHUNK_BITS);
+			segment.get(chunk, 0, Math.min(CHUNK_SIZE, segment.remaining()));
+			last = new Loaded(c, chunk);
+			loaded = last;
+		}
+		return last.chunk;
+	}
+
+	/**
+	 * drops the mappings, which are released once they are collected
+	 */
+	protected void unmap() {
+		segments = new LongBuffer[0];
+		mapped = 0;
+		loaded = null;
+	}
+
+	private static class Loaded {
+
+		private final int c;
+		private final long[] chunk;
+
+		Loaded(int c, long[] chunk) {
+			this.c = c;
+			this.chunk = chunk;
+		}
+	}
+}
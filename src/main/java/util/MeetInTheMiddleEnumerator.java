@@ -0,0 +1,246 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Lists every cycle of at most k pairs, k up to 6, exactly once by joining half paths on their
+ * middle pair. A cycle of L pairs starting at its lowest pair r is cut at the pair m that is
+ * ceil(L/2) arcs after r: the forward half runs from r to m and the backward half from m back to r.
+ * For every root the backward halves of at most floor(k/2) arcs are listed first into a table by
+ * middle pair, then the forward halves are walked and every one is joined with the backward halves
+ * of the same middle pair that share no pair with it. Both halves only use pairs above r, so every
+ * cycle is found from its lowest pair only, in that rotation, and through exactly one cut.
+ *
+ * The inner pairs of a half, at most 2, are packed into an int of 12 bits each, with a 64-bit mask
+ * of their bits modulo 64 beside it. Disjoint masks prove two halves disjoint; only halves whose
+ * masks overlap are compared pair by pair.
+ */
+public class MeetInTheMiddleEnumerator {
+
+	public static final int MAX_LENGTH = 6;
+
+	private static final int VERTEX_BITS = 12;
+	private static final int VERTEX_MASK = (1 << VERTEX_BITS) - 1;
+
+	private final BitGraph matches;
+	private final BitGraph donors;
+	private final int k;
+
+	public MeetInTheMiddleEnumerator(BitGraph matches, int k) {
+		if(k > MAX_LENGTH || matches.size() > CycleStore.MAX_PAIRS) {
+			throw new IllegalArgumentException("Cycles of " +k+ " out of " +matches.size()+ " pairs can not be joined from halves");
+		}
+		this.matches = matches;
+		this.donors = matches.transpose();
+		this.k = k;
+	}
+
+	public MeetInTheMiddleEnumerator(CSRGraph matches, int k) {
+		this(matches.toBitGraph(), k);
+	}
+
+	/**
+	 * visits all cycles of at most k pairs, each starting at its lowest pair
+	 */
+	public void enumerate(CycleEnumerator.CycleVisitor visitor) {
+		Join join = new Join(visitor);
+		for(int r = 0; r<matches.size(); r++) {
+			join.root(r);
+		}
+	}
+
+	/**
+	 * @return amount of cycles of at most k pairs
+	 */
+	public long count() {
+		long[] count = new long[1];
+		enumerate((path, length) -> count[0]++);
+		return count[0];
+	}
+
+	/**
+	 * the tables and paths of one root, reused for every root
+	 */
+	private class Join {
+
+		private final CycleEnumerator.CycleVisitor visitor;
+		private final int backwardArcs = k/2;
+		private final int forwardArcs = (k+1)/2;
+		//backward halves of b arcs by middle pair: offsets[b][m] to offsets[b][m+1] in codes[b] and masks[b]
+		private final int[][] offsets = new int[backwardArcs+1][];
+		private final int[][] codes = new int[backwardArcs+1][];
+		private final long[][] masks = new long[backwardArcs+1][];
+		private final IntList[] middles = new IntList[backwardArcs+1];
+		private final IntList[] found = new IntList[backwardArcs+1];
+		private final int[] fill;
+		private final int[] path = new int[MAX_LENGTH+1];
+		private final int[] cycle = new int[MAX_LENGTH];
+
+		Join(CycleEnumerator.CycleVisitor visitor) {
+			this.visitor = visitor;
+			int n = matches.size();
+			this.fill = new int[n+1];
+			for(int b = 1; b<=backwardArcs; b++) {
+				offsets[b] = new int[n+1];
+				codes[b] = new int[16];
+				masks[b] = new long[16];
+				middles[b] = new IntList();
+				found[b] = new IntList();
+			}
+		}
+
+		void root(int r) {
+			if(k < 2) {
+				return;
+			}
+			for(int b = 1; b<=backwardArcs; b++) {
+				middles[b].clear();
+				found[b].clear();
+			}
+			path[0] = r;
+			backward(r, 0);
+			for(int b = 1; b<=backwardArcs; b++) {
+				table(b);
+			}
+			forward(r, 0, 0);
+		}
+
+		/**
+		 * lists the backward halves from path[depth] on, through donors above the root
+		 */
+		private void backward(int r, int depth) {
+			int v = path[depth];
+			for(int u = donors.nextOut(v, r+1); u>=0; u = donors.nextOut(v, u+1)) {
+				if(onPath(u, depth)) {
+					continue;
+				}
+				//the half m = u -> path[depth] -> ... -> r has depth+1 arcs and inner pairs path[1..depth]
+				middles[depth+1].add(u);
+				found[depth+1].add(pack(1, depth));
+				if(depth+1 < backwardArcs) {
+					path[depth+1] = u;
+					backward(r, depth+1);
+				}
+			}
+		}
+
+		/**
+		 * sorts the backward halves of b arcs by middle pair
+		 */
+		private void table(int b) {
+			int[] offset = offsets[b];
+			Arrays.fill(offset, 0);
+			IntList middle = middles[b];
+			int size = middle.size();
+			for(int i = 0; i<size; i++) {
+				offset[middle.get(i)+1]++;
+			}
+			for(int m = 0; m<offset.length-1; m++) {
+				offset[m+1] += offset[m];
+			}
+			if(codes[b].length < size) {
+				codes[b] = new int[Math.max(size, codes[b].length << 1)];
+				masks[b] = new long[codes[b].length];
+			}
+			System.arraycopy(offset, 0, fill, 0, offset.length);
+			for(int i = 0; i<size; i++) {
+				int pos = fill[middle.get(i)]++;
+				int code = found[b].get(i);
+				codes[b][pos] = code;
+				masks[b][pos] = mask(code, b-1);
+			}
+		}
+
+		/**
+		 * walks the forward halves from path[depth] on and joins each with the backward halves
+		 * @param mask of the inner pairs path[1..depth]
+		 */
+		private void forward(int r, int depth, long mask) {
+			int v = path[depth];
+			for(int m = matches.nextOut(v, r+1); m>=0; m = matches.nextOut(v, m+1)) {
+				if(onPath(m, depth)) {
+					continue;
+				}
+				int f = depth+1;
+				//cycles of 2f-1 and 2f pairs are cut f arcs after the root
+				join(r, f, f-1, m, mask);
+				join(r, f, f, m, mask);
+				if(f < forwardArcs) {
+					path[f] = m;
+					forward(r, f, mask | 1L << (m & 63));
+				}
+			}
+		}
+
+		/**
+		 * visits the cycles of the forward half path[0..f-1], m and every disjoint backward half of b arcs from m
+		 */
+		private void join(int r, int f, int b, int m, long mask) {
+			if(b < 1 || b > backwardArcs || f+b > k) {
+				return;
+			}
+			int[] offset = offsets[b];
+			int end = offset[m+1];
+			if(offset[m] == end) {
+				return;
+			}
+			System.arraycopy(path, 0, cycle, 0, f);
+			cycle[f] = m;
+			int inner = b-1;
+			for(int pos = offset[m]; pos<end; pos++) {
+				int code = codes[b][pos];
+				if((masks[b][pos] & mask) != 0 && !disjoint(code, inner, f)) {
+					continue;
+				}
+				//the inner pairs were packed from the root outwards, so they are unpacked from m back
+				for(int i = 0; i<inner; i++) {
+					cycle[f+1+i] = (code >>> ((inner-1-i)*VERTEX_BITS)) & VERTEX_MASK;
+				}
+				visitor.visit(cycle, f+b);
+			}
+		}
+
+		/**
+		 * @return whether the inner pairs of code share no pair with path[1..f-1]
+		 */
+		private boolean disjoint(int code, int inner, int f) {
+			for(int i = 0; i<inner; i++) {
+				int u = (code >>> (i*VERTEX_BITS)) & VERTEX_MASK;
+				for(int p = 1; p<f; p++) {
+					if(path[p] == u) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		private boolean onPath(int u, int depth) {
+			for(int p = 1; p<=depth; p++) {
+				if(path[p] == u) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * @return path[from..to] packed in 12 bits each, path[from] lowest
+		 */
+		private int pack(int from, int to) {
+			int code = 0;
+			for(int p = to; p>=from; p--) {
+				code = (code << VERTEX_BITS) | path[p];
+			}
+			return code;
+		}
+
+		private long mask(int code, int inner) {
+			long mask = 0;
+			for(int i = 0; i<inner; i++) {
+				mask |= 1L << (((code >>> (i*VERTEX_BITS)) & VERTEX_MASK) & 63);
+			}
+			return mask;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package util;
+
+/**
+ * A relabeling of the pairs of a graph, kept in both directions so solutions on a relabeled graph
+ * can be mapped back to the pairs of the original.
+ */
+public class Permutation {
+
+	private final int[] oldToNew;
+	private final int[] newToOld;
+
+	/**
+	 * @param oldToNew new index of every pair, must hold every index from 0 to n-1 once
+	 */
+	public Permutation(int[] oldToNew) {
+		this.oldToNew = oldToNew;
+		this.newToOld = new int[oldToNew.length];
+		for(int i = 0; i<oldToNew.length; i++) {
+			newToOld[oldToNew[i]] = i;
+		}
+	}
+
+	/**
+	 * @param order pairs in their new order
+	 * @return
+	 */
+	public static Permutation fromOrder(int[] order) {
+		int[] oldToNew = new int[order.length];
+		for(int v = 0; v<order.length; v++) {
+			oldToNew[order[v]] = v;
+		}
+		return new Permutation(oldToNew);
+	}
+
+	public static Permutation identity(int n) {
+		return new Permutation(CSRGraph.identity(n));
+	}
+
+	public int size() {
+		return oldToNew.length;
+	}
+
+	public int newIndex(int i) {
+		return oldToNew[i];
+	}
+
+	public int oldIndex(int i) {
+		return newToOld[i];
+	}
+
+	public int[] getOldToNew() {
+		return oldToNew.clone();
+	}
+
+	public int[] getNewToOld() {
+		return newToOld.clone();
+	}
+
+	public Permutation inverse() {
+		return new Permutation(newToOld.clone());
+	}
+
+	/**
+	 * @return the permutation that applies this one and then next
+	 */
+	public Permutation then(Permutation next) {
+		int[] result = new int[oldToNew.length];
+		for(int i = 0; i<oldToNew.length; i++) {
+			result[i] = next.oldToNew[oldToNew[i]];
+		}
+		return new Permutation(result);
+	}
+
+	/**
+	 * relabels matches in O(n+m), ids and scores move along
+	 */
+	public CSRGraph apply(CSRGraph matches) {
+		return matches.permute(oldToNew);
+	}
+
+	public BitGraph apply(BitGraph matches) {
+		return matches.permute(oldToNew);
+	}
+
+	/**
+	 * @param values a value for every old pair
+	 * @return the values indexed by new pair
+	 */
+	public int[] apply(int[] values) {
+		int[] result = new int[values.length];
+		for(int i = 0; i<values.length; i++) {
+			result[oldToNew[i]] = values[i];
+		}
+		return result;
+	}
+
+	public double[] apply(double[] values) {
+		double[] result = new double[values.length];
+		for(int i = 0; i<values.length; i++) {
+			result[oldToNew[i]] = values[i];
+		}
+		return result;
+	}
+
+	/**
+	 * maps pairs of the relabeled graph, such as a cycle, back to the original pairs
+	 * @param pairs new indices, left unchanged
+	 * @return the old indices
+	 */
+	public int[] toOld(int[] pairs) {
+		int[] result = new int[pairs.length];
+		for(int p = 0; p<pairs.length; p++) {
+			result[p] = newToOld[pairs[p]];
+		}
+		return result;
+	}
+}
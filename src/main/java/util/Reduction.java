@@ -0,0 +1,171 @@
+package util;
+
+/**
+ * Removes the pairs that can not be in any cycle because they have no remaining donor or no
+ * remaining recipient. Pairs are peeled off a worklist while in- and out-degree counters are kept up
+ * to date, so every arc is looked at a constant amount of times and the whole reduction is O(n+m).
+ * The result is the graph on the surviving pairs, numbered in their old order, together with the
+ * mapping between old and new indices and what was removed.
+ */
+public class Reduction {
+
+	private final CSRGraph graph;
+	private final int[] survivors;
+	private final int[] oldToNew;
+	private final int withoutDonor;
+	private final int withoutRecipient;
+	private final int removedArcs;
+
+	private Reduction(CSRGraph graph, int[] survivors, int[] oldToNew, int withoutDonor, int withoutRecipient, int removedArcs) {
+		this.graph = graph;
+		this.survivors = survivors;
+		this.oldToNew = oldToNew;
+		this.withoutDonor = withoutDonor;
+		this.withoutRecipient = withoutRecipient;
+		this.removedArcs = removedArcs;
+	}
+
+	/**
+	 * peels all unmatchable pairs off matches
+	 * @param matches left unchanged
+	 * @return
+	 */
+	public static Reduction peel(CSRGraph matches) {
+		int n = matches.size();
+		int[] in = new int[n];
+		int[] out = new int[n];
+		boolean[] removed = new boolean[n];
+		int[] queue = new int[n];
+		int tail = 0;
+		int withoutDonor = 0;
+		int withoutRecipient = 0;
+
+		for(int i = 0; i<n; i++) {
+			in[i] = matches.inDegree(i);
+			out[i] = matches.outDegree(i);
+			if(out[i] == 0 || in[i] == 0) {
+				removed[i] = true;
+				queue[tail++] = i;
+				if(out[i] == 0) {
+					withoutRecipient++;
+				} else {
+					withoutDonor++;
+				}
+			}
+		}
+
+		for(int head = 0; head<tail; head++) {
+			int v = queue[head];
+			for(int e = matches.outStart(v); e<matches.outEnd(v); e++) {
+				int j = matches.target(e);
+				if(!removed[j] && --in[j] == 0) {
+					removed[j] = true;
+					queue[tail++] = j;
+					withoutDonor++;
+				}
+			}
+			for(int e = matches.inStart(v); e<matches.inEnd(v); e++) {
+				int i = matches.source(e);
+				if(!removed[i] && --out[i] == 0) {
+					removed[i] = true;
+					queue[tail++] = i;
+					withoutRecipient++;
+				}
+			}
+		}
+
+		//surviving pairs keep their order, so every row stays sorted
+		int[] oldToNew = new int[n];
+		int[] survivors = new int[n-tail];
+		int count = 0;
+		for(int i = 0; i<n; i++) {
+			if(removed[i]) {
+				oldToNew[i] = -1;
+			} else {
+				oldToNew[i] = count;
+				survivors[count++] = i;
+			}
+		}
+
+		int m = 0;
+		for(int i : survivors) {
+			m += out[i];
+		}
+		int[] offsets = new int[count+1];
+		int[] targets = new int[m];
+		float[] scores = new float[m];
+		int[] ids = new int[count];
+		int arc = 0;
+		for(int v = 0; v<count; v++) {
+			int i = survivors[v];
+			ids[v] = matches.id(i);
+			for(int e = matches.outStart(i); e<matches.outEnd(i); e++) {
+				int j = oldToNew[matches.target(e)];
+				if(j >= 0) {
+					targets[arc] = j;
+					scores[arc] = matches.score(e);
+					arc++;
+				}
+			}
+			offsets[v+1] = arc;
+		}
+
+		CSRGraph graph = new CSRGraph(offsets, targets, scores, ids);
+		return new Reduction(graph, survivors, oldToNew, withoutDonor, withoutRecipient, matches.arcCount() - m);
+	}
+
+	/**
+	 * @return the graph on the surviving pairs
+	 */
+	public CSRGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return old index of every surviving pair, ascending
+	 */
+	public int[] getSurvivors() {
+		return survivors.clone();
+	}
+
+	/**
+	 * @return index in the reduced graph of old pair i, or -1 if it was removed
+	 */
+	public int newIndex(int i) {
+		return oldToNew[i];
+	}
+
+	/**
+	 * @return index in the original graph of pair i of the reduced graph
+	 */
+	public int oldIndex(int i) {
+		return survivors[i];
+	}
+
+	public int removedPairs() {
+		return oldToNew.length - survivors.length;
+	}
+
+	/**
+	 * @return amount of removed pairs that had no donor left
+	 */
+	public int pairsWithoutDonor() {
+		return withoutDonor;
+	}
+
+	/**
+	 * @return amount of removed pairs that had no recipient left
+	 */
+	public int pairsWithoutRecipient() {
+		return withoutRecipient;
+	}
+
+	public int removedArcs() {
+		return removedArcs;
+	}
+
+	@Override
+	public String toString() {
+		return "removed " +removedPairs()+ " pairs (" +withoutDonor+ " without donor, " +withoutRecipient+ " without recipient) and " +removedArcs+ " arcs";
+	}
+}
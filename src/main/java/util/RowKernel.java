@@ -0,0 +1,18 @@
+package util;
+
+/**
+ * Bitset operations over rows of packed longs, as used by {@link ShortCycles}. Rows are given as
+ * an array and the index of their first word, so rows of a {@link BitGraph} are used in place.
+ */
+interface RowKernel {
+
+	/**
+	 * @return the amount of bits set in both a[aFrom..aFrom+words-1] and b[bFrom..bFrom+words-1]
+	 */
+	int andCount(long[] a, int aFrom, long[] b, int bFrom, int words);
+
+	/**
+	 * sets dest[0..words-1] to a[aFrom..aFrom+words-1] and b[bFrom..bFrom+words-1]
+	 */
+	void and(long[] a, int aFrom, long[] b, int bFrom, long[] dest, int words);
+}
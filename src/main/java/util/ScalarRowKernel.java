@@ -0,0 +1,24 @@
+package util;
+
+/**
+ * {@link RowKernel} a word at a time, which the JIT unrolls but does not vectorize because of the
+ * popcount.
+ */
+class ScalarRowKernel implements RowKernel {
+
+	@Override
+	public int andCount(long[] a, int aFrom, long[] b, int bFrom, int words) {
+		int count = 0;
+		for(int w = 0; w<words; w++) {
+			count += Long.bitCount(a[aFrom + w] & b[bFrom + w]);
+		}
+		return count;
+	}
+
+	@Override
+	public void and(long[] a, int aFrom, long[] b, int bFrom, long[] dest, int words) {
+		for(int w = 0; w<words; w++) {
+			dest[w] = a[aFrom + w] & b[bFrom + w];
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package util;
+
+/**
+ * Counts and lists the cycles of 2 and 3 pairs with row intersections. Pair i is on a 2-cycle with
+ * every pair in both its row and its column, the recipients and donors of i, and an arc i -> j is
+ * on a 3-cycle i -> j -> x -> i for every x among the recipients of j and the donors of i. The rows
+ * are intersected by a {@link RowKernel}: on the Vector API when the build has the vector profile
+ * and the jdk.incubator.vector module is added at run time, a word at a time otherwise.
+ *
+ * Methods that take donors expect the transpose of matches, so callers that already have it skip
+ * transposing again.
+ */
+public class ShortCycles {
+
+	private static final RowKernel KERNEL = loadKernel();
+
+	private static RowKernel loadKernel() {
+		if(Boolean.getBoolean("cycles.scalar")) {
+			return new ScalarRowKernel();
+		}
+		try {
+			return (RowKernel) Class.forName("util.VectorRowKernel").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return new ScalarRowKernel();
+		}
+	}
+
+	/**
+	 * @return whether the rows are intersected on the Vector API
+	 */
+	public static boolean isVectorized() {
+		return !(KERNEL instanceof ScalarRowKernel);
+	}
+
+	static RowKernel kernel() {
+		return KERNEL;
+	}
+
+	public static long countTwoCycles(BitGraph matches) {
+		return countTwoCycles(matches, matches.transpose());
+	}
+
+	public static long countTwoCycles(BitGraph matches, BitGraph donors) {
+		long count = 0;
+		for(int i = 0; i<matches.size(); i++) {
+			count += intersect(matches, i, donors, i);
+		}
+		return count / 2;
+	}
+
+	/**
+	 * @return for every pair the amount of 2-cycles it is on
+	 */
+	public static int[] twoCycleCounts(BitGraph matches, BitGraph donors) {
+		int[] counts = new int[matches.size()];
+		for(int i = 0; i<counts.length; i++) {
+			counts[i] = intersect(matches, i, donors, i);
+		}
+		return counts;
+	}
+
+	public static IntList twoCycles(BitGraph matches) {
+		return twoCycles(matches, matches.transpose());
+	}
+
+	/**
+	 * @return the 2-cycles as consecutive pairs i, j with i below j, by ascending i and then j
+	 */
+	public static IntList twoCycles(BitGraph matches, BitGraph donors) {
+		IntList result = new IntList();
+		long[] both = new long[matches.words()];
+		for(int i = 0; i<matches.size(); i++) {
+			KERNEL.and(matches.bits(), i*matches.words(), donors.bits(), i*donors.words(), both, both.length);
+			for(int j = next(both, i+1); j>=0; j = next(both, j+1)) {
+				result.add(i);
+				result.add(j);
+			}
+		}
+		return result;
+	}
+
+	public static long countThreeCycles(BitGraph matches) {
+		return countThreeCycles(matches, matches.transpose());
+	}
+
+	/**
+	 * every 3-cycle is found through each of its 3 arcs
+	 */
+	public static long countThreeCycles(BitGraph matches, BitGraph donors) {
+		long count = 0;
+		for(int i = 0; i<matches.size(); i++) {
+			for(int j = matches.nextOut(i, 0); j>=0; j = matches.nextOut(i, j+1)) {
+				count += intersect(matches, j, donors, i);
+			}
+		}
+		return count / 3;
+	}
+
+	/**
+	 * @return for every pair the amount of 3-cycles it is on, each found through the arc leaving it
+	 */
+	public static long[] threeCycleCounts(BitGraph matches, BitGraph donors) {
+		long[] counts = new long[matches.size()];
+		for(int i = 0; i<counts.length; i++) {
+			for(int j = matches.nextOut(i, 0); j>=0; j = matches.nextOut(i, j+1)) {
+				counts[i] += intersect(matches, j, donors, i);
+			}
+		}
+		return counts;
+	}
+
+	public static void threeCycles(BitGraph matches, CycleEnumerator.CycleVisitor visitor) {
+		threeCycles(matches, matches.transpose(), visitor);
+	}
+
+	/**
+	 * visits every 3-cycle once as i, j, x with i the lowest pair, in the order of {@link CycleEnumerator}
+	 */
+	public static void threeCycles(BitGraph matches, BitGraph donors, CycleEnumerator.CycleVisitor visitor) {
+		long[] both = new long[matches.words()];
+		int[] path = new int[3];
+		for(int i = 0; i<matches.size(); i++) {
+			path[0] = i;
+			for(int j = matches.nextOut(i, i+1); j>=0; j = matches.nextOut(i, j+1)) {
+				path[1] = j;
+				KERNEL.and(matches.bits(), j*matches.words(), donors.bits(), i*donors.words(), both, both.length);
+				for(int x = next(both, i+1); x>=0; x = next(both, x+1)) {
+					path[2] = x;
+					visitor.visit(path, 3);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the amount of recipients of i in matches that are recipients of j in other
+	 */
+	private static int intersect(BitGraph matches, int i, BitGraph other, int j) {
+		return KERNEL.andCount(matches.bits(), i*matches.words(), other.bits(), j*other.words(), matches.words());
+	}
+
+	/**
+	 * @return the first set bit of bits from index from, or -1
+	 */
+	private static int next(long[] bits, int from) {
+		int w = from >>> 6;
+		if(w >= bits.length) {
+			return -1;
+		}
+		long word = bits[w] & (-1L << from);
+		while(word == 0) {
+			if(++w == bits.length) {
+				return -1;
+			}
+			word = bits[w];
+		}
+		return (w << 6) + Long.numberOfTrailingZeros(word);
+	}
+}
@@ -0,0 +1,97 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * {@link CycleStore} that keeps only the chunk being filled on the heap. Every full chunk is copied
+ * to a memory mapped temporary file and read from there as in a {@link MappedCycleStore}, and its
+ * array is reused for the next chunk, so the heap taken does not grow with the amount of cycles.
+ * The index from {@link #index} is still kept on the heap.
+ *
+ * The file is deleted on {@link #close}, after which the store can not be used anymore.
+ */
+public class SpillingCycleStore extends MappedCycleStore implements Closeable {
+
+	private final Path path;
+	private final FileChannel channel;
+	//the array of the last chunk that was spilled, to be filled again
+	private long[] spare;
+
+	/**
+	 * spills to a file in the default temporary directory
+	 */
+	public SpillingCycleStore() throws IOException {
+		this(null);
+	}
+
+	/**
+	 * @param directory where the temporary file is made, null for the default
+	 */
+	public SpillingCycleStore(Path directory) throws IOException {
+		path = directory == null ? Files.createTempFile("cycles", ".bin") : Files.createTempFile(directory, "cycles", ".bin");
+		path.toFile().deleteOnExit();
+		channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	/**
+	 * @return bytes of the cycles that were written to the file
+	 */
+	public long spilledBytes() {
+		return mapped * CHUNK_BYTES;
+	}
+
+	@Override
+	protected long[] newChunk(int c) {
+		long[] chunk = spare != null ? spare : new long[CHUNK_SIZE];
+		spare = null;
+		return chunk;
+	}
+
+	@Override
+	protected void chunkFull(int c) {
+		long[] chunk = super.chunk(c);
+		LongBuffer segment = segment(c / SEGMENT_CHUNKS).duplicate();
+		segment.position((c % SEGMENT_CHUNKS) << CHUNK_BITS);
+		segment.put(chunk);
+		mapped = c+1;
+		setChunk(c, null);
+		spare = chunk;
+	}
+
+	/**
+	 * @return segment s of the file, mapped when it is first used
+	 */
+	private LongBuffer segment(int s) {
+		if(s >= segments.length) {
+			segments = Arrays.copyOf(segments, Math.max(s+1, segments.length << 1));
+		}
+		if(segments[s] == null) {
+			try {
+				segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, s * SEGMENT_BYTES, SEGMENT_BYTES)
+						.order(ByteOrder.nativeOrder()).asLongBuffer();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not spill cycles to " + path, e);
+			}
+		}
+		return segments[s];
+	}
+
+	/**
+	 * closes and deletes the file
+	 */
+	@Override
+	public void close() throws IOException {
+		unmap();
+		channel.close();
+		Files.deleteIfExists(path);
+	}
+}
@@ -0,0 +1,185 @@
+package util;
+
+/**
+ * Strongly connected components of a graph, found with an iterative version of Tarjan's algorithm
+ * in O(n+m). A cycle never leaves its component, so every component with at least two pairs is an
+ * independent subproblem and the other pairs and the arcs between components can be dropped.
+ */
+public class StrongComponents {
+
+	private final int[] component;
+	private final int[] offsets;
+	private final int[] members;
+	private final int[] position;
+
+	private StrongComponents(int[] component, int count) {
+		int n = component.length;
+		this.component = component;
+		this.offsets = new int[count+1];
+		for(int c : component) {
+			offsets[c+1]++;
+		}
+		for(int c = 0; c<count; c++) {
+			offsets[c+1] += offsets[c];
+		}
+		this.members = new int[n];
+		this.position = new int[n];
+		int[] fill = new int[count];
+		for(int i = 0; i<n; i++) {
+			int c = component[i];
+			position[i] = fill[c]++;
+			members[offsets[c] + position[i]] = i;
+		}
+	}
+
+	/**
+	 * @param matches
+	 * @return the components, numbered in reverse topological order
+	 */
+	public static StrongComponents of(CSRGraph matches) {
+		int n = matches.size();
+		int[] index = new int[n];
+		int[] low = new int[n];
+		int[] component = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int top = 0;
+		//explicit call stack of pairs with the next arc to look at
+		int[] callPair = new int[n];
+		int[] callArc = new int[n];
+		int depth = 0;
+		int counter = 0;
+		int count = 0;
+
+		for(int i = 0; i<n; i++) {
+			index[i] = -1;
+		}
+
+		for(int root = 0; root<n; root++) {
+			if(index[root] >= 0) {
+				continue;
+			}
+			index[root] = low[root] = counter++;
+			stack[top++] = root;
+			onStack[root] = true;
+			callPair[depth] = root;
+			callArc[depth] = matches.outStart(root);
+			depth++;
+
+			while(depth > 0) {
+				int v = callPair[depth-1];
+				int e = callArc[depth-1];
+				if(e < matches.outEnd(v)) {
+					callArc[depth-1]++;
+					int w = matches.target(e);
+					if(index[w] < 0) {
+						index[w] = low[w] = counter++;
+						stack[top++] = w;
+						onStack[w] = true;
+						callPair[depth] = w;
+						callArc[depth] = matches.outStart(w);
+						depth++;
+					}
+					else if(onStack[w]) {
+						low[v] = Math.min(low[v], index[w]);
+					}
+					continue;
+				}
+
+				depth--;
+				if(depth > 0) {
+					int parent = callPair[depth-1];
+					low[parent] = Math.min(low[parent], low[v]);
+				}
+				if(low[v] == index[v]) {
+					int w;
+					do {
+						w = stack[--top];
+						onStack[w] = false;
+						component[w] = count;
+					} while(w != v);
+					count++;
+				}
+			}
+		}
+		return new StrongComponents(component, count);
+	}
+
+	public int count() {
+		return offsets.length-1;
+	}
+
+	public int componentOf(int i) {
+		return component[i];
+	}
+
+	/**
+	 * @return index of pair i within its component
+	 */
+	public int position(int i) {
+		return position[i];
+	}
+
+	public int size(int c) {
+		return offsets[c+1] - offsets[c];
+	}
+
+	/**
+	 * @return the pairs of component c in ascending order
+	 */
+	public int[] members(int c) {
+		int[] result = new int[size(c)];
+		System.arraycopy(members, offsets[c], result, 0, result.length);
+		return result;
+	}
+
+	/**
+	 * @return the components that can contain a cycle, that is with at least two pairs
+	 */
+	public int[] nonTrivial() {
+		IntList result = new IntList();
+		for(int c = 0; c<count(); c++) {
+			if(size(c) > 1) {
+				result.add(c);
+			}
+		}
+		return result.toArray();
+	}
+
+	/**
+	 * @return the subgraph on the pairs of component c, pair i of it is members(c)[i] and keeps
+	 * its id and scores
+	 */
+	public CSRGraph induced(CSRGraph matches, int c) {
+		int size = size(c);
+		int m = 0;
+		for(int p = 0; p<size; p++) {
+			int i = members[offsets[c] + p];
+			for(int e = matches.outStart(i); e<matches.outEnd(i); e++) {
+				if(component[matches.target(e)] == c) {
+					m++;
+				}
+			}
+		}
+		//members are ascending, so the local indices keep every row sorted
+		int[] outOffsets = new int[size+1];
+		int[] targets = new int[m];
+		float[] scores = new float[m];
+		int[] ids = new int[size];
+		int arc = 0;
+		for(int p = 0; p<size; p++) {
+			int i = members[offsets[c] + p];
+			ids[p] = matches.id(i);
+			for(int e = matches.outStart(i); e<matches.outEnd(i); e++) {
+				int j = matches.target(e);
+				if(component[j] == c) {
+					targets[arc] = position[j];
+					scores[arc] = matches.score(e);
+					arc++;
+				}
+			}
+			outOffsets[p+1] = arc;
+		}
+		return new CSRGraph(outOffsets, targets, scores, ids);
+	}
+}
@@ -0,0 +1,253 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Orderings of the pairs of a graph, each returned as a {@link Permutation} and computed in
+ * O(n+m) (reverse Cuthill-McKee sorts the neighbours it visits). Degrees are total degrees, in plus
+ * out. The cycle enumeration roots every cycle at its lowest pair and only extends it with higher
+ * pairs, so the ordering decides how much of the graph each root still sees; {@link #branchingCost}
+ * estimates that and {@link #leastBranching} picks the cheapest of the orderings.
+ */
+public class VertexOrdering {
+
+	public static final int DESCENDING_DEGREE = 0;
+	public static final int ASCENDING_DEGREE = 1;
+	public static final int DEGENERACY = 2;
+	public static final int REVERSE_CUTHILL_MCKEE = 3;
+	public static final int LEAST_BRANCHING = 4;
+
+	/**
+	 * @param matches
+	 * @param mode one of the constants of this class
+	 * @return
+	 */
+	public static Permutation byMode(CSRGraph matches, int mode) {
+		switch(mode) {
+		case DESCENDING_DEGREE:
+			return byDegree(matches, true);
+		case ASCENDING_DEGREE:
+			return byDegree(matches, false);
+		case DEGENERACY:
+			return degeneracy(matches);
+		case REVERSE_CUTHILL_MCKEE:
+			return reverseCuthillMcKee(matches);
+		case LEAST_BRANCHING:
+			return leastBranching(matches);
+		default:
+			throw new IllegalArgumentException("Unknown ordering mode " +mode);
+		}
+	}
+
+	/**
+	 * orders by total degree with a counting sort, pairs of equal degree keep their order
+	 * @param matches
+	 * @param descending
+	 * @return
+	 */
+	public static Permutation byDegree(CSRGraph matches, boolean descending) {
+		int n = matches.size();
+		int[] degrees = degrees(matches);
+		int[] order = countingSort(degrees, n, descending);
+		return Permutation.fromOrder(order);
+	}
+
+	/**
+	 * orders by peeling the pair of lowest remaining degree, with the bucket structure of Batagelj
+	 * and Zaversnik. Every pair then has at most the degeneracy of the graph as higher neighbours,
+	 * which bounds the branching of each root.
+	 * @param matches
+	 * @return
+	 */
+	public static Permutation degeneracy(CSRGraph matches) {
+		int n = matches.size();
+		int[] degrees = degrees(matches);
+		int[] vert = countingSort(degrees, n, false);
+		int[] pos = new int[n];
+		for(int p = 0; p<n; p++) {
+			pos[vert[p]] = p;
+		}
+		int maxDegree = 0;
+		for(int d : degrees) {
+			maxDegree = Math.max(maxDegree, d);
+		}
+		//bin[d] is the first position in vert of a pair with remaining degree d
+		int[] bin = new int[maxDegree+2];
+		for(int d : degrees) {
+			bin[d+1]++;
+		}
+		for(int d = 0; d<=maxDegree; d++) {
+			bin[d+1] += bin[d];
+		}
+
+		for(int p = 0; p<n; p++) {
+			int v = vert[p];
+			for(int e = matches.outStart(v); e<matches.outEnd(v); e++) {
+				lower(matches.target(e), v, degrees, vert, pos, bin);
+			}
+			for(int e = matches.inStart(v); e<matches.inEnd(v); e++) {
+				lower(matches.source(e), v, degrees, vert, pos, bin);
+			}
+		}
+
+		return Permutation.fromOrder(vert);
+	}
+
+	/**
+	 * moves u one bucket down if it is still above v
+	 */
+	private static void lower(int u, int v, int[] degrees, int[] vert, int[] pos, int[] bin) {
+		int du = degrees[u];
+		if(du <= degrees[v]) {
+			return;
+		}
+		int pu = pos[u];
+		int pw = bin[du];
+		int w = vert[pw];
+		if(u != w) {
+			vert[pu] = w;
+			pos[w] = pu;
+			vert[pw] = u;
+			pos[u] = pw;
+		}
+		bin[du]++;
+		degrees[u]--;
+	}
+
+	/**
+	 * orders by breadth first search over arcs in both directions, starting every component at a
+	 * pair of lowest degree and visiting neighbours by ascending degree, then reverses the order.
+	 * Pairs that are close in the graph end up close in the arrays.
+	 * @param matches
+	 * @return
+	 */
+	public static Permutation reverseCuthillMcKee(CSRGraph matches) {
+		int n = matches.size();
+		int[] degrees = degrees(matches);
+		int[] starts = countingSort(degrees, n, false);
+		boolean[] visited = new boolean[n];
+		int[] queue = new int[n];
+		long[] buffer = new long[16];
+		int tail = 0;
+
+		for(int s : starts) {
+			if(visited[s]) {
+				continue;
+			}
+			visited[s] = true;
+			queue[tail++] = s;
+			for(int head = tail-1; head<tail; head++) {
+				int v = queue[head];
+				int count = 0;
+				int needed = matches.outDegree(v) + matches.inDegree(v);
+				if(buffer.length < needed) {
+					buffer = new long[Math.max(needed, buffer.length*2)];
+				}
+				for(int e = matches.outStart(v); e<matches.outEnd(v); e++) {
+					int u = matches.target(e);
+					if(!visited[u]) {
+						visited[u] = true;
+						buffer[count++] = ((long) degrees[u] << 32) | u;
+					}
+				}
+				for(int e = matches.inStart(v); e<matches.inEnd(v); e++) {
+					int u = matches.source(e);
+					if(!visited[u]) {
+						visited[u] = true;
+						buffer[count++] = ((long) degrees[u] << 32) | u;
+					}
+				}
+				Arrays.sort(buffer, 0, count);
+				for(int c = 0; c<count; c++) {
+					queue[tail++] = (int) buffer[c];
+				}
+			}
+		}
+
+		int[] order = new int[n];
+		for(int p = 0; p<n; p++) {
+			order[p] = queue[n-1-p];
+		}
+		return Permutation.fromOrder(order);
+	}
+
+	/**
+	 * estimates the work of enumerating cycles from their lowest pair after relabeling: for every
+	 * root the amount of first arcs times the amount of closing arcs that stay among higher pairs
+	 * @param matches
+	 * @param ordering
+	 * @return
+	 */
+	public static long branchingCost(CSRGraph matches, Permutation ordering) {
+		int n = matches.size();
+		long cost = 0;
+		for(int i = 0; i<n; i++) {
+			int rank = ordering.newIndex(i);
+			long out = 0;
+			for(int e = matches.outStart(i); e<matches.outEnd(i); e++) {
+				if(ordering.newIndex(matches.target(e)) > rank) {
+					out++;
+				}
+			}
+			if(out == 0) {
+				continue;
+			}
+			long in = 0;
+			for(int e = matches.inStart(i); e<matches.inEnd(i); e++) {
+				if(ordering.newIndex(matches.source(e)) > rank) {
+					in++;
+				}
+			}
+			cost += out*in;
+		}
+		return cost;
+	}
+
+	/**
+	 * @return the ordering among the others of this class with the lowest {@link #branchingCost}
+	 */
+	public static Permutation leastBranching(CSRGraph matches) {
+		Permutation best = null;
+		long bestCost = Long.MAX_VALUE;
+		for(int mode = DESCENDING_DEGREE; mode<LEAST_BRANCHING; mode++) {
+			Permutation candidate = byMode(matches, mode);
+			long cost = branchingCost(matches, candidate);
+			if(cost < bestCost) {
+				best = candidate;
+				bestCost = cost;
+			}
+		}
+		return best;
+	}
+
+	private static int[] degrees(CSRGraph matches) {
+		int n = matches.size();
+		int[] degrees = new int[n];
+		for(int i = 0; i<n; i++) {
+			degrees[i] = matches.outDegree(i) + matches.inDegree(i);
+		}
+		return degrees;
+	}
+
+	/**
+	 * @return the pairs sorted by key, equal keys in ascending index
+	 */
+	private static int[] countingSort(int[] keys, int n, boolean descending) {
+		int max = 0;
+		for(int k : keys) {
+			max = Math.max(max, k);
+		}
+		int[] start = new int[max+2];
+		for(int k : keys) {
+			start[(descending ? max-k : k)+1]++;
+		}
+		for(int k = 0; k<=max; k++) {
+			start[k+1] += start[k];
+		}
+		int[] order = new int[n];
+		for(int i = 0; i<n; i++) {
+			order[start[descending ? max-keys[i] : keys[i]]++] = i;
+		}
+		return order;
+	}
+}